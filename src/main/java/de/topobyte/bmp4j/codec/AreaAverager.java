@@ -0,0 +1,165 @@
+package de.topobyte.bmp4j.codec;
+
+import java.util.Arrays;
+
+/**
+ * Reduces an image by area averaging while its rows are streamed through,
+ * with results comparable to <tt>Image.SCALE_AREA_AVERAGING</tt>. Each pixel
+ * of the reduced image is the average of the source pixels it covers, each
+ * weighted by the covered fraction of its area, so the reduction factor does
+ * not need to be an integer. Colors are weighted by their alpha to avoid
+ * dark fringes around transparent areas.
+ *
+ * Only sums for one row of the reduced image are kept, so the memory needed
+ * is independent of the source height. Since the weights are symmetric, rows
+ * may be added bottom-up as well, in which case the reduced rows are
+ * produced bottom-up, too.
+ */
+final class AreaAverager
+{
+
+	private final int srcWidth;
+	private final int srcHeight;
+	private final int dstWidth;
+	private final int dstHeight;
+
+	/*
+	 * In units of 1 / (dstWidth * srcWidth) of the image width, source column
+	 * x spans [x * dstWidth, (x + 1) * dstWidth) and target column i spans [i
+	 * * srcWidth, (i + 1) * srcWidth). A source column overlaps at most two
+	 * target columns: columns[x] with weights[x] and the next one with the
+	 * rest. The same applies to rows.
+	 */
+	private final int[] columns;
+	private final int[] weights;
+
+	// alpha, premultiplied red, green and blue for each target column
+	private final long[] line;
+	private final long[] sums;
+
+	private int srcRow = 0;
+	private int dstRow = 0;
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the target size is not positive or larger than the
+	 *             source size
+	 */
+	AreaAverager(int srcWidth, int srcHeight, int dstWidth, int dstHeight)
+	{
+		if (dstWidth <= 0 || dstHeight <= 0 || dstWidth > srcWidth
+				|| dstHeight > srcHeight) {
+			throw new IllegalArgumentException("Invalid target size: "
+					+ dstWidth + "x" + dstHeight + " for source size "
+					+ srcWidth + "x" + srcHeight);
+		}
+		this.srcWidth = srcWidth;
+		this.srcHeight = srcHeight;
+		this.dstWidth = dstWidth;
+		this.dstHeight = dstHeight;
+
+		columns = new int[srcWidth];
+		weights = new int[srcWidth];
+		for (int x = 0; x < srcWidth; x++) {
+			long start = (long) x * dstWidth;
+			int column = (int) (start / srcWidth);
+			long end = Math.min(start + dstWidth, (column + 1L) * srcWidth);
+			columns[x] = column;
+			weights[x] = (int) (end - start);
+		}
+
+		line = new long[dstWidth * 4];
+		sums = new long[dstWidth * 4];
+	}
+
+	/**
+	 * @return the number of reduced rows that have been completed
+	 */
+	int getRowCount()
+	{
+		return dstRow;
+	}
+
+	/**
+	 * Adds the next source row. Since each reduced row covers at least one
+	 * source row, a source row completes at most one reduced row.
+	 *
+	 * @param src
+	 *            the source pixels in the default RGB color model
+	 * @param dst
+	 *            receives the pixels of the completed reduced row, if any
+	 * @return whether a reduced row has been completed
+	 */
+	boolean addRow(int[] src, int srcOff, int[] dst, int dstOff)
+	{
+		if (srcRow == srcHeight) {
+			throw new IllegalStateException("All rows have been added");
+		}
+
+		Arrays.fill(line, 0);
+		for (int x = 0; x < srcWidth; x++) {
+			int argb = src[srcOff + x];
+			long a = argb >>> 24;
+			long r = ((argb >> 16) & 0xFF) * a;
+			long g = ((argb >> 8) & 0xFF) * a;
+			long b = (argb & 0xFF) * a;
+			int i = columns[x] * 4;
+			int weight = weights[x];
+			line[i] += a * weight;
+			line[i + 1] += r * weight;
+			line[i + 2] += g * weight;
+			line[i + 3] += b * weight;
+			weight = dstWidth - weight;
+			if (weight != 0) {
+				line[i + 4] += a * weight;
+				line[i + 5] += r * weight;
+				line[i + 6] += g * weight;
+				line[i + 7] += b * weight;
+			}
+		}
+
+		long start = (long) srcRow * dstHeight;
+		long end = start + dstHeight;
+		long rowEnd = (dstRow + 1L) * srcHeight;
+		srcRow++;
+		if (end < rowEnd) {
+			accumulate(end - start);
+			return false;
+		}
+
+		accumulate(rowEnd - start);
+		emit(dst, dstOff);
+		Arrays.fill(sums, 0);
+		dstRow++;
+		if (end > rowEnd) {
+			accumulate(end - rowEnd);
+		}
+		return true;
+	}
+
+	private void accumulate(long weight)
+	{
+		for (int i = 0; i < sums.length; i++) {
+			sums[i] += line[i] * weight;
+		}
+	}
+
+	private void emit(int[] dst, int dstOff)
+	{
+		long area = (long) srcWidth * srcHeight;
+		for (int i = 0; i < dstWidth; i++) {
+			long a = sums[i * 4];
+			if (a == 0) {
+				dst[dstOff + i] = 0;
+				continue;
+			}
+			long half = a / 2;
+			int r = (int) ((sums[i * 4 + 1] + half) / a);
+			int g = (int) ((sums[i * 4 + 2] + half) / a);
+			int b = (int) ((sums[i * 4 + 3] + half) / a);
+			int alpha = (int) ((a + area / 2) / area);
+			dst[dstOff + i] = (alpha << 24) | (r << 16) | (g << 8) | b;
+		}
+	}
+
+}
@@ -0,0 +1,313 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.topobyte.bmp4j.io.BufferedLittleEndianFile;
+
+/**
+ * A BMP file on disk that rectangular tiles can be written into, for
+ * assembling images that are too large to be held in memory.
+ *
+ * The complete file (headers and a zeroed raster) is allocated when the
+ * canvas is created. Each tile row is then written directly to its final
+ * position using positional writes on a <tt>FileChannel</tt>. No locking is
+ * involved, so multiple threads may write non-overlapping tiles concurrently.
+ *
+ * For 1 and 4-bit images, multiple pixels share a byte. Tiles must therefore
+ * start at a byte boundary (a multiple of 8 or 2 pixels respectively) and end
+ * at a byte boundary or at the right edge of the canvas, so that concurrent
+ * writes never touch the same byte.
+ */
+public class BMPCanvas implements Closeable
+{
+
+	private final BufferedLittleEndianFile file;
+	private final BitmapLayout layout;
+
+	/**
+	 * Creates a new canvas in the specified file, replacing any existing file.
+	 *
+	 * @param file
+	 *            the file to create
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt>,
+	 *            <tt>8</tt>, <tt>24</tt> or <tt>32</tt>
+	 * @param palette
+	 *            the palette for indexed color depths, may be <tt>null</tt>
+	 *            for a grayscale palette
+	 * @return the canvas
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static BMPCanvas create(Path file, int width, int height,
+			int bitCount, IndexColorModel palette) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			return new BMPCanvas(channel, width, height, bitCount, palette);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a new canvas in the specified channel, starting at position
+	 * <tt>0</tt>. The channel is closed when the canvas is closed.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt>,
+	 *            <tt>8</tt>, <tt>24</tt> or <tt>32</tt>
+	 * @param palette
+	 *            the palette for indexed color depths, may be <tt>null</tt>
+	 *            for a grayscale palette
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public BMPCanvas(FileChannel channel, int width, int height, int bitCount,
+			IndexColorModel palette) throws IOException
+	{
+		file = new BufferedLittleEndianFile(channel);
+
+		palette = BitmapLayout.checkParameters(width, height, bitCount,
+				palette);
+		layout = BitmapLayout.create(width, height, bitCount, false,
+				palette);
+
+		layout.writeHeaders(file);
+		file.flush();
+
+		// extend the file to its full size, the raster reads back as zeros
+		long fileSize = layout.getFileSize();
+		if (file.length() < fileSize) {
+			file.setLength(fileSize);
+		}
+	}
+
+	/**
+	 * @return the width of the image in pixels
+	 */
+	public int getWidth()
+	{
+		return layout.width;
+	}
+
+	/**
+	 * @return the height of the image in pixels
+	 */
+	public int getHeight()
+	{
+		return layout.height;
+	}
+
+	/**
+	 * @return the color depth of the image (bits per pixel)
+	 */
+	public int getBitCount()
+	{
+		return layout.bitCount;
+	}
+
+	/**
+	 * Writes a tile at the specified position. For indexed color depths, the
+	 * tile's samples are interpreted as color indices, otherwise its RGB
+	 * values are written. This method may be called concurrently for tiles
+	 * that do not overlap.
+	 *
+	 * @param x
+	 *            the column of the canvas at which the tile starts
+	 * @param y
+	 *            the row of the canvas at which the tile starts
+	 * @param tile
+	 *            the tile
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeTile(int x, int y, BufferedImage tile) throws IOException
+	{
+		int w = tile.getWidth();
+		int h = tile.getHeight();
+		checkTile(x, y, w, h);
+
+		int bitCount = layout.bitCount;
+		int[] samples = new int[w];
+		ByteBuffer line = ByteBuffer.allocate(getTileLineSize(w));
+		byte[] bytes = line.array();
+		if (bitCount <= 8) {
+			Raster raster = tile.getRaster();
+			for (int r = 0; r < h; r++) {
+				raster.getSamples(raster.getMinX(), raster.getMinY() + r, w,
+						1, 0, samples);
+				Scanlines.packIndices(samples, 0, bytes, 0, w, bitCount);
+				writeTileLine(line, x, y + r);
+			}
+		} else {
+			for (int r = 0; r < h; r++) {
+				Scanlines.getRGB(tile, r, samples);
+				packRgb(samples, 0, bytes, w);
+				writeTileLine(line, x, y + r);
+			}
+		}
+	}
+
+	/**
+	 * Writes a tile of a 24 or 32-bit image from an array of pixels. This
+	 * method may be called concurrently for tiles that do not overlap.
+	 *
+	 * @param x
+	 *            the column of the canvas at which the tile starts
+	 * @param y
+	 *            the row of the canvas at which the tile starts
+	 * @param w
+	 *            the width of the tile
+	 * @param h
+	 *            the height of the tile
+	 * @param rgb
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param offset
+	 *            the offset of the first pixel within <tt>rgb</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>rgb</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeTile(int x, int y, int w, int h, int[] rgb, int offset,
+			int scansize) throws IOException
+	{
+		if (layout.bitCount <= 8) {
+			throw new IllegalStateException(
+					"Writing RGB data to an indexed image");
+		}
+		checkTile(x, y, w, h);
+
+		ByteBuffer line = ByteBuffer.allocate(getTileLineSize(w));
+		for (int r = 0; r < h; r++) {
+			packRgb(rgb, offset + r * scansize, line.array(), w);
+			writeTileLine(line, x, y + r);
+		}
+	}
+
+	/**
+	 * Writes a tile of a 1, 4 or 8-bit image from an array of color indices.
+	 * This method may be called concurrently for tiles that do not overlap.
+	 *
+	 * @param x
+	 *            the column of the canvas at which the tile starts
+	 * @param y
+	 *            the row of the canvas at which the tile starts
+	 * @param w
+	 *            the width of the tile
+	 * @param h
+	 *            the height of the tile
+	 * @param indices
+	 *            the color indices
+	 * @param offset
+	 *            the offset of the first pixel within <tt>indices</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>indices</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeTile(int x, int y, int w, int h, byte[] indices,
+			int offset, int scansize) throws IOException
+	{
+		if (layout.bitCount > 8) {
+			throw new IllegalStateException(
+					"Writing color indices to a non-indexed image");
+		}
+		checkTile(x, y, w, h);
+
+		ByteBuffer line = ByteBuffer.allocate(getTileLineSize(w));
+		for (int r = 0; r < h; r++) {
+			Scanlines.packIndices(indices, offset + r * scansize, line.array(),
+					0, w, layout.bitCount);
+			writeTileLine(line, x, y + r);
+		}
+	}
+
+	/**
+	 * Flushes all written tiles to the storage device.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void sync() throws IOException
+	{
+		file.getChannel().force(false);
+	}
+
+	/**
+	 * Closes the underlying channel.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private void checkTile(int x, int y, int w, int h)
+	{
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > layout.width
+				|| y + h > layout.height) {
+			throw new IllegalArgumentException("Tile " + w + "x" + h + " at "
+					+ x + "," + y + " out of bounds");
+		}
+		if (layout.bitCount < 8) {
+			int pixelsPerByte = 8 / layout.bitCount;
+			if (x % pixelsPerByte != 0 || ((x + w) % pixelsPerByte != 0
+					&& x + w != layout.width)) {
+				throw new IllegalArgumentException("Tiles of " + layout.bitCount
+						+ "-bit images must be aligned to multiples of "
+						+ pixelsPerByte + " pixels");
+			}
+		}
+	}
+
+	private int getTileLineSize(int w)
+	{
+		return (w * layout.bitCount + 7) / 8;
+	}
+
+	private void packRgb(int[] rgb, int offset, byte[] line, int w)
+	{
+		if (layout.bitCount == 24) {
+			Scanlines.packRgb24(rgb, offset, line, 0, w);
+		} else {
+			Scanlines.packArgb32(rgb, offset, line, 0, w);
+		}
+	}
+
+	private void writeTileLine(ByteBuffer line, int x, int y)
+			throws IOException
+	{
+		long position = layout.getLineOffset(y)
+				+ (long) x * layout.bitCount / 8;
+		line.clear();
+		file.write(line, position);
+	}
+
+}
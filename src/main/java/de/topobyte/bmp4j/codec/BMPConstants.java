@@ -20,6 +20,12 @@ public class BMPConstants
 	 */
 	public static final String FILE_HEADER = "BM";
 
+	/**
+	 * The largest file size that the file header can hold. Larger files are
+	 * written with a file size of <tt>0</tt>.
+	 */
+	public static final long MAX_FILE_SIZE = 0xFFFFFFFFL;
+
 	/**
 	 * Specifies no compression.
 	 * 
@@ -7,6 +7,7 @@
 package de.topobyte.bmp4j.codec;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
@@ -16,9 +17,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
-import de.topobyte.bmp4j.io.CountingInputStream;
-import de.topobyte.bmp4j.io.LittleEndianInputStream;
+import de.topobyte.bmp4j.io.BufferedLittleEndianInput;
+import de.topobyte.bmp4j.io.LittleEndianInput;
 
 /**
  * Decodes images in BMP format.
@@ -44,8 +46,35 @@ public class BMPDecoder
 	 */
 	public BMPDecoder(InputStream in) throws IOException
 	{
-		LittleEndianInputStream lis = new LittleEndianInputStream(
-				new CountingInputStream(in));
+		this(in, new BMPDecoderOptions(), new BMPDecoderContext());
+	}
+
+	/**
+	 * Creates a new instance of BMPDecoder and reads the BMP data from the
+	 * source, using the specified options.
+	 * 
+	 * @param in
+	 *            the source <tt>InputStream</tt> from which to read the BMP
+	 *            data
+	 * @param options
+	 *            the options that control decoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public BMPDecoder(InputStream in, BMPDecoderOptions options)
+			throws IOException
+	{
+		this(in, options, new BMPDecoderContext());
+	}
+
+	BMPDecoder(InputStream in, BMPDecoderOptions options,
+			BMPDecoderContext context) throws IOException
+	{
+		// the stream may continue after the image, so nothing beyond the
+		// image is read from it: the headers are read without read-ahead,
+		// the rest up to the end of the raster data, if known
+		BufferedLittleEndianInput lis = new BufferedLittleEndianInput(in);
+		lis.setReadLimit(0);
 
 		/* header [14] */
 
@@ -54,26 +83,35 @@ public class BMPDecoder
 		/* info header [40] */
 
 		infoHeader = readInfoHeader(lis);
+		lis.setReadLimit(getDataEnd(fileHeader, infoHeader));
 
 		/* Color table and Raster data */
 
-		img = read(infoHeader, lis);
+		img = read(infoHeader, lis, fileHeader.dataOffset, options, context);
 	}
 
 	/**
-	 * Retrieves a bit from the lowest order byte of the given integer.
-	 * 
-	 * @param bits
-	 *            the source integer, treated as an unsigned byte
-	 * @param index
-	 *            the index of the bit to retrieve, which must be in the range
-	 *            <tt>0..7</tt>.
-	 * @return the bit at the specified index, which will be either <tt>0</tt>
-	 *         or <tt>1</tt>.
+	 * @return the position of the end of the raster data within the file,
+	 *         as far as it is known from the headers, which is the data offset
+	 *         for compressed bitmaps that do not specify their size
 	 */
-	private static int getBit(int bits, int index)
+	private static long getDataEnd(FileHeader fileHeader,
+			InfoHeader infoHeader)
 	{
-		return (bits >> (7 - index)) & 1;
+		int compression = infoHeader.getCompression();
+		if (compression == BMPConstants.BI_RGB
+				|| compression == BMPConstants.BI_BITFIELDS) {
+			return fileHeader.dataOffset
+					+ BMPEncoder.getBitmapSize(infoHeader.getWidth(),
+							getHeight(infoHeader), infoHeader.getBitCount());
+		}
+		int imageSize = 0;
+		if (infoHeader instanceof InfoHeader3) {
+			imageSize = ((InfoHeader3) infoHeader).iImageSize;
+		} else if (infoHeader instanceof InfoHeader5) {
+			imageSize = ((InfoHeader5) infoHeader).iImageSize;
+		}
+		return fileHeader.dataOffset + Math.max(0, imageSize);
 	}
 
 	/**
@@ -92,6 +130,37 @@ public class BMPDecoder
 		return (nibbles >> (4 * (1 - index))) & 0xF;
 	}
 
+	/**
+	 * The height of the image in pixels. The height stored in the header is
+	 * negative for top-down bitmaps.
+	 * 
+	 * @param infoHeader
+	 *            the <tt>InfoHeader</tt> structure
+	 * @return the absolute height of the image
+	 */
+	private static int getHeight(InfoHeader infoHeader)
+	{
+		return Math.abs(infoHeader.getHeight());
+	}
+
+	/**
+	 * Determines the image row of the <tt>row</tt>-th scan line stored in the
+	 * file. Scan lines are stored bottom-up, unless the height specified in
+	 * the header is negative.
+	 * 
+	 * @param infoHeader
+	 *            the <tt>InfoHeader</tt> structure
+	 * @param height
+	 *            the absolute height of the image
+	 * @param row
+	 *            the index of the scan line in the file
+	 * @return the row within the image
+	 */
+	private static int getRow(InfoHeader infoHeader, int height, int row)
+	{
+		return infoHeader.getHeight() < 0 ? row : height - 1 - row;
+	}
+
 	public FileHeader getFileHeader()
 	{
 		return fileHeader;
@@ -119,22 +188,12 @@ public class BMPDecoder
 		return img;
 	}
 
-	private static void getColorTable(ColorEntry[] colorTable, byte[] ar,
-			byte[] ag, byte[] ab)
-	{
-		for (int i = 0; i < colorTable.length; i++) {
-			ar[i] = (byte) colorTable[i].bRed;
-			ag[i] = (byte) colorTable[i].bGreen;
-			ab[i] = (byte) colorTable[i].bBlue;
-		}
-	}
-
-	public static FileHeader readHeader(LittleEndianInputStream lis)
+	public static FileHeader readHeader(LittleEndianInput lis)
 			throws IOException
 	{
 		// signature "BM" [2]
 		byte[] bsignature = new byte[2];
-		lis.read(bsignature);
+		lis.readFully(bsignature);
 		String signature = new String(bsignature, "UTF-8");
 
 		if (!signature.equals("BM")) {
@@ -142,14 +201,14 @@ public class BMPDecoder
 					"Invalid signature '" + signature + "' for BMP format");
 		}
 
-		// file size [4]
-		int fileSize = lis.readIntLE();
+		// file size [4], 0 if too large for the field
+		long fileSize = lis.readUnsignedIntLE();
 
 		// reserved = 0 [4]
 		int reserved = lis.readIntLE();
 
 		// DataOffset [4] file offset to raster data
-		int dataOffset = lis.readIntLE();
+		long dataOffset = lis.readUnsignedIntLE();
 
 		return new FileHeader(signature, fileSize, reserved, dataOffset);
 	}
@@ -163,14 +222,14 @@ public class BMPDecoder
 	 * @throws IOException
 	 *             if an error occurred
 	 */
-	public static InfoHeader readInfoHeader(LittleEndianInputStream lis)
+	public static InfoHeader readInfoHeader(LittleEndianInput lis)
 			throws IOException
 	{
 		int iSize = lis.readIntLE();
 		return readInfoHeader(lis, iSize);
 	}
 
-	public static InfoHeader readInfoHeader(LittleEndianInputStream lis,
+	public static InfoHeader readInfoHeader(LittleEndianInput lis,
 			int infoSize) throws IOException
 	{
 		if (infoSize == BMPConstants.HEADER_LENGTH_3) {
@@ -190,29 +249,92 @@ public class BMPDecoder
 	 *            the source input
 	 * @param infoHeader
 	 *            an <tt>InfoHeader</tt> that was read by a call to
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}.
 	 * @return the decoded image read from the source input
 	 * @throws IOException
 	 *             if an error occurs
 	 */
 	public static BufferedImage read(InfoHeader infoHeader,
-			LittleEndianInputStream lis) throws IOException
+			LittleEndianInput lis) throws IOException
 	{
-		BufferedImage img = null;
+		return read(infoHeader, lis, new BMPDecoderContext());
+	}
+
+	static BufferedImage read(InfoHeader infoHeader,
+			LittleEndianInput lis, BMPDecoderContext context)
+			throws IOException
+	{
+		return read(infoHeader, lis, 0, new BMPDecoderOptions(), context);
+	}
 
+	/**
+	 * Reads the color table and raster data.
+	 * 
+	 * @param dataOffset
+	 *            the position of the raster data, in terms of the number of
+	 *            bytes read from <tt>lis</tt>, or <tt>0</tt> if the raster
+	 *            data follows the headers immediately
+	 */
+	static BufferedImage read(InfoHeader infoHeader,
+			LittleEndianInput lis, long dataOffset, BMPDecoderOptions options,
+			BMPDecoderContext context) throws IOException
+	{
 		/* Color table (palette) */
 
-		ColorEntry[] colorTable = null;
+		IndexColorModel icm = null;
 
 		// color table is only present for 1, 4 or 8 bit (indexed) images
 		if (infoHeader.getBitCount() <= 8) {
-			colorTable = readColorTable(infoHeader, lis);
+			icm = readColorModel(infoHeader, lis, context);
 		}
 
-		img = read(infoHeader, lis, colorTable);
+		return readImage(infoHeader, lis, icm, dataOffset, options, context);
+	}
 
-		return img;
+	/**
+	 * Skips any gap between the headers and the raster data.
+	 */
+	private static void skipToData(LittleEndianInput lis,
+			long dataOffset) throws IOException
+	{
+		long gap = dataOffset - lis.getCount();
+		while (gap > 0) {
+			int n = (int) Math.min(gap, Integer.MAX_VALUE);
+			lis.skip(n, true);
+			gap -= n;
+		}
+	}
+
+	/**
+	 * Reads the color table and creates the color model for an indexed image.
+	 * If the context has a {@link PaletteCache}, the color model is shared
+	 * with other images using the same palette.
+	 */
+	private static IndexColorModel readColorModel(InfoHeader infoHeader,
+			LittleEndianInput lis, BMPDecoderContext context)
+			throws IOException
+	{
+		int numColors = infoHeader.getNumColors();
+		byte[] buffer = context.getPalette();
+		PaletteCache cache = context.getPaletteCache();
+		if (cache == null) {
+			return Palette.read(lis, numColors, buffer)
+					.toColorModel(infoHeader.getBitCount());
+		}
+		lis.readFully(buffer, 0, numColors * 4);
+		return cache.get(infoHeader.getBitCount(), buffer, 0, numColors)
+				.getColorModel();
+	}
+
+	/**
+	 * Creates the color model for an indexed image from its color table.
+	 */
+	private static IndexColorModel createColorModel(InfoHeader infoHeader,
+			ColorEntry[] colorTable)
+	{
+		return Palette.fromColorTable(colorTable)
+				.toColorModel(infoHeader.getBitCount());
 	}
 
 	/**
@@ -223,7 +345,7 @@ public class BMPDecoder
 	 *            <tt>ColorEntry</tt> array containing palette
 	 * @param infoHeader
 	 *            an <tt>InfoHeader</tt> that was read by a call to
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}.
 	 * @param lis
 	 *            the source input
@@ -232,66 +354,130 @@ public class BMPDecoder
 	 *             if any error occurs
 	 */
 	public static BufferedImage read(InfoHeader infoHeader,
-			LittleEndianInputStream lis, ColorEntry[] colorTable)
+			LittleEndianInput lis, ColorEntry[] colorTable)
+			throws IOException
+	{
+		return read(infoHeader, lis, colorTable, new BMPDecoderContext());
+	}
+
+	static BufferedImage read(InfoHeader infoHeader,
+			LittleEndianInput lis, ColorEntry[] colorTable,
+			BMPDecoderContext context) throws IOException
+	{
+		IndexColorModel icm = null;
+		if (infoHeader.getBitCount() <= 8) {
+			icm = createColorModel(infoHeader, colorTable);
+		}
+		return readImage(infoHeader, lis, icm, 0, new BMPDecoderOptions(),
+				context);
+	}
+
+	private static BufferedImage readImage(InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm, long dataOffset,
+			BMPDecoderOptions options, BMPDecoderContext context)
 			throws IOException
 	{
+		if (options.getScaleFactor() != 1) {
+			return readScaled(infoHeader, lis, icm, dataOffset, options,
+					context);
+		}
+
 		BufferedImage img = null;
 
+		// 16-bit bitmaps may have masks after the headers, which are read
+		// before skipping to the raster data
+		if (infoHeader.getBitCount() != 16) {
+			skipToData(lis, dataOffset);
+		}
+
+		if (options.isNativeLayout()
+				&& BitmapLayout.isUncompressed(infoHeader)) {
+			return readNative(infoHeader, lis, icm, context);
+		}
+
 		// 1-bit (monochrome) uncompressed
 		if (infoHeader.getBitCount() == 1
 				&& infoHeader.getCompression() == BMPConstants.BI_RGB) {
 
-			img = read1(infoHeader, lis, colorTable);
+			img = read1(infoHeader, lis, icm, context);
 
 		}
 		// 4-bit uncompressed
 		else if (infoHeader.getBitCount() == 4
 				&& infoHeader.getCompression() == BMPConstants.BI_RGB) {
 
-			img = read4(infoHeader, lis, colorTable);
+			img = read4(infoHeader, lis, icm, context);
 
 		}
 		// 8-bit uncompressed
 		else if (infoHeader.getBitCount() == 8
 				&& infoHeader.getCompression() == BMPConstants.BI_RGB) {
 
-			img = read8(infoHeader, lis, colorTable);
+			img = read8(infoHeader, lis, icm, context);
+
+		}
+		// 8-bit run-length encoded
+		else if (infoHeader.getBitCount() == 8
+				&& infoHeader.getCompression() == BMPConstants.BI_RLE8) {
+
+			img = readRLE(infoHeader, lis, icm, context);
+
+		}
+		// 4-bit run-length encoded
+		else if (infoHeader.getBitCount() == 4
+				&& infoHeader.getCompression() == BMPConstants.BI_RLE4) {
+
+			img = readRLE(infoHeader, lis, icm, context);
+
+		}
+		// 16-bit uncompressed, 5-5-5 or with explicit masks
+		else if (infoHeader.getBitCount() == 16
+				&& (infoHeader.getCompression() == BMPConstants.BI_RGB
+						|| infoHeader
+								.getCompression() == BMPConstants.BI_BITFIELDS)) {
+
+			img = read16(infoHeader, lis, dataOffset, options, context);
 
 		}
 		// 24-bit uncompressed
 		else if (infoHeader.getBitCount() == 24
 				&& infoHeader.getCompression() == BMPConstants.BI_RGB) {
 
-			img = read24(infoHeader, lis);
+			img = read24(infoHeader, lis, options, context);
 
 		}
 		// 32bit uncompressed
 		else if (infoHeader.getBitCount() == 32
 				&& infoHeader.getCompression() == BMPConstants.BI_RGB) {
 
-			img = read32(infoHeader, lis);
+			img = read32(infoHeader, lis, options, context);
 		}
 		// 32bit uncompressed
 		else if (infoHeader.getBitCount() == 32
 				&& infoHeader.getCompression() == BMPConstants.BI_BITFIELDS) {
 
-			img = read32(infoHeader, lis);
+			img = read32(infoHeader, lis, options, context);
 		} else {
-			throw new IOException("Unrecognized bitmap format: bit count="
-					+ infoHeader.getBitCount() + ", compression="
-					+ infoHeader.getCompression());
+			throw unrecognizedFormat(infoHeader);
 		}
 
 		return img;
 	}
 
+	private static IOException unrecognizedFormat(InfoHeader infoHeader)
+	{
+		return new IOException("Unrecognized bitmap format: bit count="
+				+ infoHeader.getBitCount() + ", compression="
+				+ infoHeader.getCompression());
+	}
+
 	/**
 	 * Reads the <tt>ColorEntry</tt> table from the given <tt>InputStream</tt>
 	 * using the information contained in the given <tt>infoHeader</tt>.
 	 * 
 	 * @param infoHeader
 	 *            the <tt>InfoHeader</tt> structure, which was read using
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}
 	 * @param lis
 	 *            the <tt>InputStream</tt> to read
@@ -300,14 +486,29 @@ public class BMPDecoder
 	 * @return the decoded image read from the source input
 	 */
 	public static ColorEntry[] readColorTable(InfoHeader infoHeader,
-			LittleEndianInputStream lis) throws IOException
+			LittleEndianInput lis) throws IOException
 	{
-		ColorEntry[] colorTable = new ColorEntry[infoHeader.getNumColors()];
-		for (int i = 0; i < infoHeader.getNumColors(); i++) {
-			ColorEntry ce = new ColorEntry(lis);
-			colorTable[i] = ce;
-		}
-		return colorTable;
+		return readPalette(infoHeader, lis).toColorTable();
+	}
+
+	/**
+	 * Reads the color table from the given <tt>InputStream</tt> using the
+	 * information contained in the given <tt>infoHeader</tt>.
+	 * 
+	 * @param infoHeader
+	 *            the <tt>InfoHeader</tt> structure, which was read using
+	 *            {@link #readInfoHeader(LittleEndianInput)
+	 *            readInfoHeader()}
+	 * @param lis
+	 *            the <tt>InputStream</tt> to read
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the palette read from the source input
+	 */
+	public static Palette readPalette(InfoHeader infoHeader,
+			LittleEndianInput lis) throws IOException
+	{
+		return Palette.read(lis, infoHeader.getNumColors());
 	}
 
 	/**
@@ -316,7 +517,7 @@ public class BMPDecoder
 	 * 
 	 * @param infoHeader
 	 *            the <tt>InfoHeader</tt> structure, which was read using
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}
 	 * @param lis
 	 *            the source input
@@ -328,57 +529,35 @@ public class BMPDecoder
 	 * @return the decoded image read from the source input
 	 */
 	public static BufferedImage read1(InfoHeader infoHeader,
-			LittleEndianInputStream lis, ColorEntry[] colorTable)
+			LittleEndianInput lis, ColorEntry[] colorTable)
 			throws IOException
 	{
-		// 1 bit per pixel or 8 pixels per byte
-		// each pixel specifies the palette index
-
-		byte[] ar = new byte[colorTable.length];
-		byte[] ag = new byte[colorTable.length];
-		byte[] ab = new byte[colorTable.length];
+		return read1(infoHeader, lis, colorTable, new BMPDecoderContext());
+	}
 
-		getColorTable(colorTable, ar, ag, ab);
+	static BufferedImage read1(InfoHeader infoHeader,
+			LittleEndianInput lis, ColorEntry[] colorTable,
+			BMPDecoderContext context) throws IOException
+	{
+		return read1(infoHeader, lis,
+				createColorModel(infoHeader, colorTable), context);
+	}
 
-		IndexColorModel icm = new IndexColorModel(1, 2, ar, ag, ab);
+	private static BufferedImage read1(InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm,
+			BMPDecoderContext context) throws IOException
+	{
+		// 1 bit per pixel or 8 pixels per byte
+		// each pixel specifies the palette index
 
 		// Create indexed image
-		BufferedImage img = new BufferedImage(infoHeader.getWidth(),
-				infoHeader.getHeight(), BufferedImage.TYPE_BYTE_BINARY, icm);
-		// We'll use the raster to set samples instead of RGB values.
-		// The SampleModel of an indexed image interprets samples as
-		// the index of the color for a pixel, which is perfect for use here.
-		WritableRaster raster = img.getRaster();
-
-		// padding
-
-		int dataBitsPerLine = infoHeader.getWidth();
-		int bitsPerLine = dataBitsPerLine;
-		if (bitsPerLine % 32 != 0) {
-			bitsPerLine = (bitsPerLine / 32 + 1) * 32;
-		}
-		int padBits = bitsPerLine - dataBitsPerLine;
-		int padBytes = padBits / 8;
-
-		int bytesPerLine = bitsPerLine / 8;
-		int[] line = new int[bytesPerLine];
+		BufferedImage img = context.createImage(infoHeader.getWidth(),
+				getHeight(infoHeader), BufferedImage.TYPE_BYTE_BINARY, icm,
+				false);
 
-		for (int y = infoHeader.getHeight() - 1; y >= 0; y--) {
-			for (int i = 0; i < bytesPerLine; i++) {
-				line[i] = lis.readUnsignedByte();
-			}
-
-			for (int x = 0; x < infoHeader.getWidth(); x++) {
-				int i = x / 8;
-				int v = line[i];
-				int b = x % 8;
-				int index = getBit(v, b);
-				// int rgb = c[index];
-				// img.setRGB(x, y, rgb);
-				// set the sample (color index) for the pixel
-				raster.setSample(x, y, 0, index);
-			}
-		}
+		// the packed layout of the image matches the scan lines
+		readPacked(infoHeader, lis, img, BMPEncoder
+				.getBytesPerLine1(infoHeader.getWidth()), context);
 
 		return img;
 	}
@@ -389,7 +568,7 @@ public class BMPDecoder
 	 * 
 	 * @param infoHeader
 	 *            the <tt>InfoHeader</tt> structure, which was read using
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}
 	 * @param lis
 	 *            the source input
@@ -401,52 +580,34 @@ public class BMPDecoder
 	 * @return the decoded image read from the source input
 	 */
 	public static BufferedImage read4(InfoHeader infoHeader,
-			LittleEndianInputStream lis, ColorEntry[] colorTable)
+			LittleEndianInput lis, ColorEntry[] colorTable)
 			throws IOException
 	{
-		// 2 pixels per byte or 4 bits per pixel.
-		// Color for each pixel specified by the color index in the pallette.
-
-		byte[] ar = new byte[colorTable.length];
-		byte[] ag = new byte[colorTable.length];
-		byte[] ab = new byte[colorTable.length];
-
-		getColorTable(colorTable, ar, ag, ab);
-
-		IndexColorModel icm = new IndexColorModel(4, infoHeader.getNumColors(),
-				ar, ag, ab);
-
-		BufferedImage img = new BufferedImage(infoHeader.getWidth(),
-				infoHeader.getHeight(), BufferedImage.TYPE_BYTE_BINARY, icm);
-
-		WritableRaster raster = img.getRaster();
+		return read4(infoHeader, lis, colorTable, new BMPDecoderContext());
+	}
 
-		// padding
-		int bitsPerLine = infoHeader.getWidth() * 4;
-		if (bitsPerLine % 32 != 0) {
-			bitsPerLine = (bitsPerLine / 32 + 1) * 32;
-		}
-		int bytesPerLine = bitsPerLine / 8;
+	static BufferedImage read4(InfoHeader infoHeader,
+			LittleEndianInput lis, ColorEntry[] colorTable,
+			BMPDecoderContext context) throws IOException
+	{
+		return read4(infoHeader, lis,
+				createColorModel(infoHeader, colorTable), context);
+	}
 
-		int[] line = new int[bytesPerLine];
+	private static BufferedImage read4(InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm,
+			BMPDecoderContext context) throws IOException
+	{
+		// 2 pixels per byte or 4 bits per pixel.
+		// Color for each pixel specified by the color index in the pallette.
 
-		for (int y = infoHeader.getHeight() - 1; y >= 0; y--) {
-			// scan line
-			for (int i = 0; i < bytesPerLine; i++) {
-				int b = lis.readUnsignedByte();
-				line[i] = b;
-			}
+		BufferedImage img = context.createImage(infoHeader.getWidth(),
+				getHeight(infoHeader), BufferedImage.TYPE_BYTE_BINARY, icm,
+				false);
 
-			// get pixels
-			for (int x = 0; x < infoHeader.getWidth(); x++) {
-				// get byte index for line
-				int b = x / 2; // 2 pixels per byte
-				int i = x % 2;
-				int n = line[b];
-				int index = getNibble(n, i);
-				raster.setSample(x, y, 0, index);
-			}
-		}
+		// the packed layout of the image matches the scan lines
+		readPacked(infoHeader, lis, img, BMPEncoder
+				.getBytesPerLine4(infoHeader.getWidth()), context);
 
 		return img;
 	}
@@ -457,7 +618,7 @@ public class BMPDecoder
 	 * 
 	 * @param infoHeader
 	 *            the <tt>InfoHeader</tt> structure, which was read using
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}
 	 * @param lis
 	 *            the source input
@@ -469,58 +630,406 @@ public class BMPDecoder
 	 * @return the decoded image read from the source input
 	 */
 	public static BufferedImage read8(InfoHeader infoHeader,
-			LittleEndianInputStream lis, ColorEntry[] colorTable)
+			LittleEndianInput lis, ColorEntry[] colorTable)
 			throws IOException
+	{
+		return read8(infoHeader, lis, colorTable, new BMPDecoderContext());
+	}
+
+	static BufferedImage read8(InfoHeader infoHeader,
+			LittleEndianInput lis, ColorEntry[] colorTable,
+			BMPDecoderContext context) throws IOException
+	{
+		return read8(infoHeader, lis,
+				createColorModel(infoHeader, colorTable), context);
+	}
+
+	private static BufferedImage read8(InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm,
+			BMPDecoderContext context) throws IOException
 	{
 		// 1 byte per pixel
 		// color index 1 (index of color in palette)
 		// lines padded to nearest 32bits
 		// no alpha
 
-		byte[] ar = new byte[colorTable.length];
-		byte[] ag = new byte[colorTable.length];
-		byte[] ab = new byte[colorTable.length];
+		if (isGrayRamp(icm)) {
+			return readGray8(infoHeader, lis, context);
+		}
 
-		getColorTable(colorTable, ar, ag, ab);
+		BufferedImage img = context.createImage(infoHeader.getWidth(),
+				getHeight(infoHeader), BufferedImage.TYPE_BYTE_INDEXED, icm,
+				false);
 
-		IndexColorModel icm = new IndexColorModel(8, infoHeader.getNumColors(),
-				ar, ag, ab);
+		// one byte per pixel, just like the scan lines
+		readPacked(infoHeader, lis, img, BMPEncoder
+				.getBytesPerLine8(infoHeader.getWidth()), context);
 
-		BufferedImage img = new BufferedImage(infoHeader.getWidth(),
-				infoHeader.getHeight(), BufferedImage.TYPE_BYTE_INDEXED, icm);
+		return img;
+	}
 
-		WritableRaster raster = img.getRaster();
+	/**
+	 * Reads 4-bit (<tt>BI_RLE4</tt>) or 8-bit (<tt>BI_RLE8</tt>) run-length
+	 * encoded bitmap raster data, which is interpreted based on the colors
+	 * specified in the palette. Pixels skipped by delta or end-of-line codes
+	 * are set to color index <tt>0</tt>.
+	 * 
+	 * @param infoHeader
+	 *            the <tt>InfoHeader</tt> structure, which was read using
+	 *            {@link #readInfoHeader(LittleEndianInput)
+	 *            readInfoHeader()}
+	 * @param lis
+	 *            the source input
+	 * @param colorTable
+	 *            <tt>ColorEntry</tt> array specifying the palette, which must
+	 *            not be <tt>null</tt>.
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 */
+	public static BufferedImage readRLE(InfoHeader infoHeader,
+			LittleEndianInput lis, ColorEntry[] colorTable)
+			throws IOException
+	{
+		return readRLE(infoHeader, lis, colorTable, new BMPDecoderContext());
+	}
+
+	static BufferedImage readRLE(InfoHeader infoHeader,
+			LittleEndianInput lis, ColorEntry[] colorTable,
+			BMPDecoderContext context) throws IOException
+	{
+		return readRLE(infoHeader, lis,
+				createColorModel(infoHeader, colorTable), context);
+	}
+
+	private static BufferedImage readRLE(final InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm,
+			BMPDecoderContext context) throws IOException
+	{
+		final int width = infoHeader.getWidth();
+		final int height = getHeight(infoHeader);
+		BufferedImage img = context.createImage(width, height,
+				infoHeader.getBitCount() == 4 ? BufferedImage.TYPE_BYTE_BINARY
+						: BufferedImage.TYPE_BYTE_INDEXED,
+				icm, false);
+
+		// every row is passed to the handler, so the image is not cleared
+		final WritableRaster raster = img.getRaster();
+		decodeRLE(infoHeader, lis, context, new LineHandler() {
+
+			@Override
+			public void handleLine(int row, byte[] line)
+			{
+				raster.setDataElements(0, getRow(infoHeader, height, row),
+						width, 1, line);
+			}
+
+		});
+
+		return img;
+	}
+
+	/**
+	 * Receives decoded scan lines in the order of the file.
+	 */
+	private interface LineHandler
+	{
+
+		void handleLine(int row, byte[] line) throws IOException;
+
+	}
+
+	/**
+	 * Decodes run-length encoded scan lines into color indices, one byte per
+	 * pixel, and passes each row of the bitmap to the handler. Rows skipped
+	 * by delta codes or by the end of the bitmap are passed as well, with all
+	 * pixels set to color index <tt>0</tt>.
+	 */
+	private static void decodeRLE(InfoHeader infoHeader,
+			LittleEndianInput lis, BMPDecoderContext context,
+			LineHandler handler) throws IOException
+	{
+		boolean rle4 = infoHeader.getBitCount() == 4;
+		int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+
+		// the current line is decoded into a buffer and passed on as soon
+		// as decoding moves on to another line
+		byte[] line = new byte[width];
+		byte[] absolute = context.getLine(256);
+		int row = 0;
+		int x = 0;
+
+		decode: while (row < height) {
+			int n = lis.readUnsignedByte();
+			int v = lis.readUnsignedByte();
+
+			if (n > 0) {
+				// encoded mode: a run of n pixels, pixels beyond the end of
+				// the line are dropped
+				int end = Math.min(width, x + n);
+				if (rle4) {
+					byte hi = (byte) (v >> 4);
+					byte lo = (byte) (v & 0xF);
+					for (int i = x; i < end; i++) {
+						line[i] = ((i - x) & 1) == 0 ? hi : lo;
+					}
+				} else {
+					Arrays.fill(line, x, end, (byte) v);
+				}
+				x = end;
+				continue;
+			}
+
+			switch (v) {
+			case 0:
+				// end of line
+				endLine(handler, row++, line);
+				x = 0;
+				break;
+			case 1:
+				// end of bitmap
+				break decode;
+			case 2:
+				// delta
+				int dx = lis.readUnsignedByte();
+				int dy = lis.readUnsignedByte();
+				for (int i = 0; i < dy && row < height; i++) {
+					endLine(handler, row++, line);
+				}
+				x = Math.min(width, x + dx);
+				break;
+			default:
+				// absolute mode: v pixels, padded to a 16-bit boundary
+				int bytes = rle4 ? (v + 1) / 2 : v;
+				lis.readFully(absolute, 0, bytes + (bytes & 1));
+				for (int i = 0; i < v && x + i < width; i++) {
+					if (rle4) {
+						line[x + i] = (byte) getNibble(absolute[i / 2],
+								i % 2);
+					} else {
+						line[x + i] = absolute[i];
+					}
+				}
+				x = Math.min(width, x + v);
+			}
+		}
+
+		while (row < height) {
+			endLine(handler, row++, line);
+		}
+	}
+
+	/**
+	 * Passes a decoded line of color indices to the handler and clears the
+	 * line buffer.
+	 */
+	private static void endLine(LineHandler handler, int row, byte[] line)
+			throws IOException
+	{
+		handler.handleLine(row, line);
+		Arrays.fill(line, (byte) 0);
+	}
+
+	/**
+	 * Checks whether a palette is the identity gray ramp, i.e. it has 256
+	 * entries and entry <tt>i</tt> is the gray level <tt>i</tt>.
+	 */
+	private static boolean isGrayRamp(IndexColorModel icm)
+	{
+		if (icm.getMapSize() != 256) {
+			return false;
+		}
+		for (int i = 0; i < 256; i++) {
+			if (icm.getRGB(i) != (0xFF000000 | i * 0x010101)) {
+				return false;
+			}
+		}
+		return true;
+	}
 
-		/*
-		 * //create color pallette int[] c = new int[infoHeader.iNumColors]; for
-		 * (int i = 0; i < c.length; i++) { int r = colorTable[i].bRed; int g =
-		 * colorTable[i].bGreen; int b = colorTable[i].bBlue; c[i] = (r << 16) |
-		 * (g << 8) | (b); }
-		 */
-
-		// padding
-		int dataPerLine = infoHeader.getWidth();
-		int bytesPerLine = dataPerLine;
-		if (bytesPerLine % 4 != 0) {
-			bytesPerLine = (bytesPerLine / 4 + 1) * 4;
-		}
-		int padBytesPerLine = bytesPerLine - dataPerLine;
-
-		for (int y = infoHeader.getHeight() - 1; y >= 0; y--) {
-			for (int x = 0; x < infoHeader.getWidth(); x++) {
-				int b = lis.readUnsignedByte();
-				// int clr = c[b];
-				// img.setRGB(x, y, clr);
-				// set sample (color index) for pixel
-				raster.setSample(x, y, 0, b);
+	/**
+	 * Reads 8-bit uncompressed bitmap raster data with an identity gray ramp
+	 * palette into an image of type <tt>TYPE_BYTE_GRAY</tt>. The color
+	 * indices are used as gray samples, scan lines are copied in bulk.
+	 */
+	private static BufferedImage readGray8(InfoHeader infoHeader,
+			LittleEndianInput lis, BMPDecoderContext context)
+			throws IOException
+	{
+		BufferedImage img = context.createImage(infoHeader.getWidth(),
+				getHeight(infoHeader), BufferedImage.TYPE_BYTE_GRAY, null,
+				false);
+		readPacked(infoHeader, lis, img,
+				BMPEncoder.getBytesPerLine8(infoHeader.getWidth()), context);
+		return img;
+	}
+
+	/**
+	 * Reads uncompressed 1, 4 or 8-bit scan lines into an indexed or gray
+	 * image. If the image stores its pixels with the same number of bits as
+	 * the scan lines, the data is read directly into the image's data buffer,
+	 * since rows of packed images are laid out like scan lines without
+	 * padding.
+	 */
+	private static void readPacked(InfoHeader infoHeader,
+			LittleEndianInput lis, BufferedImage img, int bytesPerLine,
+			BMPDecoderContext context) throws IOException
+	{
+		WritableRaster raster = img.getRaster();
+		int bitCount = infoHeader.getBitCount();
+		int width = raster.getWidth();
+		int height = getHeight(infoHeader);
+
+		if (raster.getSampleModel().getSampleSize(0) != bitCount) {
+			// e.g. a 4-bit file with a palette of at most 4 colors, the
+			// indices are transferred as one byte per pixel
+			byte[] line = context.getLine(bytesPerLine);
+			RowConverter converter = RowConverters.get(
+					PixelFormat.forBitCount(bitCount), PixelFormat.INDEXED8);
+			byte[] indices = new byte[width];
+			for (int row = 0; row < height; row++) {
+				int y = getRow(infoHeader, height, row);
+				lis.readFully(line, 0, bytesPerLine);
+				converter.convert(line, 0, indices, 0, width);
+				raster.setDataElements(0, y, width, 1, indices);
 			}
+			return;
+		}
+
+		byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+		int stride = (width * bitCount + 7) / 8;
+		int padBytesPerLine = bytesPerLine - stride;
+		byte[] padding = context.getLine(padBytesPerLine);
 
-			lis.skip(padBytesPerLine);
+		for (int row = 0; row < height; row++) {
+			int y = getRow(infoHeader, height, row);
+			lis.readFully(data, y * stride, stride);
+			lis.readFully(padding, 0, padBytesPerLine);
+		}
+	}
+
+	/**
+	 * Reads 16-bit uncompressed bitmap raster data. With <tt>BI_RGB</tt>
+	 * compression, pixels have 5 bits per color channel. With
+	 * <tt>BI_BITFIELDS</tt>, the channel masks are taken from an
+	 * <tt>InfoHeader5</tt> or read from the input following an
+	 * <tt>InfoHeader3</tt>. Channels are scaled to 8 bits.
+	 * 
+	 * @param lis
+	 *            the source input
+	 * @param infoHeader
+	 *            the <tt>InfoHeader</tt> structure, which was read using
+	 *            {@link #readInfoHeader(LittleEndianInput)
+	 *            readInfoHeader()}
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 */
+	public static BufferedImage read16(InfoHeader infoHeader,
+			LittleEndianInput lis) throws IOException
+	{
+		return read16(infoHeader, lis, 0, new BMPDecoderOptions(),
+				new BMPDecoderContext());
+	}
+
+	static BufferedImage read16(InfoHeader infoHeader,
+			LittleEndianInput lis, long dataOffset, BMPDecoderOptions options,
+			BMPDecoderContext context) throws IOException
+	{
+		int[] masks = readMasks16(infoHeader, lis);
+		int redMask = masks[0];
+		int greenMask = masks[1];
+		int blueMask = masks[2];
+		skipToData(lis, dataOffset);
+
+		int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+		int type = getImageType(options, BufferedImage.TYPE_INT_RGB);
+		BufferedImage img = context.createImage(width, height, type, null,
+				false);
+		PixelFormat format = PixelFormat.forImageType(type);
+		Object data = RowConverters.getData(img);
+		int rowLength = format.getRowLength(width);
+
+		// opaque pixels are valid in all int formats, other formats are
+		// converted from a row buffer
+		boolean direct = format.isInts();
+		int[] pixels = direct ? (int[]) data : context.getPixels(width);
+		RowConverter converter = direct ? null
+				: RowConverters.get(PixelFormat.INT_ARGB, format);
+
+		int redShift = Integer.numberOfTrailingZeros(redMask);
+		int greenShift = Integer.numberOfTrailingZeros(greenMask);
+		int blueShift = Integer.numberOfTrailingZeros(blueMask);
+		int[] red = context.getScaleTable(0, redMask & 0xFFFF);
+		int[] green = context.getScaleTable(1, greenMask & 0xFFFF);
+		int[] blue = context.getScaleTable(2, blueMask & 0xFFFF);
+
+		int padding = BMPEncoder.getBytesPerLine16(width) - width * 2;
+		short[] line = context.getShorts(width);
+		for (int row = 0; row < height; row++) {
+			int y = getRow(infoHeader, height, row);
+			lis.readShorts(line, 0, width);
+			lis.skip(padding, true);
+			int offset = direct ? y * width : 0;
+			for (int x = 0; x < width; x++) {
+				int v = line[x] & 0xFFFF;
+				pixels[offset + x] = 0xFF000000
+						| red[(v & redMask) >>> redShift] << 16
+						| green[(v & greenMask) >>> greenShift] << 8
+						| blue[(v & blueMask) >>> blueShift];
+			}
+			if (!direct) {
+				converter.convert(pixels, 0, data, y * rowLength, width);
+			}
 		}
 
 		return img;
 	}
 
+	/**
+	 * Determines the red, green and blue channel masks of 16-bit pixels. With
+	 * <tt>BI_BITFIELDS</tt> compression, they are taken from an
+	 * <tt>InfoHeader5</tt> or read from the input following an
+	 * <tt>InfoHeader3</tt>.
+	 */
+	private static int[] readMasks16(InfoHeader infoHeader,
+			LittleEndianInput lis) throws IOException
+	{
+		if (infoHeader.getCompression() != BMPConstants.BI_BITFIELDS) {
+			return new int[] { 0x7C00, 0x03E0, 0x001F };
+		}
+		if (infoHeader instanceof InfoHeader5) {
+			InfoHeader5 ih = (InfoHeader5) infoHeader;
+			return new int[] { ih.iRedMask, ih.iGreenMask, ih.iBlueMask };
+		}
+		int redMask = lis.readIntLE();
+		int greenMask = lis.readIntLE();
+		int blueMask = lis.readIntLE();
+		return new int[] { redMask, greenMask, blueMask };
+	}
+
+	/**
+	 * Creates a table that maps the values of a color channel to 8 bits.
+	 * 
+	 * @param mask
+	 *            the bits of the channel within a pixel
+	 * @return the table, indexed by the unshifted channel value
+	 */
+	static int[] createScaleTable(int mask)
+	{
+		if (mask == 0) {
+			return new int[1];
+		}
+		int max = mask >>> Integer.numberOfTrailingZeros(mask);
+		int[] table = new int[max + 1];
+		for (int v = 0; v <= max; v++) {
+			table[v] = (v * 255 + max / 2) / max;
+		}
+		return table;
+	}
+
 	/**
 	 * Reads 24-bit uncompressed bitmap raster data.
 	 * 
@@ -528,14 +1037,22 @@ public class BMPDecoder
 	 *            the source input
 	 * @param infoHeader
 	 *            the <tt>InfoHeader</tt> structure, which was read using
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}
 	 * @throws IOException
 	 *             if an error occurs
 	 * @return the decoded image read from the source input
 	 */
 	public static BufferedImage read24(InfoHeader infoHeader,
-			LittleEndianInputStream lis) throws IOException
+			LittleEndianInput lis) throws IOException
+	{
+		return read24(infoHeader, lis, new BMPDecoderOptions(),
+				new BMPDecoderContext());
+	}
+
+	static BufferedImage read24(InfoHeader infoHeader,
+			LittleEndianInput lis, BMPDecoderOptions options,
+			BMPDecoderContext context) throws IOException
 	{
 		// 3 bytes per pixel
 		// blue 1
@@ -544,34 +1061,15 @@ public class BMPDecoder
 		// lines padded to nearest 32 bits
 		// no alpha
 
-		BufferedImage img = new BufferedImage(infoHeader.getWidth(),
-				infoHeader.getHeight(), BufferedImage.TYPE_INT_RGB);
+		int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+		int type = getImageType(options, BufferedImage.TYPE_INT_RGB);
+		BufferedImage img = context.createImage(width, height, type, null,
+				false);
 
-		WritableRaster raster = img.getRaster();
-
-		// padding to nearest 32 bits
-		int dataPerLine = infoHeader.getWidth() * 3;
-		int bytesPerLine = dataPerLine;
-		if (bytesPerLine % 4 != 0) {
-			bytesPerLine = (bytesPerLine / 4 + 1) * 4;
-		}
-		int padBytesPerLine = bytesPerLine - dataPerLine;
-
-		for (int y = infoHeader.getHeight() - 1; y >= 0; y--) {
-			for (int x = 0; x < infoHeader.getWidth(); x++) {
-				int b = lis.readUnsignedByte();
-				int g = lis.readUnsignedByte();
-				int r = lis.readUnsignedByte();
-
-				// int c = 0x00000000 | (r << 16) | (g << 8) | (b);
-				// System.out.println(x + ","+y+"="+Integer.toHexString(c));
-				// img.setRGB(x, y, c);
-				raster.setSample(x, y, 0, r);
-				raster.setSample(x, y, 1, g);
-				raster.setSample(x, y, 2, b);
-			}
-			lis.skip(padBytesPerLine);
-		}
+		// lines padded to nearest 32 bits
+		readRows(infoHeader, lis, PixelFormat.BGR24,
+				BMPEncoder.getBytesPerLine24(width), img, context);
 
 		return img;
 	}
@@ -583,14 +1081,22 @@ public class BMPDecoder
 	 *            the source input
 	 * @param infoHeader
 	 *            the <tt>InfoHeader</tt> structure, which was read using
-	 *            {@link #readInfoHeader(LittleEndianInputStream)
+	 *            {@link #readInfoHeader(LittleEndianInput)
 	 *            readInfoHeader()}
 	 * @throws IOException
 	 *             if an error occurs
 	 * @return the decoded image read from the source input
 	 */
 	public static BufferedImage read32(InfoHeader infoHeader,
-			LittleEndianInputStream lis) throws IOException
+			LittleEndianInput lis) throws IOException
+	{
+		return read32(infoHeader, lis, new BMPDecoderOptions(),
+				new BMPDecoderContext());
+	}
+
+	static BufferedImage read32(InfoHeader infoHeader,
+			LittleEndianInput lis, BMPDecoderOptions options,
+			BMPDecoderContext context) throws IOException
 	{
 		// 4 bytes per pixel
 		// blue 1
@@ -599,28 +1105,182 @@ public class BMPDecoder
 		// alpha 1
 		// No padding since each pixel = 32 bits
 
-		BufferedImage img = new BufferedImage(infoHeader.getWidth(),
-				infoHeader.getHeight(), BufferedImage.TYPE_INT_ARGB);
-
-		WritableRaster rgb = img.getRaster();
-		WritableRaster alpha = img.getAlphaRaster();
-
-		for (int y = infoHeader.getHeight() - 1; y >= 0; y--) {
-			for (int x = 0; x < infoHeader.getWidth(); x++) {
-				int b = lis.readUnsignedByte();
-				int g = lis.readUnsignedByte();
-				int r = lis.readUnsignedByte();
-				int a = lis.readUnsignedByte();
-				rgb.setSample(x, y, 0, r);
-				rgb.setSample(x, y, 1, g);
-				rgb.setSample(x, y, 2, b);
-				alpha.setSample(x, y, 0, a);
+		int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+		int type = getImageType(options, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage img = context.createImage(width, height, type, null,
+				false);
+
+		readRows(infoHeader, lis, PixelFormat.BGRA32, width * 4, img,
+				context);
+
+		return img;
+	}
+
+	/**
+	 * Reads an image reduced by the scale factor of the options. The scan
+	 * lines are converted to colors and streamed through an
+	 * {@link AreaAverager} as they are read, or as they are decoded for
+	 * run-length encoded bitmaps, so the image is never held at full size.
+	 */
+	private static BufferedImage readScaled(final InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm, long dataOffset,
+			BMPDecoderOptions options, BMPDecoderContext context)
+			throws IOException
+	{
+		final int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+		int scaledWidth = getScaledSize(width, options.getScaleFactor());
+		final int scaledHeight = getScaledSize(height,
+				options.getScaleFactor());
+		int bitCount = infoHeader.getBitCount();
+		int compression = infoHeader.getCompression();
+		boolean rle = bitCount == 8 && compression == BMPConstants.BI_RLE8
+				|| bitCount == 4 && compression == BMPConstants.BI_RLE4;
+		if (!rle && !BitmapLayout.isUncompressed(infoHeader)
+				&& !((bitCount == 16 || bitCount == 32)
+						&& (compression == BMPConstants.BI_RGB
+								|| compression == BMPConstants.BI_BITFIELDS))) {
+			throw unrecognizedFormat(infoHeader);
+		}
+
+		// converts scan lines, or the color indices decoded from run-length
+		// encoded lines, to colors; 32-bit pixels are read like read32()
+		final RowConverter converter;
+		if (icm != null) {
+			int[] colors = new int[icm.getMapSize()];
+			icm.getRGBs(colors);
+			converter = RowConverters.forPalette(rle ? PixelFormat.INDEXED8
+					: PixelFormat.forBitCount(bitCount), colors);
+		} else if (bitCount == 16) {
+			int[] masks = readMasks16(infoHeader, lis);
+			converter = RowConverters.forMasks16(masks[0], masks[1],
+					masks[2]);
+		} else {
+			converter = RowConverters.get(PixelFormat.forBitCount(bitCount),
+					PixelFormat.INT_ARGB);
+		}
+		skipToData(lis, dataOffset);
+
+		boolean alpha = icm != null ? icm.hasAlpha() : bitCount == 32;
+		final BufferedImage img = createScaledImage(scaledWidth,
+				scaledHeight, alpha, options, context);
+		final RowConverter writer = RowConverters.getWriter(img,
+				PixelFormat.INT_ARGB);
+		final AreaAverager averager = new AreaAverager(width, height,
+				scaledWidth, scaledHeight);
+		final int[] pixels = context.getPixels(width);
+		final int[] scaled = new int[scaledWidth];
+		LineHandler handler = new LineHandler() {
+
+			@Override
+			public void handleLine(int row, byte[] line)
+			{
+				converter.convert(line, 0, pixels, 0, width);
+				if (averager.addRow(pixels, 0, scaled, 0)) {
+					int y = getRow(infoHeader, scaledHeight,
+							averager.getRowCount() - 1);
+					RowConverters.writeRow(img, y, writer, scaled, 0, scaled);
+				}
 			}
+
+		};
+
+		if (rle) {
+			decodeRLE(infoHeader, lis, context, handler);
+			return img;
 		}
 
+		int bytesPerLine = BMPEncoder.getBytesPerLine(width, bitCount);
+		byte[] line = context.getLine(bytesPerLine);
+		for (int row = 0; row < height; row++) {
+			lis.readFully(line, 0, bytesPerLine);
+			handler.handleLine(row, line);
+		}
 		return img;
 	}
 
+	private static int getScaledSize(int size, double scaleFactor)
+	{
+		return Math.max(1, (int) Math.round(size * scaleFactor));
+	}
+
+	private static BufferedImage createScaledImage(int width, int height,
+			boolean alpha, BMPDecoderOptions options,
+			BMPDecoderContext context)
+	{
+		int type = getImageType(options, alpha ? BufferedImage.TYPE_INT_ARGB
+				: BufferedImage.TYPE_INT_RGB);
+		return context.createImage(width, height, type, null, false);
+	}
+
+	/**
+	 * Reads uncompressed scan lines into an image with the layout of the
+	 * bitmap, without converting the pixels. The scan lines of top-down
+	 * bitmaps are read in one piece.
+	 */
+	private static BufferedImage readNative(InfoHeader infoHeader,
+			LittleEndianInput lis, IndexColorModel icm,
+			BMPDecoderContext context) throws IOException
+	{
+		int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+		int bitCount = infoHeader.getBitCount();
+		int bytesPerLine = BMPEncoder.getBytesPerLine(width, bitCount);
+		if ((long) bytesPerLine * height > Integer.MAX_VALUE) {
+			throw new IOException(
+					"Bitmap too large: " + width + "x" + height);
+		}
+		BufferedImage img = context.createNativeImage(width, height,
+				bitCount, icm);
+		byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer())
+				.getData();
+		if (infoHeader.getHeight() < 0) {
+			lis.readFully(data, 0, bytesPerLine * height);
+		} else {
+			for (int row = 0; row < height; row++) {
+				lis.readFully(data, (height - 1 - row) * bytesPerLine,
+						bytesPerLine);
+			}
+		}
+		return img;
+	}
+
+	/**
+	 * @return the image type selected by the options, or the default type
+	 */
+	private static int getImageType(BMPDecoderOptions options,
+			int defaultType)
+	{
+		int type = options.getImageType();
+		return type == BMPDecoderOptions.IMAGE_TYPE_DEFAULT ? defaultType
+				: type;
+	}
+
+	/**
+	 * Reads uncompressed scan lines and converts them into the rows of an
+	 * image of one of the types supported by
+	 * {@link PixelFormat#forImageType(int)}, which has no padding between
+	 * rows.
+	 */
+	private static void readRows(InfoHeader infoHeader, LittleEndianInput lis,
+			PixelFormat lineFormat, int bytesPerLine, BufferedImage img,
+			BMPDecoderContext context) throws IOException
+	{
+		int width = infoHeader.getWidth();
+		int height = getHeight(infoHeader);
+		PixelFormat format = PixelFormat.forImageType(img.getType());
+		Object data = RowConverters.getData(img);
+		int rowLength = format.getRowLength(width);
+		RowConverter converter = RowConverters.get(lineFormat, format);
+		byte[] line = context.getLine(bytesPerLine);
+		for (int row = 0; row < height; row++) {
+			int y = getRow(infoHeader, height, row);
+			lis.readFully(line, 0, bytesPerLine);
+			converter.convert(line, 0, data, y * rowLength, width);
+		}
+	}
+
 	/**
 	 * Reads and decodes BMP data from the source file.
 	 * 
@@ -680,6 +1340,25 @@ public class BMPDecoder
 		return d.getBufferedImage();
 	}
 
+	/**
+	 * Reads and decodes BMP data from the source input, using the specified
+	 * options.
+	 * 
+	 * @param in
+	 *            the source input
+	 * @param options
+	 *            the options that control decoding
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 */
+	public static BufferedImage read(InputStream in, BMPDecoderOptions options)
+			throws IOException
+	{
+		BMPDecoder d = new BMPDecoder(in, options);
+		return d.getBufferedImage();
+	}
+
 	/**
 	 * Reads and decodes BMP data from the source file, together with metadata.
 	 * 
@@ -739,4 +1418,23 @@ public class BMPDecoder
 		BMPImage ret = new BMPImage(d.getBufferedImage(), d.getInfoHeader());
 		return ret;
 	}
+
+	/**
+	 * Reads and decodes BMP data from the source input, together with
+	 * metadata, using the specified options.
+	 * 
+	 * @param in
+	 *            the source input
+	 * @param options
+	 *            the options that control decoding
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 */
+	public static BMPImage readExt(InputStream in, BMPDecoderOptions options)
+			throws IOException
+	{
+		BMPDecoder d = new BMPDecoder(in, options);
+		return new BMPImage(d.getBufferedImage(), d.getInfoHeader());
+	}
 }
@@ -0,0 +1,338 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Scratch buffers for decoding images, kept across calls so that decoding
+ * many images does not allocate row buffers, palette arrays and conversion
+ * tables for each image.
+ *
+ * A context grows its buffers to the largest image decoded with it and never
+ * shrinks them. It must not be used by more than one thread at a time; the
+ * usual pattern is one context per worker thread, for example the one
+ * returned by {@link #forCurrentThread()}.
+ *
+ * If an {@link ImageBufferPool} is configured, the pixel arrays of decoded
+ * images are taken from the pool, and callers return images to the pool when
+ * they are done with them. Likewise, the color models of indexed images are
+ * shared between images with identical palettes if a {@link PaletteCache} is
+ * configured.
+ */
+public class BMPDecoderContext
+{
+
+	private static final ThreadLocal<BMPDecoderContext> threadContexts = //
+			new ThreadLocal<BMPDecoderContext>() {
+
+				@Override
+				protected BMPDecoderContext initialValue()
+				{
+					return new BMPDecoderContext();
+				}
+
+			};
+
+	/**
+	 * Returns the context of the current thread, which is created on first
+	 * use and kept for the lifetime of the thread.
+	 *
+	 * @return the context of the current thread
+	 */
+	public static BMPDecoderContext forCurrentThread()
+	{
+		return threadContexts.get();
+	}
+
+	private byte[] line = new byte[0];
+	private int[] pixels = new int[0];
+	private short[] shorts = new short[0];
+	private final int[] scaleMasks = new int[3];
+	private final int[][] scaleTables = new int[3][];
+	private final byte[] palette = new byte[1024];
+	private ImageBufferPool imagePool = null;
+	private PaletteCache paletteCache = null;
+	private final ColorModel[] colorModels = new ColorModel[14];
+
+	/**
+	 * Creates a new context with empty buffers.
+	 */
+	public BMPDecoderContext()
+	{
+	}
+
+	/**
+	 * @return the pool that the pixel arrays of decoded images are taken from,
+	 *         or <tt>null</tt> if images are allocated for each decode
+	 */
+	public ImageBufferPool getImagePool()
+	{
+		return imagePool;
+	}
+
+	/**
+	 * @param imagePool
+	 *            the pool that the pixel arrays of decoded images are taken
+	 *            from, may be <tt>null</tt> to allocate them for each decode
+	 * @see #getImagePool()
+	 */
+	public void setImagePool(ImageBufferPool imagePool)
+	{
+		this.imagePool = imagePool;
+	}
+
+	/**
+	 * @return the cache that the color models of indexed images are taken
+	 *         from, or <tt>null</tt> if they are created for each decode
+	 */
+	public PaletteCache getPaletteCache()
+	{
+		return paletteCache;
+	}
+
+	/**
+	 * @param paletteCache
+	 *            the cache that the color models of indexed images are taken
+	 *            from, may be <tt>null</tt> to create them for each decode
+	 * @see #getPaletteCache()
+	 */
+	public void setPaletteCache(PaletteCache paletteCache)
+	{
+		this.paletteCache = paletteCache;
+	}
+
+	/**
+	 * Reads and decodes BMP data from the source input, using the buffers of
+	 * this context.
+	 *
+	 * @param in
+	 *            the source input
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 * @see BMPDecoder#read(InputStream)
+	 */
+	public BufferedImage read(InputStream in) throws IOException
+	{
+		return read(in, new BMPDecoderOptions());
+	}
+
+	/**
+	 * Reads and decodes BMP data from the source input, using the specified
+	 * options and the buffers of this context.
+	 *
+	 * @param in
+	 *            the source input
+	 * @param options
+	 *            the options that control decoding
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 * @see BMPDecoder#read(InputStream, BMPDecoderOptions)
+	 */
+	public BufferedImage read(InputStream in, BMPDecoderOptions options)
+			throws IOException
+	{
+		return new BMPDecoder(in, options, this).getBufferedImage();
+	}
+
+	/**
+	 * Reads and decodes BMP data from the source input, together with
+	 * metadata, using the buffers of this context.
+	 *
+	 * @param in
+	 *            the source input
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 * @see BMPDecoder#readExt(InputStream)
+	 */
+	public BMPImage readExt(InputStream in) throws IOException
+	{
+		return readExt(in, new BMPDecoderOptions());
+	}
+
+	/**
+	 * Reads and decodes BMP data from the source input, together with
+	 * metadata, using the specified options and the buffers of this context.
+	 *
+	 * @param in
+	 *            the source input
+	 * @param options
+	 *            the options that control decoding
+	 * @throws IOException
+	 *             if an error occurs
+	 * @return the decoded image read from the source input
+	 * @see BMPDecoder#readExt(InputStream, BMPDecoderOptions)
+	 */
+	public BMPImage readExt(InputStream in, BMPDecoderOptions options)
+			throws IOException
+	{
+		BMPDecoder d = new BMPDecoder(in, options, this);
+		return new BMPImage(d.getBufferedImage(), d.getInfoHeader());
+	}
+
+	/**
+	 * @return a buffer of at least <tt>size</tt> bytes for scan line data
+	 */
+	byte[] getLine(int size)
+	{
+		if (line.length < size) {
+			line = new byte[size];
+		}
+		return line;
+	}
+
+	/**
+	 * @return a buffer for a row of <tt>int</tt> samples
+	 */
+	int[] getPixels(int width)
+	{
+		if (pixels.length < width) {
+			pixels = new int[width];
+		}
+		return pixels;
+	}
+
+	/**
+	 * @return a buffer for a row of 16-bit pixels
+	 */
+	short[] getShorts(int width)
+	{
+		if (shorts.length < width) {
+			shorts = new short[width];
+		}
+		return shorts;
+	}
+
+	/**
+	 * @return a buffer for the raw bytes of a palette with up to 256 entries
+	 */
+	byte[] getPalette()
+	{
+		return palette;
+	}
+
+	/**
+	 * @return the table for scaling the values of a color channel to 8 bits,
+	 *         see {@link BMPDecoder#read16}
+	 */
+	int[] getScaleTable(int channel, int mask)
+	{
+		if (scaleTables[channel] == null || scaleMasks[channel] != mask) {
+			scaleTables[channel] = BMPDecoder.createScaleTable(mask);
+			scaleMasks[channel] = mask;
+		}
+		return scaleTables[channel];
+	}
+
+	/**
+	 * Creates an image for decoding into. If an image pool is configured, the
+	 * pixel array is taken from the pool and its contents are undefined
+	 * unless <tt>clear</tt> is set; without a pool, a new, zeroed image is
+	 * created. Indexed images store their pixels with the pixel size of the
+	 * color model, even if it has fewer entries than that size allows.
+	 *
+	 * @param type
+	 *            one of the predefined image types of <tt>BufferedImage</tt>
+	 * @param icm
+	 *            the color model of indexed image types, <tt>null</tt>
+	 *            otherwise
+	 * @param clear
+	 *            whether the pixels of a pooled image must be zeroed
+	 */
+	BufferedImage createImage(int width, int height, int type,
+			IndexColorModel icm, boolean clear)
+	{
+		if (imagePool == null && icm == null) {
+			return new BufferedImage(width, height, type);
+		}
+
+		ColorModel cm = icm != null ? icm : getColorModel(type);
+		SampleModel sm;
+		if (type == BufferedImage.TYPE_BYTE_INDEXED) {
+			// the sample model of 8-bit color models is not recognized as
+			// TYPE_BYTE_INDEXED by BufferedImage
+			sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width,
+					height, 1, width, new int[] { 0 });
+		} else if (type == BufferedImage.TYPE_3BYTE_BGR) {
+			// the compatible sample model of the color model is RGB
+			sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width,
+					height, 3, width * 3, new int[] { 2, 1, 0 });
+		} else if (type == BufferedImage.TYPE_4BYTE_ABGR) {
+			sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width,
+					height, 4, width * 4, new int[] { 3, 2, 1, 0 });
+		} else {
+			sm = cm.createCompatibleSampleModel(width, height);
+		}
+		// all supported types store their pixels in rows without padding
+		int length;
+		if (sm instanceof MultiPixelPackedSampleModel) {
+			length = ((MultiPixelPackedSampleModel) sm).getScanlineStride()
+					* height;
+		} else if (sm instanceof ComponentSampleModel) {
+			length = ((ComponentSampleModel) sm).getScanlineStride() * height;
+		} else {
+			length = width * height;
+		}
+
+		DataBuffer buffer;
+		if (sm.getDataType() == DataBuffer.TYPE_INT) {
+			int[] data = imagePool == null ? new int[length]
+					: imagePool.takeInts(length);
+			if (clear && imagePool != null) {
+				Arrays.fill(data, 0);
+			}
+			buffer = new DataBufferInt(data, length);
+		} else {
+			byte[] data = imagePool == null ? new byte[length]
+					: imagePool.takeBytes(length);
+			if (clear && imagePool != null) {
+				Arrays.fill(data, (byte) 0);
+			}
+			buffer = new DataBufferByte(data, length);
+		}
+		WritableRaster raster = Raster.createWritableRaster(sm, buffer, null);
+		return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+	}
+
+	/**
+	 * Creates an image with the layout of a bitmap for reading scan lines
+	 * into, see {@link BMPNativeImages}. If an image pool is configured, the
+	 * pixel array is taken from the pool and its contents are undefined.
+	 *
+	 * @param icm
+	 *            the color model of indexed bitmaps, <tt>null</tt> otherwise
+	 */
+	BufferedImage createNativeImage(int width, int height, int bitCount,
+			IndexColorModel icm)
+	{
+		int length = BMPEncoder.getBytesPerLine(width, bitCount) * height;
+		byte[] data = imagePool == null ? new byte[length]
+				: imagePool.takeBytes(length);
+		return BMPNativeImages.createImage(width, height, bitCount, icm,
+				data);
+	}
+
+	private ColorModel getColorModel(int type)
+	{
+		if (colorModels[type] == null) {
+			colorModels[type] = new BufferedImage(1, 1, type).getColorModel();
+		}
+		return colorModels[type];
+	}
+
+}
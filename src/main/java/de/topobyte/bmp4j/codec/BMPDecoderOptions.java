@@ -0,0 +1,130 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Options that control how images are decoded by {@link BMPDecoder}.
+ */
+public class BMPDecoderOptions
+{
+
+	/**
+	 * Images are decoded to the type that matches the bitmap: 16 and 24-bit
+	 * bitmaps to <tt>TYPE_INT_RGB</tt> and 32-bit bitmaps to
+	 * <tt>TYPE_INT_ARGB</tt>.
+	 */
+	public static final int IMAGE_TYPE_DEFAULT = BufferedImage.TYPE_CUSTOM;
+
+	private int imageType = IMAGE_TYPE_DEFAULT;
+	private boolean nativeLayout = false;
+	private double scaleFactor = 1;
+
+	/**
+	 * Creates a set of options with default values.
+	 */
+	public BMPDecoderOptions()
+	{
+	}
+
+	/**
+	 * The type of the images that 16, 24 and 32-bit bitmaps are decoded to,
+	 * which is {@link #IMAGE_TYPE_DEFAULT} or one of
+	 * <tt>TYPE_INT_RGB</tt>, <tt>TYPE_INT_ARGB</tt>,
+	 * <tt>TYPE_INT_ARGB_PRE</tt>, <tt>TYPE_3BYTE_BGR</tt> and
+	 * <tt>TYPE_4BYTE_ABGR</tt>. Pixels are converted to the type while the
+	 * scan lines are read, including premultiplication with alpha, so no
+	 * separate conversion pass is needed. Types without alpha channel drop
+	 * the alpha channel of 32-bit bitmaps. Indexed bitmaps are always decoded
+	 * to indexed or gray images.
+	 *
+	 * @return the image type
+	 */
+	public int getImageType()
+	{
+		return imageType;
+	}
+
+	/**
+	 * @param imageType
+	 *            the image type
+	 * @see #getImageType()
+	 */
+	public void setImageType(int imageType)
+	{
+		switch (imageType) {
+		case IMAGE_TYPE_DEFAULT:
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_ARGB_PRE:
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR:
+			this.imageType = imageType;
+			break;
+		default:
+			throw new IllegalArgumentException(
+					"Unsupported image type: " + imageType);
+		}
+	}
+
+	/**
+	 * Whether uncompressed bitmaps with 1, 4, 8, 24 or 32 bits per pixel are
+	 * decoded to images with the layout of the bitmap, see
+	 * {@link BMPNativeImages}. The scan lines are read into the data buffer of
+	 * the image as they are, without any conversion, and the image can be
+	 * written again with a single bulk write. If set, the image type is
+	 * ignored for such bitmaps. Disabled by default.
+	 *
+	 * @return whether to decode to images with the layout of the bitmap
+	 */
+	public boolean isNativeLayout()
+	{
+		return nativeLayout;
+	}
+
+	/**
+	 * @param nativeLayout
+	 *            whether to decode to images with the layout of the bitmap
+	 * @see #isNativeLayout()
+	 */
+	public void setNativeLayout(boolean nativeLayout)
+	{
+		this.nativeLayout = nativeLayout;
+	}
+
+	/**
+	 * The factor by which the width and height of images are reduced while
+	 * decoding, which is in the range <tt>(0, 1]</tt>. For factors below 1,
+	 * each pixel of the decoded image is the area average of the bitmap
+	 * pixels it covers, comparable to <tt>Image.SCALE_AREA_AVERAGING</tt>.
+	 * The size of the decoded image is the rounded product of factor and
+	 * bitmap size, but at least 1.
+	 *
+	 * Bitmaps are reduced while their scan lines are read, or decoded in the
+	 * case of run-length encoded bitmaps, without ever holding the full-size
+	 * image. Reduced images are always of an <tt>int</tt> or byte RGB type
+	 * selected as described for {@link #getImageType()}, also for indexed
+	 * bitmaps, and the native layout option does not apply. The default is 1,
+	 * i.e. no reduction.
+	 *
+	 * @return the scale factor
+	 */
+	public double getScaleFactor()
+	{
+		return scaleFactor;
+	}
+
+	/**
+	 * @param scaleFactor
+	 *            the scale factor
+	 * @see #getScaleFactor()
+	 */
+	public void setScaleFactor(double scaleFactor)
+	{
+		if (!(scaleFactor > 0 && scaleFactor <= 1)) {
+			throw new IllegalArgumentException(
+					"Invalid scale factor: " + scaleFactor);
+		}
+		this.scaleFactor = scaleFactor;
+	}
+
+}
@@ -0,0 +1,358 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import de.topobyte.bmp4j.io.BufferedLittleEndianFile;
+
+/**
+ * Modifies the pixels of an existing, uncompressed BMP file in place.
+ *
+ * Only the bytes of the affected scan lines are rewritten, the rest of the
+ * file is left untouched. Pixels are converted to the color depth of the
+ * file. For indexed files, colors are mapped to the closest palette entry.
+ */
+public class BMPEditor implements Closeable
+{
+
+	private final BufferedLittleEndianFile file;
+	private final FileHeader fileHeader;
+	private final InfoHeader infoHeader;
+	private final BitmapLayout layout;
+
+	/**
+	 * The maximum number of colors for which the palette entry is cached.
+	 */
+	private static final int LOOKUP_SIZE = 4096;
+
+	private Palette palette;
+	private ColorTable paletteLookup;
+
+	/**
+	 * Opens the specified file for editing.
+	 *
+	 * @param file
+	 *            the BMP file
+	 * @return the editor
+	 * @throws IOException
+	 *             if an error occurs or the file is not an uncompressed BMP
+	 *             file
+	 */
+	public static BMPEditor open(Path file) throws IOException
+	{
+		return new BMPEditor(new BufferedLittleEndianFile(file, "rw"));
+	}
+
+	/**
+	 * Opens the specified file for editing.
+	 *
+	 * @param file
+	 *            the BMP file
+	 * @throws IOException
+	 *             if an error occurs or the file is not an uncompressed BMP
+	 *             file
+	 */
+	public BMPEditor(File file) throws IOException
+	{
+		this(new BufferedLittleEndianFile(file, "rw"));
+	}
+
+	private BMPEditor(BufferedLittleEndianFile file) throws IOException
+	{
+		this.file = file;
+		try {
+			fileHeader = readFileHeader();
+			infoHeader = readInfoHeader();
+			layout = BitmapLayout.of(fileHeader, infoHeader);
+
+			if (layout.bitCount <= 8) {
+				readPalette();
+			}
+		} catch (IOException | RuntimeException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	private FileHeader readFileHeader() throws IOException
+	{
+		file.seek(0);
+		return BMPDecoder.readHeader(file);
+	}
+
+	private InfoHeader readInfoHeader() throws IOException
+	{
+		return BMPDecoder.readInfoHeader(file);
+	}
+
+	private void readPalette() throws IOException
+	{
+		int numColors = infoHeader.getNumColors();
+		file.seek(14 + infoHeader.getSize());
+		palette = Palette.read(file, numColors);
+		paletteLookup = new ColorTable(LOOKUP_SIZE);
+		addPaletteColors();
+	}
+
+	private void addPaletteColors()
+	{
+		for (int i = 0; i < palette.size(); i++) {
+			// prefer the first entry for duplicate colors
+			paletteLookup.add(palette.getRGB(i), i);
+		}
+	}
+
+	public FileHeader getFileHeader()
+	{
+		return fileHeader;
+	}
+
+	public InfoHeader getInfoHeader()
+	{
+		return infoHeader;
+	}
+
+	/**
+	 * @return the width of the image in pixels
+	 */
+	public int getWidth()
+	{
+		return layout.width;
+	}
+
+	/**
+	 * @return the height of the image in pixels
+	 */
+	public int getHeight()
+	{
+		return layout.height;
+	}
+
+	/**
+	 * Overwrites the pixels of the rectangle at the specified position with
+	 * the RGB values of the image.
+	 *
+	 * @param x
+	 *            the column at which the rectangle starts
+	 * @param y
+	 *            the row at which the rectangle starts
+	 * @param image
+	 *            the new pixels
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void write(int x, int y, BufferedImage image) throws IOException
+	{
+		int w = image.getWidth();
+		int h = image.getHeight();
+		checkRectangle(x, y, w, h);
+
+		int[] rgb = new int[w];
+		byte[] line = new byte[getLineSize(x, w)];
+		byte[] indices = layout.bitCount <= 8 ? new byte[w] : null;
+		for (int r = 0; r < h; r++) {
+			Scanlines.getRGB(image, r, rgb);
+			writeRGBLine(x, y + r, w, rgb, 0, line, indices);
+		}
+	}
+
+	/**
+	 * Overwrites the pixels of the rectangle at the specified position with
+	 * the RGB values from an array.
+	 *
+	 * @param x
+	 *            the column at which the rectangle starts
+	 * @param y
+	 *            the row at which the rectangle starts
+	 * @param w
+	 *            the width of the rectangle
+	 * @param h
+	 *            the height of the rectangle
+	 * @param rgb
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param offset
+	 *            the offset of the first pixel within <tt>rgb</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>rgb</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeRGB(int x, int y, int w, int h, int[] rgb, int offset,
+			int scansize) throws IOException
+	{
+		checkRectangle(x, y, w, h);
+
+		byte[] line = new byte[getLineSize(x, w)];
+		byte[] indices = layout.bitCount <= 8 ? new byte[w] : null;
+		for (int r = 0; r < h; r++) {
+			writeRGBLine(x, y + r, w, rgb, offset + r * scansize, line,
+					indices);
+		}
+	}
+
+	/**
+	 * Overwrites the pixels of the rectangle at the specified position with
+	 * color indices from an array. This is only possible for indexed files.
+	 *
+	 * @param x
+	 *            the column at which the rectangle starts
+	 * @param y
+	 *            the row at which the rectangle starts
+	 * @param w
+	 *            the width of the rectangle
+	 * @param h
+	 *            the height of the rectangle
+	 * @param indices
+	 *            the color indices
+	 * @param offset
+	 *            the offset of the first pixel within <tt>indices</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>indices</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeIndices(int x, int y, int w, int h, byte[] indices,
+			int offset, int scansize) throws IOException
+	{
+		if (layout.bitCount > 8) {
+			throw new IllegalStateException(
+					"Writing color indices to a non-indexed image");
+		}
+		checkRectangle(x, y, w, h);
+
+		byte[] line = new byte[getLineSize(x, w)];
+		for (int r = 0; r < h; r++) {
+			writeIndexLine(x, y + r, w, indices, offset + r * scansize, line);
+		}
+	}
+
+	/**
+	 * Writes all changes to the file and closes it.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private void checkRectangle(int x, int y, int w, int h)
+	{
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > layout.width
+				|| y + h > layout.height) {
+			throw new IllegalArgumentException("Rectangle " + w + "x" + h
+					+ " at " + x + "," + y + " out of bounds");
+		}
+	}
+
+	/**
+	 * @return the number of bytes of a scan line that contain the pixels from
+	 *         <tt>x</tt> to <tt>x + w - 1</tt>
+	 */
+	private int getLineSize(int x, int w)
+	{
+		long first = (long) x * layout.bitCount / 8;
+		long end = ((long) (x + w) * layout.bitCount + 7) / 8;
+		return (int) (end - first);
+	}
+
+	private void writeRGBLine(int x, int y, int w, int[] rgb, int offset,
+			byte[] line, byte[] indices) throws IOException
+	{
+		switch (layout.bitCount) {
+		case 24:
+			Scanlines.packRgb24(rgb, offset, line, 0, w);
+			writeLine(x, y, line);
+			break;
+		case 32:
+			Scanlines.packArgb32(rgb, offset, line, 0, w);
+			writeLine(x, y, line);
+			break;
+		default:
+			for (int i = 0; i < w; i++) {
+				indices[i] = (byte) lookup(rgb[offset + i]);
+			}
+			writeIndexLine(x, y, w, indices, 0, line);
+		}
+	}
+
+	private void writeIndexLine(int x, int y, int w, byte[] indices,
+			int offset, byte[] line) throws IOException
+	{
+		int bitCount = layout.bitCount;
+		if (bitCount == 8) {
+			System.arraycopy(indices, offset, line, 0, w);
+			writeLine(x, y, line);
+			return;
+		}
+
+		// pixels at the edges may share bytes with pixels outside of the
+		// rectangle, so merge with the current contents of the file
+		int pixelsPerByte = 8 / bitCount;
+		int mask = (1 << bitCount) - 1;
+		long position = layout.getLineOffset(y) + x / pixelsPerByte;
+		file.seek(position);
+		file.readFully(line);
+		int shift0 = x % pixelsPerByte;
+		for (int i = 0; i < w; i++) {
+			int p = shift0 + i;
+			int b = p / pixelsPerByte;
+			int shift = 8 - bitCount * (p % pixelsPerByte + 1);
+			int v = (line[b] & ~(mask << shift))
+					| ((indices[offset + i] & mask) << shift);
+			line[b] = (byte) v;
+		}
+		file.seek(position);
+		file.write(line);
+	}
+
+	private void writeLine(int x, int y, byte[] line) throws IOException
+	{
+		file.seek(layout.getLineOffset(y) + (long) x * layout.bitCount / 8);
+		file.write(line);
+	}
+
+	/**
+	 * Finds the palette entry for the specified color. If the palette does not
+	 * contain the color, the closest entry is used.
+	 */
+	private int lookup(int argb)
+	{
+		int rgb = argb & 0xFFFFFF;
+		int index = paletteLookup.get(rgb);
+		if (index >= 0) {
+			return index;
+		}
+
+		int r = (rgb >> 16) & 0xFF;
+		int g = (rgb >> 8) & 0xFF;
+		int b = rgb & 0xFF;
+		int best = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < palette.size(); i++) {
+			int entry = palette.getRGB(i);
+			int dr = r - ((entry >> 16) & 0xFF);
+			int dg = g - ((entry >> 8) & 0xFF);
+			int db = b - (entry & 0xFF);
+			int distance = dr * dr + dg * dg + db * db;
+			if (distance < bestDistance) {
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		if (!paletteLookup.add(rgb, best)) {
+			// start over with the exact colors of the palette
+			paletteLookup.clear();
+			addPaletteColors();
+			paletteLookup.add(rgb, best);
+		}
+		return best;
+	}
+
+}
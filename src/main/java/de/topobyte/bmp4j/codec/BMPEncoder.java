@@ -1,6 +1,8 @@
 package de.topobyte.bmp4j.codec;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.io.BufferedOutputStream;
@@ -8,10 +10,14 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+import de.topobyte.bmp4j.io.BufferedLittleEndianOutput;
+import de.topobyte.bmp4j.io.ByteBufferOutputStream;
+import de.topobyte.bmp4j.io.CountingOutputStream;
+import de.topobyte.bmp4j.io.LittleEndianOutput;
 
 /**
  * Encodes images in BMP format.
@@ -37,11 +43,29 @@ public class BMPEncoder
 	 *             if an error occurs
 	 */
 	public static void write(BufferedImage img, File file) throws IOException
+	{
+		write(img, file, new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes and writes BMP data the output file
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param file
+	 *            the file to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(BufferedImage img, File file,
+			BMPEncoderOptions options) throws IOException
 	{
 		FileOutputStream fout = new FileOutputStream(file);
 		try {
 			BufferedOutputStream out = new BufferedOutputStream(fout);
-			write(img, out);
+			write(img, out, options);
 			out.flush();
 		} finally {
 			try {
@@ -62,11 +86,29 @@ public class BMPEncoder
 	 *             if an error occurs
 	 */
 	public static void write(BufferedImage img, Path file) throws IOException
+	{
+		write(img, file, new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes and writes BMP data the output file
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param file
+	 *            the file to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(BufferedImage img, Path file,
+			BMPEncoderOptions options) throws IOException
 	{
 		OutputStream fout = Files.newOutputStream(file);
 		try {
 			BufferedOutputStream out = new BufferedOutputStream(fout);
-			write(img, out);
+			write(img, out, options);
 			out.flush();
 		} finally {
 			try {
@@ -89,9 +131,74 @@ public class BMPEncoder
 	public static void write(BufferedImage img, OutputStream os)
 			throws IOException
 	{
+		write(img, os, new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes and writes BMP data to the output
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(BufferedImage img, OutputStream os,
+			BMPEncoderOptions options) throws IOException
+	{
+		write(img, os, options, new BMPEncoderContext());
+	}
+
+	static void write(BufferedImage img, OutputStream os,
+			BMPEncoderOptions options, BMPEncoderContext context)
+			throws IOException
+	{
+		BufferedLittleEndianOutput out = new BufferedLittleEndianOutput(os);
+		write(img, out, options, context);
+		out.flush();
+	}
+
+	private static void write(BufferedImage img, LittleEndianOutput out,
+			BMPEncoderOptions options, BMPEncoderContext context)
+			throws IOException
+	{
+		if (Scanlines.isGray(img)) {
+			writeGray(img, out, options, context);
+			return;
+		}
+
+		int nativeBitCount = BMPNativeImages.getBitCount(img);
+		if (nativeBitCount != 0 && !needsConversion(nativeBitCount, options)) {
+			writeNative(img, nativeBitCount, out);
+			return;
+		}
+
 		// create info header
 
-		InfoHeader ih = createInfoHeader5(img);
+		InfoHeader5 ih = createInfoHeader5(img);
+
+		if (ih.getBitCount() > 8) {
+			writePixels(PixelRows.of(img, context), ih.getBitCount(), out,
+					options, context);
+			return;
+		}
+
+		if (options.isReduceColorDepth()
+				&& writeReduced(PixelRows.of(img, context), ih.getBitCount(),
+						out, options, context)) {
+			return;
+		}
+
+		if (options.isRunLengthEncoding()
+				&& (ih.getBitCount() == 4 || ih.getBitCount() == 8)) {
+			writeRunLengthEncoded(img.getRaster(),
+					(IndexColorModel) img.getColorModel(), ih.getBitCount(),
+					out, context);
+			return;
+		}
 
 		// Create color map if the image uses an indexed color model.
 		// Images with color depth of 8 bits or less use an indexed color
@@ -103,6 +210,7 @@ public class BMPEncoder
 		if (ih.getBitCount() <= 8) {
 			icm = (IndexColorModel) img.getColorModel();
 			mapSize = icm.getMapSize();
+			ih.iColorsUsed = getColorsUsed(icm, ih.getBitCount());
 		}
 
 		// Calculate header size
@@ -120,33 +228,11 @@ public class BMPEncoder
 
 		// Calculate bytes per line
 
-		int bytesPerLine = 0;
-
-		switch (ih.getBitCount()) {
-		case 1:
-			bytesPerLine = getBytesPerLine1(ih.getWidth());
-			break;
-		case 4:
-			bytesPerLine = getBytesPerLine4(ih.getWidth());
-			break;
-		case 8:
-			bytesPerLine = getBytesPerLine8(ih.getWidth());
-			break;
-		case 24:
-			bytesPerLine = getBytesPerLine24(ih.getWidth());
-			break;
-		case 32:
-			bytesPerLine = ih.getWidth() * 4;
-			break;
-		}
+		int bytesPerLine = getBytesPerLine(ih.getWidth(), ih.getBitCount());
 
 		// calculate file size
 
-		int fileSize = dataOffset + bytesPerLine * ih.getHeight();
-
-		// output little endian byte order
-
-		LittleEndianOutputStream out = new LittleEndianOutputStream(os);
+		long fileSize = dataOffset + (long) bytesPerLine * ih.getHeight();
 
 		// write file header
 		writeFileHeader(fileSize, dataOffset, out);
@@ -162,23 +248,790 @@ public class BMPEncoder
 		// write raster data
 		switch (ih.getBitCount()) {
 		case 1:
-			write1(img.getRaster(), out);
-			break;
 		case 4:
-			write4(img.getRaster(), out);
-			break;
 		case 8:
-			write8(img.getRaster(), out);
-			break;
-		case 24:
-			write24(img.getRaster(), out);
-			break;
-		case 32:
-			write32(img.getRaster(), img.getAlphaRaster(), out);
+			writeIndexed(img.getRaster(), ih.getBitCount(), out, context);
 			break;
 		}
 	}
 
+	/**
+	 * @return whether the options require the pixels of an image with the
+	 *         layout of a bitmap to be converted before writing
+	 */
+	private static boolean needsConversion(int bitCount,
+			BMPEncoderOptions options)
+	{
+		if (options.isReduceColorDepth()) {
+			return true;
+		}
+		if (bitCount > 8) {
+			return options.getRgb16Format() != BMPEncoderOptions.RGB16_NONE;
+		}
+		return options.isRunLengthEncoding() && bitCount != 1;
+	}
+
+	/**
+	 * Writes an image created by {@link BMPNativeImages} as a top-down bitmap,
+	 * with the data buffer of the image as the raster data.
+	 */
+	private static void writeNative(BufferedImage img, int bitCount,
+			LittleEndianOutput out) throws IOException
+	{
+		IndexColorModel palette = null;
+		if (bitCount <= 8) {
+			palette = (IndexColorModel) img.getColorModel();
+		}
+		BitmapLayout layout = BitmapLayout.create(img.getWidth(),
+				img.getHeight(), bitCount, true, palette);
+		layout.writeHeaders(out);
+
+		byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer())
+				.getData();
+		out.write(data, 0, layout.bytesPerLine * layout.height);
+	}
+
+	/**
+	 * Writes a <tt>TYPE_BYTE_GRAY</tt> or <tt>TYPE_USHORT_GRAY</tt> image as
+	 * an 8-bit bitmap with a gray ramp palette, using the (high order byte of
+	 * the) samples as color indices.
+	 */
+	private static void writeGray(BufferedImage img, LittleEndianOutput out,
+			BMPEncoderOptions options, BMPEncoderContext context)
+			throws IOException
+	{
+		if (options.isReduceColorDepth() && writeReduced(
+				PixelRows.ofGray(img, context), 8, out, options, context)) {
+			return;
+		}
+
+		int width = img.getWidth();
+		int height = img.getHeight();
+		IndexColorModel palette = createGrayPalette(8);
+
+		if (options.isRunLengthEncoding()) {
+			RunLengthEncoder rle = context.getRunLengthEncoder(8, width);
+			byte[] row = context.getIndexBytes(width);
+			for (int y = height - 1; y >= 0; y--) {
+				Scanlines.getGray(img, y, row);
+				rle.addLine(row, 0, width);
+			}
+			rle.finish();
+			writeRunLengthEncoded(rle, width, height, palette, out);
+			context.release(rle);
+			return;
+		}
+
+		BitmapLayout layout = BitmapLayout.create(width, height, 8, false,
+				palette);
+		layout.writeHeaders(out);
+
+		// samples go straight into the line buffer, padding stays zero
+		int bytesPerLine = layout.bytesPerLine;
+		byte[] line = context.getLine(bytesPerLine);
+		for (int y = height - 1; y >= 0; y--) {
+			Scanlines.getGray(img, y, line);
+			out.write(line, 0, bytesPerLine);
+		}
+	}
+
+	/**
+	 * Calculates the exact number of bytes that
+	 * {@link #write(BufferedImage, OutputStream)} produces for the image.
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @return the size of the encoded image in bytes
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static long getEncodedSize(BufferedImage img) throws IOException
+	{
+		return getEncodedSize(img, new BMPEncoderOptions());
+	}
+
+	/**
+	 * Calculates the exact number of bytes that {@link #write(BufferedImage,
+	 * OutputStream, BMPEncoderOptions)} produces for the image.
+	 * 
+	 * For uncompressed output, the size follows from the headers and the size
+	 * of the bitmap. If color depth reduction or run-length encoding is
+	 * enabled, the size depends on the image content, and it is determined by
+	 * encoding the image without storing the output.
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param options
+	 *            the options to use for encoding
+	 * @return the size of the encoded image in bytes
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static long getEncodedSize(BufferedImage img,
+			BMPEncoderOptions options) throws IOException
+	{
+		return getEncodedSize(img, options, new BMPEncoderContext());
+	}
+
+	private static long getEncodedSize(BufferedImage img,
+			BMPEncoderOptions options, BMPEncoderContext context)
+			throws IOException
+	{
+		boolean gray = Scanlines.isGray(img);
+		int bitCount = gray ? 8 : img.getColorModel().getPixelSize();
+		if (options.isReduceColorDepth() || (options.isRunLengthEncoding()
+				&& (bitCount == 4 || bitCount == 8))) {
+			CountingOutputStream counter = new CountingOutputStream(
+					new OutputStream() {
+
+						@Override
+						public void write(int b)
+						{
+						}
+
+						@Override
+						public void write(byte[] b, int off, int len)
+						{
+						}
+
+					});
+			write(img, counter, options, context);
+			return counter.getCount();
+		}
+
+		int width = img.getWidth();
+		int height = img.getHeight();
+		long headers = 14 + BMPConstants.HEADER_LENGTH_5;
+		if (gray) {
+			return headers + 4 * 256 + (long) getBytesPerLine8(width) * height;
+		}
+		if (bitCount <= 8) {
+			int mapSize = ((IndexColorModel) img.getColorModel()).getMapSize();
+			return headers + 4 * mapSize
+					+ (long) getBytesPerLine(width, bitCount) * height;
+		}
+		if (options.getRgb16Format() != BMPEncoderOptions.RGB16_NONE) {
+			return headers + (long) getBytesPerLine16(width) * height;
+		}
+		bitCount = img.getColorModel().hasAlpha() ? 32 : 24;
+		return headers + (long) getBytesPerLine(width, bitCount) * height;
+	}
+
+	/**
+	 * Encodes an image into a newly allocated array of exactly the encoded
+	 * size.
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @return the encoded image
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static byte[] encode(BufferedImage img) throws IOException
+	{
+		return encode(img, new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes an image into a newly allocated array of exactly the encoded
+	 * size.
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param options
+	 *            the options to use for encoding
+	 * @return the encoded image
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static byte[] encode(BufferedImage img, BMPEncoderOptions options)
+			throws IOException
+	{
+		return encode(img, options, new BMPEncoderContext());
+	}
+
+	static byte[] encode(BufferedImage img, BMPEncoderOptions options,
+			BMPEncoderContext context) throws IOException
+	{
+		long size = getEncodedSize(img, options, context);
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IOException("Encoded image too large for an array: "
+					+ size + " bytes");
+		}
+		byte[] bytes = new byte[(int) size];
+		write(img, new ByteBufferOutputStream(ByteBuffer.wrap(bytes)), options,
+				context);
+		return bytes;
+	}
+
+	/**
+	 * Encodes an image into an array, starting at the specified offset. Use
+	 * {@link #getEncodedSize(BufferedImage, BMPEncoderOptions)} to determine
+	 * the required space.
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param dst
+	 *            the array that receives the encoded image
+	 * @param offset
+	 *            the offset within <tt>dst</tt> at which to start
+	 * @param options
+	 *            the options to use for encoding
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if an error occurs or the array is too small
+	 */
+	public static int encode(BufferedImage img, byte[] dst, int offset,
+			BMPEncoderOptions options) throws IOException
+	{
+		return encode(img, ByteBuffer.wrap(dst, offset, dst.length - offset),
+				options);
+	}
+
+	/**
+	 * Encodes an image into a heap or direct buffer, starting at the buffer's
+	 * current position. The position is advanced by the number of bytes
+	 * written. Use
+	 * {@link #getEncodedSize(BufferedImage, BMPEncoderOptions)} to determine
+	 * the required space.
+	 * 
+	 * @param img
+	 *            the image to encode
+	 * @param dst
+	 *            the buffer that receives the encoded image
+	 * @param options
+	 *            the options to use for encoding
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if an error occurs or the buffer is too small
+	 */
+	public static int encode(BufferedImage img, ByteBuffer dst,
+			BMPEncoderOptions options) throws IOException
+	{
+		int start = dst.position();
+		write(img, new ByteBufferOutputStream(dst), options);
+		return dst.position() - start;
+	}
+
+	/**
+	 * Encodes and writes an array of packed <tt>int</tt> pixels in the default
+	 * RGB color model as a 24-bit bitmap, or as a 32-bit bitmap if the pixels
+	 * have an alpha channel.
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 * @param offset
+	 *            the offset of the first pixel within <tt>pixels</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>pixels</tt>
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param alpha
+	 *            <tt>true</tt> for ARGB pixels, <tt>false</tt> for RGB pixels
+	 *            whose alpha bits are ignored
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void writeRGB(int[] pixels, int offset, int scansize,
+			int width, int height, boolean alpha, OutputStream os)
+			throws IOException
+	{
+		writeRGB(pixels, offset, scansize, width, height, alpha, os,
+				new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes and writes an array of packed <tt>int</tt> pixels in the default
+	 * RGB color model as a 24-bit bitmap, or as a 32-bit bitmap if the pixels
+	 * have an alpha channel.
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 * @param offset
+	 *            the offset of the first pixel within <tt>pixels</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>pixels</tt>
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param alpha
+	 *            <tt>true</tt> for ARGB pixels, <tt>false</tt> for RGB pixels
+	 *            whose alpha bits are ignored
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void writeRGB(int[] pixels, int offset, int scansize,
+			int width, int height, boolean alpha, OutputStream os,
+			BMPEncoderOptions options) throws IOException
+	{
+		PixelRows rows = PixelRows.of(pixels, offset, scansize, width, height,
+				alpha);
+		BufferedLittleEndianOutput out = new BufferedLittleEndianOutput(os);
+		writePixels(rows, alpha ? 32 : 24, out, options,
+				new BMPEncoderContext());
+		out.flush();
+	}
+
+	/**
+	 * Encodes and writes a buffer of pixels with 8 bits per channel as a
+	 * 24-bit bitmap, or as a 32-bit bitmap if the layout has an alpha channel.
+	 * The pixels are read starting at the buffer's current position, which is
+	 * not changed.
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 * @param layout
+	 *            the layout of the pixels
+	 * @param scansize
+	 *            the distance between two rows within <tt>pixels</tt>, in
+	 *            bytes
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(ByteBuffer pixels, PixelLayout layout,
+			int scansize, int width, int height, OutputStream os)
+			throws IOException
+	{
+		write(pixels, layout, scansize, width, height, os,
+				new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes and writes a buffer of pixels with 8 bits per channel as a
+	 * 24-bit bitmap, or as a 32-bit bitmap if the layout has an alpha channel.
+	 * The pixels are read starting at the buffer's current position, which is
+	 * not changed.
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 * @param layout
+	 *            the layout of the pixels
+	 * @param scansize
+	 *            the distance between two rows within <tt>pixels</tt>, in
+	 *            bytes
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(ByteBuffer pixels, PixelLayout layout,
+			int scansize, int width, int height, OutputStream os,
+			BMPEncoderOptions options) throws IOException
+	{
+		BMPEncoderContext context = new BMPEncoderContext();
+		PixelRows rows = PixelRows.of(pixels, pixels.position(), scansize,
+				layout, width, height, context);
+		BufferedLittleEndianOutput out = new BufferedLittleEndianOutput(os);
+		writePixels(rows, layout.hasAlpha() ? 32 : 24, out, options,
+				context);
+		out.flush();
+	}
+
+	/**
+	 * Encodes and writes an array of color indices as an indexed bitmap. The
+	 * color depth is the smallest one (1, 4 or 8 bits) that can hold all
+	 * entries of the palette.
+	 * 
+	 * @param indices
+	 *            the color indices, one per byte
+	 * @param offset
+	 *            the offset of the first pixel within <tt>indices</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>indices</tt>
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param palette
+	 *            the palette, with at most 256 entries
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void writeIndexed(byte[] indices, int offset, int scansize,
+			int width, int height, IndexColorModel palette, OutputStream os)
+			throws IOException
+	{
+		writeIndexed(indices, offset, scansize, width, height, palette, os,
+				new BMPEncoderOptions());
+	}
+
+	/**
+	 * Encodes and writes an array of color indices as an indexed bitmap. The
+	 * color depth is the smallest one (1, 4 or 8 bits) that can hold all
+	 * entries of the palette.
+	 * 
+	 * @param indices
+	 *            the color indices, one per byte
+	 * @param offset
+	 *            the offset of the first pixel within <tt>indices</tt>
+	 * @param scansize
+	 *            the distance between two rows within <tt>indices</tt>
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param palette
+	 *            the palette, with at most 256 entries
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void writeIndexed(byte[] indices, int offset, int scansize,
+			int width, int height, IndexColorModel palette, OutputStream os,
+			BMPEncoderOptions options) throws IOException
+	{
+		int mapSize = palette.getMapSize();
+		int bitCount = mapSize <= 2 ? 1 : mapSize <= 16 ? 4 : 8;
+		BitmapLayout.checkParameters(width, height, bitCount, palette);
+		BMPEncoderContext context = new BMPEncoderContext();
+		PixelRows rows = PixelRows.of(indices, offset, scansize, width, height,
+				palette, context);
+
+		BufferedLittleEndianOutput out = new BufferedLittleEndianOutput(os);
+		writeIndexed(rows, indices, offset, scansize, bitCount, palette, out,
+				options, context);
+		out.flush();
+	}
+
+	private static void writeIndexed(PixelRows rows, byte[] indices,
+			int offset, int scansize, int bitCount, IndexColorModel palette,
+			LittleEndianOutput out, BMPEncoderOptions options,
+			BMPEncoderContext context) throws IOException
+	{
+		int width = rows.width;
+		int height = rows.height;
+
+		if (options.isReduceColorDepth()
+				&& writeReduced(rows, bitCount, out, options, context)) {
+			return;
+		}
+
+		if (options.isRunLengthEncoding() && bitCount != 1) {
+			RunLengthEncoder rle = context.getRunLengthEncoder(bitCount,
+					width);
+			for (int y = height - 1; y >= 0; y--) {
+				rle.addLine(indices, offset + y * scansize, width);
+			}
+			rle.finish();
+			writeRunLengthEncoded(rle, width, height, palette, out);
+			context.release(rle);
+			return;
+		}
+
+		BitmapLayout layout = BitmapLayout.create(width, height, bitCount,
+				false, palette);
+		layout.writeHeaders(out);
+
+		int bytesPerLine = layout.bytesPerLine;
+		byte[] line = context.getLine(bytesPerLine);
+		for (int y = height - 1; y >= 0; y--) {
+			Scanlines.packIndices(indices, offset + y * scansize, line, 0,
+					width, bitCount);
+			out.write(line, 0, bytesPerLine);
+		}
+	}
+
+	/**
+	 * Writes an image that is not indexed, with the color depth selected by
+	 * the options.
+	 * 
+	 * @param bitCount
+	 *            the color depth of the source
+	 */
+	private static void writePixels(PixelRows rows, int bitCount,
+			LittleEndianOutput out, BMPEncoderOptions options,
+			BMPEncoderContext context) throws IOException
+	{
+		if (options.isReduceColorDepth()
+				&& writeReduced(rows, bitCount, out, options, context)) {
+			return;
+		}
+
+		if (options.getRgb16Format() != BMPEncoderOptions.RGB16_NONE) {
+			write16(rows,
+					options.getRgb16Format() == BMPEncoderOptions.RGB16_565,
+					out, context);
+			return;
+		}
+
+		// 32 bits only if there is an alpha channel to preserve
+		bitCount = rows.alpha ? 32 : 24;
+		BitmapLayout layout = BitmapLayout.create(rows.width, rows.height,
+				bitCount, false, null);
+		layout.writeHeaders(out);
+
+		writeRows(rows, PixelFormat.forBitCount(bitCount), layout.bytesPerLine,
+				out, context);
+	}
+
+	/**
+	 * Converts the rows to scan lines of the specified format and writes them
+	 * bottom-up. The padding of the lines is zero.
+	 */
+	private static void writeRows(PixelRows rows, PixelFormat format,
+			int bytesPerLine, LittleEndianOutput out, BMPEncoderContext context)
+			throws IOException
+	{
+		RowConverter converter = RowConverters.get(PixelFormat.INT_ARGB,
+				format);
+		byte[] line = context.getLine(bytesPerLine);
+		for (int y = rows.height - 1; y >= 0; y--) {
+			rows.load(y);
+			converter.convert(rows.data, rows.offset, line, 0, rows.width);
+			out.write(line, 0, bytesPerLine);
+		}
+	}
+
+	/**
+	 * Determines the smallest color depth that represents the image without
+	 * loss and writes the image with that color depth, unless it is not
+	 * smaller than the source's color depth.
+	 * 
+	 * @param sourceBitCount
+	 *            the color depth of the source
+	 * @return <tt>true</tt> if the image has been written
+	 */
+	private static boolean writeReduced(PixelRows rows, int sourceBitCount,
+			LittleEndianOutput out, BMPEncoderOptions options,
+			BMPEncoderContext context) throws IOException
+	{
+		int width = rows.width;
+		int height = rows.height;
+		boolean hasAlpha = rows.alpha;
+		int opaque = hasAlpha ? 0 : 0xFF000000;
+
+		// count distinct colors and check for transparency in a single pass,
+		// counting stops once there are more than 256 colors
+		ColorTable colors = context.getColorTable();
+		for (int y = 0; y < height && (colors != null || hasAlpha); y++) {
+			rows.load(y);
+			int[] data = rows.data;
+			int start = rows.offset;
+			int end = start + width;
+			if (hasAlpha) {
+				for (int i = start; i < end; i++) {
+					if ((data[i] >>> 24) != 0xFF) {
+						return false;
+					}
+				}
+			}
+			if (colors != null) {
+				for (int i = start; i < end; i++) {
+					if (!colors.add(data[i] | opaque)) {
+						colors = null;
+						break;
+					}
+				}
+			}
+		}
+
+		int bitCount = 24;
+		if (colors != null) {
+			if (colors.size() <= 2) {
+				bitCount = 1;
+			} else if (colors.size() <= 16) {
+				bitCount = 4;
+			} else {
+				bitCount = 8;
+			}
+		}
+		if (bitCount >= sourceBitCount) {
+			return false;
+		}
+		if (colors == null
+				&& options.getRgb16Format() != BMPEncoderOptions.RGB16_NONE) {
+			// 16-bit output is smaller than 24 bits
+			return false;
+		}
+
+		IndexColorModel palette = null;
+		if (colors != null) {
+			palette = new IndexColorModel(bitCount, colors.size(),
+					colors.getColors(), 0, false, -1, DataBuffer.TYPE_BYTE);
+		}
+
+		if (options.isRunLengthEncoding() && (bitCount == 4 || bitCount == 8)) {
+			RunLengthEncoder rle = context.getRunLengthEncoder(bitCount,
+					width);
+			byte[] indices = context.getIndexBytes(width);
+			for (int y = height - 1; y >= 0; y--) {
+				rows.load(y);
+				for (int x = 0; x < width; x++) {
+					indices[x] = (byte) colors
+							.indexOf(rows.data[rows.offset + x] | opaque);
+				}
+				rle.addLine(indices, 0, width);
+			}
+			rle.finish();
+			writeRunLengthEncoded(rle, width, height, palette, out);
+			context.release(rle);
+			return true;
+		}
+
+		BitmapLayout layout = BitmapLayout.create(width, height, bitCount,
+				false, palette);
+		layout.writeHeaders(out);
+
+		int bytesPerLine = layout.bytesPerLine;
+		byte[] line = context.getLine(bytesPerLine);
+		int[] indices = colors != null ? context.getIndices(width) : null;
+		for (int y = height - 1; y >= 0; y--) {
+			rows.load(y);
+			if (colors != null) {
+				for (int x = 0; x < width; x++) {
+					indices[x] = colors
+							.indexOf(rows.data[rows.offset + x] | opaque);
+				}
+				Scanlines.packIndices(indices, 0, line, 0, width, bitCount);
+			} else {
+				Scanlines.packRgb24(rows.data, rows.offset, line, 0, width);
+			}
+			out.write(line, 0, bytesPerLine);
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes and writes an image as a 16-bit bitmap, including all headers.
+	 * The alpha channel is dropped.
+	 * 
+	 * @param img
+	 *            the source image
+	 * @param rgb565
+	 *            <tt>true</tt> to write 5 bits for red, 6 bits for green and 5
+	 *            bits for blue (<tt>BI_BITFIELDS</tt>), <tt>false</tt> to write
+	 *            5 bits per color channel (<tt>BI_RGB</tt>)
+	 * @param out
+	 *            the output to which the bitmap will be written
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write16(BufferedImage img, boolean rgb565,
+			LittleEndianOutput out) throws IOException
+	{
+		BMPEncoderContext context = new BMPEncoderContext();
+		write16(PixelRows.of(img, context), rgb565, out, context);
+	}
+
+	private static void write16(PixelRows rows, boolean rgb565,
+			LittleEndianOutput out, BMPEncoderContext context)
+			throws IOException
+	{
+		int width = rows.width;
+		int height = rows.height;
+
+		InfoHeader5 ih = createInfoHeader5(width, height, 16);
+		ih.iAlphaMask = 0;
+		if (rgb565) {
+			ih.iCompression = BMPConstants.BI_BITFIELDS;
+			ih.iRedMask = 0xF800;
+			ih.iGreenMask = 0x07E0;
+			ih.iBlueMask = 0x001F;
+		} else {
+			ih.iRedMask = 0x7C00;
+			ih.iGreenMask = 0x03E0;
+			ih.iBlueMask = 0x001F;
+		}
+
+		int bytesPerLine = getBytesPerLine16(width);
+		int dataOffset = 14 + ih.getSize();
+		writeFileHeader(dataOffset + (long) bytesPerLine * height, dataOffset,
+				out);
+		ih.write(out);
+
+		writeRows(rows, rgb565 ? PixelFormat.RGB565 : PixelFormat.RGB555,
+				bytesPerLine, out, context);
+	}
+
+	/**
+	 * Encodes and writes raster data as a run-length encoded 4 or 8-bit
+	 * bitmap, including all headers and the color table.
+	 * 
+	 * @param raster
+	 *            the source raster data
+	 * @param icm
+	 *            the color model of the image
+	 * @param bitCount
+	 *            the color depth, which must be <tt>4</tt> or <tt>8</tt>
+	 * @param out
+	 *            the output to which the bitmap will be written
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void writeRunLengthEncoded(Raster raster, IndexColorModel icm,
+			int bitCount, LittleEndianOutput out) throws IOException
+	{
+		writeRunLengthEncoded(raster, icm, bitCount, out,
+				new BMPEncoderContext());
+	}
+
+	private static void writeRunLengthEncoded(Raster raster,
+			IndexColorModel icm, int bitCount, LittleEndianOutput out,
+			BMPEncoderContext context) throws IOException
+	{
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+
+		RunLengthEncoder rle = context.getRunLengthEncoder(bitCount, width);
+		int[] samples = context.getIndices(width);
+		byte[] indices = context.getIndexBytes(width);
+		for (int y = height - 1; y >= 0; y--) {
+			raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1,
+					0, samples);
+			for (int x = 0; x < width; x++) {
+				indices[x] = (byte) samples[x];
+			}
+			rle.addLine(indices, 0, width);
+		}
+		rle.finish();
+
+		writeRunLengthEncoded(rle, width, height, icm, out);
+		context.release(rle);
+	}
+
+	private static void writeRunLengthEncoded(RunLengthEncoder rle, int width,
+			int height, IndexColorModel icm, LittleEndianOutput out)
+			throws IOException
+	{
+		int bitCount = rle.getCompression() == BMPConstants.BI_RLE8 ? 8 : 4;
+		InfoHeader5 ih = createInfoHeader5(width, height, bitCount);
+		ih.iCompression = rle.getCompression();
+		ih.iImageSize = rle.size();
+		ih.iColorsUsed = getColorsUsed(icm, bitCount);
+
+		int dataOffset = 14 + ih.getSize() + icm.getMapSize() * 4;
+		writeFileHeader(dataOffset + rle.size(), dataOffset, out);
+		ih.write(out);
+		writeColorMap(icm, out);
+		out.write(rle.getData(), 0, rle.size());
+	}
+
 	/**
 	 * Creates an <tt>InfoHeader4</tt> from the source image.
 	 * 
@@ -208,23 +1061,68 @@ public class BMPEncoder
 	 * @return the resultant <tt>InfoHeader5</tt> structure
 	 */
 	public static InfoHeader5 createInfoHeader5(BufferedImage img)
+	{
+		return createInfoHeader5(img.getWidth(), img.getHeight(),
+				img.getColorModel().getPixelSize());
+	}
+
+	/**
+	 * Creates an <tt>InfoHeader5</tt> for an image with the specified size and
+	 * color depth. Only 32-bit images use <tt>BI_BITFIELDS</tt> compression
+	 * (in order to specify the alpha mask), all other color depths are stored
+	 * uncompressed.
+	 * 
+	 * @param width
+	 *            the width in pixels
+	 * @param height
+	 *            the height in pixels, negative for a top-down bitmap
+	 * @param bitCount
+	 *            the color depth (bits per pixel)
+	 * @return the resultant <tt>InfoHeader5</tt> structure
+	 */
+	public static InfoHeader5 createInfoHeader5(int width, int height,
+			int bitCount)
 	{
 		InfoHeader5 ret = new InfoHeader5();
 		ret.iColorsImportant = 0;
 		ret.iColorsUsed = 0;
-		ret.iHeight = img.getHeight();
-		ret.iWidth = img.getWidth();
-		ret.sBitCount = (short) img.getColorModel().getPixelSize();
+		ret.iHeight = height;
+		ret.iWidth = width;
+		ret.sBitCount = (short) bitCount;
 		ret.iNumColors = 1 << (ret.sBitCount == 32 ? 24 : ret.sBitCount);
+		if (bitCount != 32) {
+			ret.iCompression = BMPConstants.BI_RGB;
+		}
 		ret.iImageSize = 0;
 		return ret;
 	}
 
+	/**
+	 * Creates a grayscale palette with evenly spaced gray levels from black to
+	 * white.
+	 * 
+	 * @param bitCount
+	 *            the color depth of the palette, which determines the number
+	 *            of entries
+	 * @return the palette
+	 */
+	public static IndexColorModel createGrayPalette(int bitCount)
+	{
+		int size = 1 << bitCount;
+		byte[] gray = new byte[size];
+		for (int i = 0; i < size; i++) {
+			gray[i] = (byte) (i * 255 / (size - 1));
+		}
+		return new IndexColorModel(bitCount, size, gray, gray, gray);
+	}
+
 	/**
 	 * Writes the file header.
 	 * 
 	 * @param fileSize
-	 *            the calculated file size for the BMP data being written
+	 *            the calculated file size for the BMP data being written. If
+	 *            it exceeds {@link BMPConstants#MAX_FILE_SIZE}, <tt>0</tt> is
+	 *            written instead.
 	 * @param dataOffset
 	 *            the calculated offset within the BMP data where the actual
 	 *            bitmap begins
@@ -233,18 +1131,23 @@ public class BMPEncoder
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public static void writeFileHeader(int fileSize, int dataOffset,
-			LittleEndianOutputStream out) throws IOException
+	public static void writeFileHeader(long fileSize, long dataOffset,
+			LittleEndianOutput out) throws IOException
 	{
+		if (dataOffset < 0 || dataOffset > BMPConstants.MAX_FILE_SIZE) {
+			throw new IllegalArgumentException(
+					"Invalid data offset: " + dataOffset);
+		}
 		// signature
 		byte[] signature = BMPConstants.FILE_HEADER.getBytes("UTF-8");
 		out.write(signature);
 		// file size
-		out.writeIntLE(fileSize);
+		out.writeUnsignedIntLE(
+				fileSize <= BMPConstants.MAX_FILE_SIZE ? fileSize : 0);
 		// reserved
 		out.writeIntLE(0);
 		// data offset
-		out.writeIntLE(dataOffset);
+		out.writeUnsignedIntLE(dataOffset);
 	}
 
 	/**
@@ -258,19 +1161,21 @@ public class BMPEncoder
 	 *             if an error occurs
 	 */
 	public static void writeColorMap(IndexColorModel icm,
-			LittleEndianOutputStream out) throws IOException
+			LittleEndianOutput out) throws IOException
+	{
+		Palette.fromColorModel(icm).write(out);
+	}
+
+	/**
+	 * Determines the value of the <tt>iColorsUsed</tt> header field for an
+	 * image with the specified palette. Only the entries of the palette are
+	 * written to the color table, the field is <tt>0</tt> if that is the full
+	 * number of colors for the color depth.
+	 */
+	static int getColorsUsed(IndexColorModel icm, int bitCount)
 	{
 		int mapSize = icm.getMapSize();
-		for (int i = 0; i < mapSize; i++) {
-			int rgb = icm.getRGB(i);
-			int r = (rgb >> 16) & 0xFF;
-			int g = (rgb >> 8) & 0xFF;
-			int b = (rgb) & 0xFF;
-			out.writeByte(b);
-			out.writeByte(g);
-			out.writeByte(r);
-			out.writeByte(0);
-		}
+		return mapSize < 1 << bitCount ? mapSize : 0;
 	}
 
 	/**
@@ -306,6 +1211,9 @@ public class BMPEncoder
 	public static int getBytesPerLine4(int width)
 	{
 		int ret = width / 2;
+		if (ret * 2 < width) {
+			ret++;
+		}
 		if (ret % 4 != 0) {
 			ret = (ret / 4 + 1) * 4;
 		}
@@ -330,6 +1238,24 @@ public class BMPEncoder
 		return ret;
 	}
 
+	/**
+	 * Calculates the number of bytes per line required for the given with in
+	 * pixels, for a 16-bit bitmap. Lines are always padded to the next 4-byte
+	 * boundary.
+	 * 
+	 * @param width
+	 *            the width in pixels
+	 * @return the number of bytes per line
+	 */
+	public static int getBytesPerLine16(int width)
+	{
+		int ret = width * 2;
+		if (ret % 4 != 0) {
+			ret = (ret / 4 + 1) * 4;
+		}
+		return ret;
+	}
+
 	/**
 	 * Calculates the number of bytes per line required for the given with in
 	 * pixels, for a 24-bit bitmap. Lines are always padded to the next 4-byte
@@ -360,28 +1286,63 @@ public class BMPEncoder
 	 *            the color depth (bits per pixel)
 	 * @return the size of the bitmap in bytes
 	 */
-	public static int getBitmapSize(int w, int h, int bpp)
+	public static long getBitmapSize(int w, int h, int bpp)
+	{
+		int bytesPerLine = getBytesPerLine(w, bpp);
+		long ret = (long) bytesPerLine * h;
+		return ret;
+	}
+
+	/**
+	 * Calculates the number of bytes per line required for the given width in
+	 * pixels and color depth. Lines are always padded to the next 4-byte
+	 * boundary.
+	 * 
+	 * @param width
+	 *            the width in pixels
+	 * @param bpp
+	 *            the color depth (bits per pixel)
+	 * @return the number of bytes per line, or <tt>0</tt> if the color depth
+	 *         is not supported
+	 */
+	public static int getBytesPerLine(int width, int bpp)
 	{
-		int bytesPerLine = 0;
 		switch (bpp) {
 		case 1:
-			bytesPerLine = getBytesPerLine1(w);
-			break;
+			return getBytesPerLine1(width);
 		case 4:
-			bytesPerLine = getBytesPerLine4(w);
-			break;
+			return getBytesPerLine4(width);
 		case 8:
-			bytesPerLine = getBytesPerLine8(w);
-			break;
+			return getBytesPerLine8(width);
+		case 16:
+			return getBytesPerLine16(width);
 		case 24:
-			bytesPerLine = getBytesPerLine24(w);
-			break;
+			return getBytesPerLine24(width);
 		case 32:
-			bytesPerLine = w * 4;
-			break;
+			return width * 4;
+		}
+		return 0;
+	}
+
+	/**
+	 * Encodes and writes raster data as a 1, 4 or 8-bit bitmap.
+	 */
+	private static void writeIndexed(Raster raster, int bitCount,
+			LittleEndianOutput out, BMPEncoderContext context)
+			throws IOException
+	{
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+		int bytesPerLine = getBytesPerLine(width, bitCount);
+
+		byte[] line = context.getLine(bytesPerLine);
+		int[] samples = context.getIndices(width);
+		for (int y = height - 1; y >= 0; y--) {
+			raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1,
+					0, samples);
+			Scanlines.packIndices(samples, 0, line, 0, width, bitCount);
+			out.write(line, 0, bytesPerLine);
 		}
-		int ret = bytesPerLine * h;
-		return ret;
 	}
 
 	/**
@@ -394,27 +1355,10 @@ public class BMPEncoder
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public static void write1(Raster raster, LittleEndianOutputStream out)
+	public static void write1(Raster raster, LittleEndianOutput out)
 			throws IOException
 	{
-		int bytesPerLine = getBytesPerLine1(raster.getWidth());
-
-		byte[] line = new byte[bytesPerLine];
-
-		for (int y = raster.getHeight() - 1; y >= 0; y--) {
-			for (int i = 0; i < bytesPerLine; i++) {
-				line[i] = 0;
-			}
-
-			for (int x = 0; x < raster.getWidth(); x++) {
-				int bi = x / 8;
-				int i = x % 8;
-				int index = raster.getSample(x, y, 0);
-				line[bi] = setBit(line[bi], i, index);
-			}
-
-			out.write(line);
-		}
+		writeIndexed(raster, 1, out, new BMPEncoderContext());
 	}
 
 	/**
@@ -427,52 +1371,10 @@ public class BMPEncoder
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public static void write4(Raster raster, LittleEndianOutputStream out)
+	public static void write4(Raster raster, LittleEndianOutput out)
 			throws IOException
 	{
-		// The approach taken here is to use a buffer to hold encoded raster
-		// data one line at a time.
-		// Perhaps we could just write directly to output instead
-		// and avoid using a buffer altogether. Hypothetically speaking,
-		// a very wide image would require a large line buffer here, but then
-		// again, large 4 bit bitmaps are pretty uncommon, so using the line
-		// buffer approach should be okay.
-
-		int width = raster.getWidth();
-		int height = raster.getHeight();
-
-		// calculate bytes per line
-		int bytesPerLine = getBytesPerLine4(width);
-
-		// line buffer
-		byte[] line = new byte[bytesPerLine];
-
-		// encode and write lines
-		for (int y = height - 1; y >= 0; y--) {
-
-			// clear line buffer
-			for (int i = 0; i < bytesPerLine; i++) {
-				line[i] = 0;
-			}
-
-			// encode raster data for line
-			for (int x = 0; x < width; x++) {
-
-				// calculate buffer index
-				int bi = x / 2;
-
-				// calculate nibble index (high order or low order)
-				int i = x % 2;
-
-				// get color index
-				int index = raster.getSample(x, y, 0);
-				// set color index in buffer
-				line[bi] = setNibble(line[bi], i, index);
-			}
-
-			// write line data (padding bytes included)
-			out.write(line);
-		}
+		writeIndexed(raster, 4, out, new BMPEncoderContext());
 	}
 
 	/**
@@ -485,34 +1387,10 @@ public class BMPEncoder
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public static void write8(Raster raster, LittleEndianOutputStream out)
+	public static void write8(Raster raster, LittleEndianOutput out)
 			throws IOException
 	{
-		int width = raster.getWidth();
-		int height = raster.getHeight();
-
-		// calculate bytes per line
-		int bytesPerLine = getBytesPerLine8(width);
-
-		// write lines
-		for (int y = height - 1; y >= 0; y--) {
-
-			// write raster data for each line
-			for (int x = 0; x < width; x++) {
-
-				// get color index for pixel
-				int index = raster.getSample(x, y, 0);
-
-				// write color index
-				out.writeByte(index);
-			}
-
-			// write padding bytes at end of line
-			for (int i = width; i < bytesPerLine; i++) {
-				out.writeByte(0);
-			}
-
-		}
+		writeIndexed(raster, 8, out, new BMPEncoderContext());
 	}
 
 	/**
@@ -525,7 +1403,7 @@ public class BMPEncoder
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public static void write24(Raster raster, LittleEndianOutputStream out)
+	public static void write24(Raster raster, LittleEndianOutput out)
 			throws IOException
 	{
 		int width = raster.getWidth();
@@ -572,7 +1450,7 @@ public class BMPEncoder
 	 *             if an error occurs
 	 */
 	public static void write32(Raster raster, Raster alpha,
-			LittleEndianOutputStream out) throws IOException
+			LittleEndianOutput out) throws IOException
 	{
 		int width = raster.getWidth();
 		int height = raster.getHeight();
@@ -598,47 +1476,6 @@ public class BMPEncoder
 		}
 	}
 
-	/**
-	 * Sets a particular bit in a byte.
-	 * 
-	 * @param bits
-	 *            the source byte
-	 * @param index
-	 *            the index of the bit to set
-	 * @param bit
-	 *            the value for the bit, which should be either <tt>0</tt> or
-	 *            <tt>1</tt>.
-	 * @param the
-	 *            resultant byte
-	 */
-	private static byte setBit(byte bits, int index, int bit)
-	{
-		if (bit == 0) {
-			bits &= ~(1 << (7 - index));
-		} else {
-			bits |= 1 << (7 - index);
-		}
-		return bits;
-	}
-
-	/**
-	 * Sets a particular nibble (4 bits) in a byte.
-	 * 
-	 * @param nibbles
-	 *            the source byte
-	 * @param index
-	 *            the index of the nibble to set
-	 * @param the
-	 *            value for the nibble, which should be in the range
-	 *            <tt>0x0..0xF</tt>.
-	 */
-	private static byte setNibble(byte nibbles, int index, int nibble)
-	{
-		nibbles |= (nibble << ((1 - index) * 4));
-
-		return nibbles;
-	}
-
 	/**
 	 * Calculates the size in bytes for a color map with the specified bit
 	 * count.
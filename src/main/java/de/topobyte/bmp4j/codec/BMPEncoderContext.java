@@ -0,0 +1,185 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Scratch buffers for encoding images, kept across calls so that encoding
+ * many images does not allocate row buffers, index tables and run-length
+ * buffers for each image.
+ *
+ * A context grows its buffers to the largest image encoded with it and never
+ * shrinks them. It must not be used by more than one thread at a time; the
+ * usual pattern is one context per worker thread, for example the one
+ * returned by {@link #forCurrentThread()}.
+ */
+public class BMPEncoderContext
+{
+
+	private static final ThreadLocal<BMPEncoderContext> threadContexts = //
+			new ThreadLocal<BMPEncoderContext>() {
+
+				@Override
+				protected BMPEncoderContext initialValue()
+				{
+					return new BMPEncoderContext();
+				}
+
+			};
+
+	/**
+	 * Returns the context of the current thread, which is created on first
+	 * use and kept for the lifetime of the thread.
+	 *
+	 * @return the context of the current thread
+	 */
+	public static BMPEncoderContext forCurrentThread()
+	{
+		return threadContexts.get();
+	}
+
+	private byte[] line = new byte[0];
+	private int[] pixels = new int[0];
+	private byte[] samples = new byte[0];
+	private int[] indices = new int[0];
+	private byte[] indexBytes = new byte[0];
+	private byte[] runLengthData = new byte[0];
+	private ColorTable colorTable;
+
+	/**
+	 * Creates a new context with empty buffers.
+	 */
+	public BMPEncoderContext()
+	{
+	}
+
+	/**
+	 * Encodes and writes BMP data to the output, using the buffers of this
+	 * context.
+	 *
+	 * @param img
+	 *            the image to encode
+	 * @param os
+	 *            the output to which encoded data will be written
+	 * @param options
+	 *            the options to use for encoding
+	 * @throws IOException
+	 *             if an error occurs
+	 * @see BMPEncoder#write(BufferedImage, OutputStream, BMPEncoderOptions)
+	 */
+	public void write(BufferedImage img, OutputStream os,
+			BMPEncoderOptions options) throws IOException
+	{
+		BMPEncoder.write(img, os, options, this);
+	}
+
+	/**
+	 * Encodes an image into a newly allocated array of exactly the encoded
+	 * size, using the buffers of this context.
+	 *
+	 * @param img
+	 *            the image to encode
+	 * @param options
+	 *            the options to use for encoding
+	 * @return the encoded image
+	 * @throws IOException
+	 *             if an error occurs
+	 * @see BMPEncoder#encode(BufferedImage, BMPEncoderOptions)
+	 */
+	public byte[] encode(BufferedImage img, BMPEncoderOptions options)
+			throws IOException
+	{
+		return BMPEncoder.encode(img, options, this);
+	}
+
+	/**
+	 * @return a scan line buffer of at least <tt>size</tt> bytes whose first
+	 *         <tt>size</tt> bytes are zero
+	 */
+	byte[] getLine(int size)
+	{
+		if (line.length < size) {
+			line = new byte[size];
+		} else {
+			Arrays.fill(line, 0, size, (byte) 0);
+		}
+		return line;
+	}
+
+	/**
+	 * @return a buffer for a row of packed <tt>int</tt> pixels
+	 */
+	int[] getPixels(int width)
+	{
+		if (pixels.length < width) {
+			pixels = new int[width];
+		}
+		return pixels;
+	}
+
+	/**
+	 * @return a buffer for a row of 8-bit samples
+	 */
+	byte[] getSamples(int width)
+	{
+		if (samples.length < width) {
+			samples = new byte[width];
+		}
+		return samples;
+	}
+
+	/**
+	 * @return a buffer for a row of color indices to be packed
+	 */
+	int[] getIndices(int width)
+	{
+		if (indices.length < width) {
+			indices = new int[width];
+		}
+		return indices;
+	}
+
+	/**
+	 * @return a buffer for a row of color indices to be run-length encoded
+	 */
+	byte[] getIndexBytes(int width)
+	{
+		if (indexBytes.length < width) {
+			indexBytes = new byte[width];
+		}
+		return indexBytes;
+	}
+
+	/**
+	 * @return a run-length encoder that starts out with the buffer of this
+	 *         context
+	 */
+	RunLengthEncoder getRunLengthEncoder(int bitCount, int width)
+	{
+		return new RunLengthEncoder(bitCount, width, runLengthData);
+	}
+
+	/**
+	 * Keeps the (possibly grown) buffer of an encoder for the next one.
+	 */
+	void release(RunLengthEncoder rle)
+	{
+		runLengthData = rle.getData();
+	}
+
+	/**
+	 * @return an empty table for up to 256 colors
+	 */
+	ColorTable getColorTable()
+	{
+		if (colorTable == null) {
+			colorTable = new ColorTable(256);
+		} else {
+			colorTable.clear();
+		}
+		return colorTable;
+	}
+
+}
@@ -0,0 +1,114 @@
+package de.topobyte.bmp4j.codec;
+
+/**
+ * Options that control how images are encoded by {@link BMPEncoder}.
+ */
+public class BMPEncoderOptions
+{
+
+	/**
+	 * Images are written with their own color depth.
+	 */
+	public static final int RGB16_NONE = 0;
+
+	/**
+	 * Images that are not indexed are written as 16-bit bitmaps with 5 bits
+	 * per color channel (<tt>BI_RGB</tt>).
+	 */
+	public static final int RGB16_555 = 1;
+
+	/**
+	 * Images that are not indexed are written as 16-bit bitmaps with 5 bits
+	 * for red, 6 bits for green and 5 bits for blue (<tt>BI_BITFIELDS</tt>).
+	 */
+	public static final int RGB16_565 = 2;
+
+	private boolean reduceColorDepth = false;
+	private boolean runLengthEncoding = false;
+	private int rgb16Format = RGB16_NONE;
+
+	/**
+	 * Creates a set of options with default values.
+	 */
+	public BMPEncoderOptions()
+	{
+	}
+
+	/**
+	 * Whether the encoder looks for a smaller color depth that represents the
+	 * image without loss. If enabled, the image is scanned once before
+	 * encoding: opaque images with at most 256 distinct colors are written as
+	 * 1, 4 or 8-bit indexed bitmaps and other opaque images as 24-bit
+	 * bitmaps.
+	 *
+	 * @return <tt>true</tt> if the color depth is reduced where possible
+	 */
+	public boolean isReduceColorDepth()
+	{
+		return reduceColorDepth;
+	}
+
+	/**
+	 * @param reduceColorDepth
+	 *            whether to reduce the color depth where possible
+	 * @see #isReduceColorDepth()
+	 */
+	public void setReduceColorDepth(boolean reduceColorDepth)
+	{
+		this.reduceColorDepth = reduceColorDepth;
+	}
+
+	/**
+	 * Whether 4 and 8-bit indexed images are compressed using run-length
+	 * encoding (<tt>BI_RLE4</tt> and <tt>BI_RLE8</tt>). Images with other
+	 * color depths are not affected. Since color index <tt>0</tt> is used for
+	 * pixels skipped by the encoding, images with large areas of that color
+	 * compress best.
+	 *
+	 * @return <tt>true</tt> if indexed images are run-length encoded
+	 */
+	public boolean isRunLengthEncoding()
+	{
+		return runLengthEncoding;
+	}
+
+	/**
+	 * @param runLengthEncoding
+	 *            whether to run-length encode indexed images
+	 * @see #isRunLengthEncoding()
+	 */
+	public void setRunLengthEncoding(boolean runLengthEncoding)
+	{
+		this.runLengthEncoding = runLengthEncoding;
+	}
+
+	/**
+	 * The 16-bit format used for images that are not indexed, which is one of
+	 * {@link #RGB16_NONE}, {@link #RGB16_555} or {@link #RGB16_565}. Writing
+	 * 16-bit bitmaps reduces the color precision and drops the alpha channel.
+	 * If color depth reduction is enabled as well, images that can be written
+	 * as indexed bitmaps without loss are still written that way.
+	 *
+	 * @return the 16-bit format
+	 */
+	public int getRgb16Format()
+	{
+		return rgb16Format;
+	}
+
+	/**
+	 * @param rgb16Format
+	 *            the 16-bit format
+	 * @see #getRgb16Format()
+	 */
+	public void setRgb16Format(int rgb16Format)
+	{
+		if (rgb16Format != RGB16_NONE && rgb16Format != RGB16_555
+				&& rgb16Format != RGB16_565) {
+			throw new IllegalArgumentException(
+					"Invalid 16-bit format: " + rgb16Format);
+		}
+		this.rgb16Format = rgb16Format;
+	}
+
+}
@@ -0,0 +1,205 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Hashtable;
+
+/**
+ * Creates images whose pixels are stored exactly like the raster data of an
+ * uncompressed BMP file: 24-bit images as BGR triplets, 32-bit images as BGRA
+ * quadruplets and indexed images as packed 1, 4 or 8-bit color indices, with
+ * rows padded to a multiple of 4 bytes. The rows are stored top-down.
+ *
+ * Such images can be drawn to with <tt>Graphics2D</tt> like any other image.
+ * {@link BMPEncoder} writes them as top-down bitmaps with a single bulk write
+ * of the data buffer, unless the options require the pixels to be converted.
+ * {@link BMPDecoder} decodes into them if
+ * {@link BMPDecoderOptions#setNativeLayout(boolean) requested}, reading the
+ * scan lines without conversion.
+ */
+public final class BMPNativeImages
+{
+
+	/**
+	 * The image property that marks images created by this class, so that
+	 * other images that happen to have the same layout are still encoded as
+	 * before.
+	 */
+	private static final String PROPERTY = "de.topobyte.bmp4j.native";
+
+	private BMPNativeImages()
+	{
+	}
+
+	/**
+	 * Creates an image with the layout of a 24-bit or 32-bit bitmap. 32-bit
+	 * images have an alpha channel, which is not premultiplied.
+	 *
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param bitCount
+	 *            the color depth, <tt>24</tt> or <tt>32</tt>
+	 * @return the new image
+	 */
+	public static BufferedImage createImage(int width, int height,
+			int bitCount)
+	{
+		if (bitCount != 24 && bitCount != 32) {
+			throw new IllegalArgumentException(
+					"Not a true color bit count: " + bitCount);
+		}
+		return createImage(width, height, bitCount, null);
+	}
+
+	/**
+	 * Creates an image with the layout of a bitmap with the specified color
+	 * depth.
+	 *
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt>,
+	 *            <tt>8</tt>, <tt>24</tt> or <tt>32</tt>
+	 * @param palette
+	 *            the palette of indexed images, which must not have more than
+	 *            <tt>2^bitCount</tt> entries, or <tt>null</tt> to use a gray
+	 *            palette; ignored for 24 and 32-bit images
+	 * @return the new image
+	 */
+	public static BufferedImage createImage(int width, int height,
+			int bitCount, IndexColorModel palette)
+	{
+		palette = BitmapLayout.checkParameters(width, height, bitCount,
+				palette);
+		long length = (long) BMPEncoder.getBytesPerLine(width, bitCount)
+				* height;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"Image too large: " + width + "x" + height);
+		}
+		return createImage(width, height, bitCount, palette,
+				new byte[(int) length]);
+	}
+
+	/**
+	 * Creates an image with the layout of a bitmap that stores its pixels in
+	 * the specified array, which must hold at least <tt>height</tt> padded
+	 * rows.
+	 */
+	static BufferedImage createImage(int width, int height, int bitCount,
+			IndexColorModel palette, byte[] data)
+	{
+		ColorModel cm;
+		if (bitCount <= 8) {
+			cm = withPixelSize(palette, bitCount);
+		} else {
+			boolean alpha = bitCount == 32;
+			cm = new ComponentColorModel(
+					ColorSpace.getInstance(ColorSpace.CS_sRGB), alpha, false,
+					alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE,
+					DataBuffer.TYPE_BYTE);
+		}
+		SampleModel sm = createSampleModel(width, height, bitCount);
+		int length = BMPEncoder.getBytesPerLine(width, bitCount) * height;
+		WritableRaster raster = Raster.createWritableRaster(sm,
+				new DataBufferByte(data, length), null);
+		Hashtable<String, Object> properties = new Hashtable<>();
+		properties.put(PROPERTY, Boolean.TRUE);
+		return new BufferedImage(cm, raster, false, properties);
+	}
+
+	/**
+	 * Determines whether an image has been created by this class and still
+	 * has the layout of a bitmap, which is not the case for subimages.
+	 *
+	 * @param img
+	 *            the image to check
+	 * @return the color depth of the bitmap, or <tt>0</tt> if the image does
+	 *         not have the layout of a bitmap
+	 */
+	public static int getBitCount(BufferedImage img)
+	{
+		if (img.getProperty(PROPERTY) != Boolean.TRUE) {
+			return 0;
+		}
+		Raster raster = img.getRaster();
+		DataBuffer db = raster.getDataBuffer();
+		if (!(db instanceof DataBufferByte) || db.getNumBanks() != 1
+				|| db.getOffset() != 0 || raster.getSampleModelTranslateX() != 0
+				|| raster.getSampleModelTranslateY() != 0) {
+			return 0;
+		}
+
+		ColorModel cm = img.getColorModel();
+		int bitCount;
+		if (cm instanceof IndexColorModel) {
+			bitCount = cm.getPixelSize();
+			if (bitCount != 1 && bitCount != 4 && bitCount != 8) {
+				return 0;
+			}
+		} else if (cm instanceof ComponentColorModel
+				&& cm.getColorSpace().isCS_sRGB()
+				&& !cm.isAlphaPremultiplied()
+				&& cm.getPixelSize() == cm.getNumComponents() * 8) {
+			bitCount = cm.hasAlpha() ? 32 : 24;
+		} else {
+			return 0;
+		}
+
+		SampleModel sm = createSampleModel(img.getWidth(), img.getHeight(),
+				bitCount);
+		return sm.equals(raster.getSampleModel()) ? bitCount : 0;
+	}
+
+	private static SampleModel createSampleModel(int width, int height,
+			int bitCount)
+	{
+		int stride = BMPEncoder.getBytesPerLine(width, bitCount);
+		switch (bitCount) {
+		case 1:
+		case 4:
+			return new MultiPixelPackedSampleModel(DataBuffer.TYPE_BYTE,
+					width, height, bitCount, stride, 0);
+		case 8:
+			return new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+					width, height, 1, stride, new int[] { 0 });
+		case 24:
+			return new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+					width, height, 3, stride, new int[] { 2, 1, 0 });
+		default:
+			return new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+					width, height, 4, stride, new int[] { 2, 1, 0, 3 });
+		}
+	}
+
+	/**
+	 * @return the palette with the specified number of bits per pixel
+	 */
+	private static IndexColorModel withPixelSize(IndexColorModel palette,
+			int bitCount)
+	{
+		if (palette.getPixelSize() == bitCount) {
+			return palette;
+		}
+		int[] colors = new int[palette.getMapSize()];
+		palette.getRGBs(colors);
+		return new IndexColorModel(bitCount, colors.length, colors, 0,
+				palette.hasAlpha(), -1, DataBuffer.TYPE_BYTE);
+	}
+
+}
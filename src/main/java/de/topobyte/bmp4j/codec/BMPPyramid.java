@@ -0,0 +1,286 @@
+package de.topobyte.bmp4j.codec;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Builds a multi-resolution pyramid of a bitmap in a single pass. Level
+ * <tt>0</tt> is the bitmap itself and each further level halves the width
+ * and height of the previous one, rounding up, by averaging boxes of 2x2
+ * pixels. Boxes at the right and bottom edges of levels with odd size cover
+ * the remaining single column or row. Colors are weighted by alpha.
+ *
+ * The rows of the bitmap are read once from top to bottom and streamed
+ * through a cascade of downsamplers that only buffer one row each, so all
+ * levels are produced at the same time with memory proportional to the
+ * width of the bitmap.
+ */
+public final class BMPPyramid
+{
+
+	/**
+	 * Receives the rows of the pyramid levels. For each level, rows are
+	 * passed in order from top to bottom.
+	 */
+	public interface RowHandler
+	{
+
+		/**
+		 * @param level
+		 *            the level of the pyramid, <tt>0</tt> for the bitmap
+		 *            itself
+		 * @param y
+		 *            the row within the level
+		 * @param argb
+		 *            the pixels, as packed <tt>int</tt> values in the default
+		 *            RGB color model; only valid during the call
+		 * @param offset
+		 *            the offset of the first pixel within <tt>argb</tt>
+		 * @throws IOException
+		 *             if an error occurs
+		 */
+		void handleRow(int level, int y, int[] argb, int offset)
+				throws IOException;
+
+	}
+
+	private BMPPyramid()
+	{
+	}
+
+	/**
+	 * @return the width or height of a pyramid level
+	 */
+	public static int getLevelSize(int size, int level)
+	{
+		return ((size - 1) >> level) + 1;
+	}
+
+	/**
+	 * @return the number of levels of a complete pyramid, the last of which
+	 *         has a size of 1x1 pixels
+	 */
+	public static int getLevelCount(int width, int height)
+	{
+		return 33 - Integer.numberOfLeadingZeros(Math.max(width, height) - 1);
+	}
+
+	/**
+	 * Builds levels <tt>0</tt> to <tt>levels - 1</tt> of the pyramid of a
+	 * bitmap and passes their rows to the handler.
+	 *
+	 * @param reader
+	 *            the bitmap
+	 * @param levels
+	 *            the number of levels, between <tt>1</tt> and
+	 *            {@link #getLevelCount(int, int)}
+	 * @param handler
+	 *            the handler that receives the rows
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void build(BMPReader reader, int levels,
+			RowHandler handler) throws IOException
+	{
+		int width = reader.getWidth();
+		int height = reader.getHeight();
+		if (levels < 1 || levels > getLevelCount(width, height)) {
+			throw new IllegalArgumentException("Invalid number of levels: "
+					+ levels + " for size " + width + "x" + height);
+		}
+
+		Downsampler[] downsamplers = new Downsampler[levels - 1];
+		for (int level = 1; level < levels; level++) {
+			downsamplers[level - 1] = new Downsampler(
+					getLevelSize(width, level - 1),
+					getLevelSize(height, level - 1));
+		}
+
+		int[] pixels = new int[width];
+		for (int y = 0; y < height; y++) {
+			reader.readRGB(y, pixels, 0);
+			handler.handleRow(0, y, pixels, 0);
+			int[] row = pixels;
+			for (int level = 1; level < levels; level++) {
+				Downsampler downsampler = downsamplers[level - 1];
+				if (!downsampler.addRow(row)) {
+					break;
+				}
+				row = downsampler.row;
+				handler.handleRow(level, downsampler.rowCount - 1, row, 0);
+			}
+		}
+	}
+
+	/**
+	 * Builds the pyramid of a bitmap and writes each level with its own
+	 * writer. The number of levels is the number of writers, and each writer
+	 * must have the size of its level and a color depth of 24 or 32 bits.
+	 * The writers are not closed.
+	 *
+	 * @param reader
+	 *            the bitmap
+	 * @param writers
+	 *            the writers for levels <tt>0</tt> to
+	 *            <tt>writers.length - 1</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(BMPReader reader, final BMPWriter[] writers)
+			throws IOException
+	{
+		for (int level = 0; level < writers.length; level++) {
+			BMPWriter writer = writers[level];
+			if (writer.getWidth() != getLevelSize(reader.getWidth(), level)
+					|| writer.getHeight() != getLevelSize(reader.getHeight(),
+							level)) {
+				throw new IllegalArgumentException(
+						"Writer size does not match level " + level);
+			}
+			if (writer.getBitCount() <= 8) {
+				throw new IllegalArgumentException(
+						"Writer of level " + level + " is indexed");
+			}
+		}
+		build(reader, writers.length, new RowHandler() {
+
+			@Override
+			public void handleRow(int level, int y, int[] argb, int offset)
+					throws IOException
+			{
+				writers[level].writeRow(y, argb, offset);
+			}
+
+		});
+	}
+
+	/**
+	 * Builds the pyramid of a bitmap file and writes each level to its own
+	 * file, replacing existing files. Levels are written as 32-bit bitmaps if
+	 * the source is a 32-bit bitmap and as 24-bit bitmaps otherwise.
+	 *
+	 * @param source
+	 *            the bitmap file
+	 * @param targets
+	 *            the files for levels <tt>0</tt> to
+	 *            <tt>targets.length - 1</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void write(Path source, Path[] targets) throws IOException
+	{
+		try (BMPReader reader = BMPReader.open(source)) {
+			int width = reader.getWidth();
+			int height = reader.getHeight();
+			if (targets.length < 1
+					|| targets.length > getLevelCount(width, height)) {
+				throw new IllegalArgumentException(
+						"Invalid number of levels: " + targets.length
+								+ " for size " + width + "x" + height);
+			}
+			int bitCount = reader.getBitCount() == 32 ? 32 : 24;
+			BMPWriter[] writers = new BMPWriter[targets.length];
+			try {
+				for (int level = 0; level < targets.length; level++) {
+					writers[level] = BMPWriter.open(targets[level],
+							getLevelSize(width, level),
+							getLevelSize(height, level), bitCount, null);
+				}
+				write(reader, writers);
+			} finally {
+				close(writers);
+			}
+		}
+	}
+
+	private static void close(BMPWriter[] writers) throws IOException
+	{
+		IOException exception = null;
+		for (BMPWriter writer : writers) {
+			if (writer == null) {
+				continue;
+			}
+			try {
+				writer.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Halves the width and height of a level by averaging boxes of 2x2
+	 * pixels, buffering the sums of one reduced row.
+	 */
+	private static class Downsampler
+	{
+
+		private final int srcWidth;
+		private final int srcHeight;
+
+		// alpha, premultiplied red, green and blue for each reduced column
+		private final int[] sums;
+		private final int[] row;
+
+		private int srcRow = 0;
+		private int rowCount = 0;
+
+		Downsampler(int srcWidth, int srcHeight)
+		{
+			this.srcWidth = srcWidth;
+			this.srcHeight = srcHeight;
+			int width = getLevelSize(srcWidth, 1);
+			sums = new int[width * 4];
+			row = new int[width];
+		}
+
+		/**
+		 * Adds the next source row.
+		 *
+		 * @return whether a reduced row has been completed in {@link #row}
+		 */
+		boolean addRow(int[] src)
+		{
+			for (int x = 0; x < srcWidth; x++) {
+				int argb = src[x];
+				int a = argb >>> 24;
+				int i = (x >> 1) * 4;
+				sums[i] += a;
+				sums[i + 1] += ((argb >> 16) & 0xFF) * a;
+				sums[i + 2] += ((argb >> 8) & 0xFF) * a;
+				sums[i + 3] += (argb & 0xFF) * a;
+			}
+			srcRow++;
+			if ((srcRow & 1) != 0 && srcRow != srcHeight) {
+				return false;
+			}
+
+			int rows = 2 - (srcRow & 1);
+			for (int i = 0; i < row.length; i++) {
+				int a = sums[i * 4];
+				if (a == 0) {
+					row[i] = 0;
+					continue;
+				}
+				int count = rows * Math.min(2, srcWidth - i * 2);
+				int half = a / 2;
+				int r = (sums[i * 4 + 1] + half) / a;
+				int g = (sums[i * 4 + 2] + half) / a;
+				int b = (sums[i * 4 + 3] + half) / a;
+				int alpha = (a + count / 2) / count;
+				row[i] = (alpha << 24) | (r << 16) | (g << 8) | b;
+			}
+			Arrays.fill(sums, 0);
+			rowCount++;
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,220 @@
+package de.topobyte.bmp4j.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.topobyte.bmp4j.io.BufferedLittleEndianFile;
+
+/**
+ * Reads the rows of an uncompressed BMP file on demand, so that images can be
+ * processed without holding all of their pixels in memory. This makes it
+ * possible to read images whose raster exceeds the size of a Java array, for
+ * example by copying rows into direct or memory-mapped buffers.
+ *
+ * Rows are read directly from their position in the file using positional
+ * reads on a <tt>FileChannel</tt>, so they may be read in any order. Only
+ * uncompressed bitmaps with 1, 4, 8, 24 or 32 bits per pixel are supported.
+ */
+public class BMPReader implements Closeable
+{
+
+	private final BufferedLittleEndianFile file;
+	private final FileHeader fileHeader;
+	private final InfoHeader infoHeader;
+	private final BitmapLayout layout;
+
+	private Palette palette;
+	private RowConverter converter;
+
+	private ByteBuffer line;
+
+	/**
+	 * Opens the specified file for reading.
+	 *
+	 * @param file
+	 *            the BMP file
+	 * @return the reader
+	 * @throws IOException
+	 *             if an error occurs or the file is not an uncompressed BMP
+	 *             file
+	 */
+	public static BMPReader open(Path file) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new BMPReader(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a reader for the BMP file in the specified channel, starting at
+	 * position <tt>0</tt>. The channel is closed when the reader is closed.
+	 *
+	 * @param channel
+	 *            the channel to read from
+	 * @throws IOException
+	 *             if an error occurs or the file is not an uncompressed BMP
+	 *             file
+	 */
+	public BMPReader(FileChannel channel) throws IOException
+	{
+		file = new BufferedLittleEndianFile(channel);
+		fileHeader = BMPDecoder.readHeader(file);
+		infoHeader = BMPDecoder.readInfoHeader(file);
+		layout = BitmapLayout.of(fileHeader, infoHeader);
+
+		if (layout.bitCount <= 8) {
+			file.seek(14 + infoHeader.getSize());
+			palette = Palette.read(file, infoHeader.getNumColors());
+			int[] colors = new int[palette.size()];
+			for (int i = 0; i < colors.length; i++) {
+				colors[i] = 0xFF000000 | palette.getRGB(i);
+			}
+			converter = RowConverters.forPalette(
+					PixelFormat.forBitCount(layout.bitCount), colors);
+		} else {
+			converter = RowConverters.get(
+					PixelFormat.forBitCount(layout.bitCount),
+					PixelFormat.INT_ARGB);
+		}
+	}
+
+	public FileHeader getFileHeader()
+	{
+		return fileHeader;
+	}
+
+	public InfoHeader getInfoHeader()
+	{
+		return infoHeader;
+	}
+
+	/**
+	 * @return the width of the image in pixels
+	 */
+	public int getWidth()
+	{
+		return layout.width;
+	}
+
+	/**
+	 * @return the height of the image in pixels
+	 */
+	public int getHeight()
+	{
+		return layout.height;
+	}
+
+	/**
+	 * @return the color depth of the image (bits per pixel)
+	 */
+	public int getBitCount()
+	{
+		return layout.bitCount;
+	}
+
+	/**
+	 * @return the palette of an indexed image, <tt>null</tt> otherwise
+	 */
+	public Palette getPalette()
+	{
+		return palette;
+	}
+
+	/**
+	 * @return the size of a scan line in bytes, including padding
+	 */
+	public int getBytesPerLine()
+	{
+		return layout.bytesPerLine;
+	}
+
+	/**
+	 * @return the size of the raster data in bytes
+	 */
+	public long getRasterSize()
+	{
+		return (long) layout.bytesPerLine * layout.height;
+	}
+
+	/**
+	 * Reads the scan line of an image row as stored in the file, including
+	 * padding, into the buffer at its current position. The position is
+	 * advanced by {@link #getBytesPerLine()}. This method may be called
+	 * concurrently.
+	 *
+	 * @param y
+	 *            the row of the image, counted from the top
+	 * @param dst
+	 *            the buffer that receives the scan line, which may be a heap,
+	 *            direct or mapped buffer
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void readLine(int y, ByteBuffer dst) throws IOException
+	{
+		checkRow(y);
+		if (dst.remaining() < layout.bytesPerLine) {
+			throw new IllegalArgumentException("Buffer too small: "
+					+ dst.remaining() + " < " + layout.bytesPerLine);
+		}
+		ByteBuffer slice = dst.duplicate();
+		slice.limit(slice.position() + layout.bytesPerLine);
+		file.readFully(slice, layout.getLineOffset(y));
+		dst.position(slice.position());
+	}
+
+	/**
+	 * Reads an image row as packed <tt>int</tt> values in the default RGB
+	 * color model. The alpha channel of 32-bit images is passed through, all
+	 * other images are opaque. This method uses an internal buffer and must
+	 * not be called concurrently.
+	 *
+	 * @param y
+	 *            the row of the image, counted from the top
+	 * @param dst
+	 *            the array that receives the pixels
+	 * @param offset
+	 *            the offset of the first pixel within <tt>dst</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void readRGB(int y, int[] dst, int offset) throws IOException
+	{
+		if (line == null) {
+			line = ByteBuffer.allocate(layout.bytesPerLine)
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		line.clear();
+		readLine(y, line);
+		converter.convert(line.array(), 0, dst, offset, layout.width);
+	}
+
+	/**
+	 * Closes the underlying channel.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private void checkRow(int y)
+	{
+		if (y < 0 || y >= layout.height) {
+			throw new IllegalArgumentException("Row out of bounds: " + y);
+		}
+	}
+
+}
@@ -0,0 +1,381 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.topobyte.bmp4j.io.BufferedLittleEndianOutput;
+import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+
+/**
+ * Writes BMP data incrementally, one row or band of rows at a time, so that
+ * an image can be encoded without holding all of its pixels in memory.
+ *
+ * When writing to a <tt>FileChannel</tt>, a regular bottom-up bitmap is
+ * produced and each band is placed at its final position using positional
+ * writes, so rows and bands may be supplied in any order. When writing to an
+ * <tt>OutputStream</tt>, a top-down bitmap (negative height) is produced and
+ * rows have to be supplied in order from top to bottom.
+ *
+ * Rows that have not been written when the writer is closed are left black
+ * (color index <tt>0</tt> for indexed images).
+ */
+public class BMPWriter implements Closeable
+{
+
+	private final int width;
+	private final int height;
+	private final int bitCount;
+	private final int bytesPerLine;
+	private final BitmapLayout layout;
+
+	private final FileChannel channel;
+	private final BufferedLittleEndianOutput out;
+
+	private int nextRow = 0;
+	private boolean closed = false;
+
+	private byte[] buffer = new byte[0];
+	private int[] samples;
+
+	/**
+	 * Creates a writer that writes a bottom-up bitmap to the specified file,
+	 * replacing any existing file.
+	 *
+	 * @param file
+	 *            the file to write to
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt>,
+	 *            <tt>8</tt>, <tt>24</tt> or <tt>32</tt>
+	 * @param palette
+	 *            the palette for indexed color depths, may be <tt>null</tt>
+	 *            for a grayscale palette
+	 * @return the writer
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static BMPWriter open(Path file, int width, int height,
+			int bitCount, IndexColorModel palette) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			return new BMPWriter(channel, width, height, bitCount, palette);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a writer that writes a bottom-up bitmap to the specified
+	 * channel, starting at position <tt>0</tt>. The channel is closed when the
+	 * writer is closed.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt>,
+	 *            <tt>8</tt>, <tt>24</tt> or <tt>32</tt>
+	 * @param palette
+	 *            the palette for indexed color depths, may be <tt>null</tt>
+	 *            for a grayscale palette
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public BMPWriter(FileChannel channel, int width, int height, int bitCount,
+			IndexColorModel palette) throws IOException
+	{
+		this.width = width;
+		this.height = height;
+		this.bitCount = bitCount;
+		this.channel = channel;
+		this.out = null;
+
+		palette = BitmapLayout.checkParameters(width, height, bitCount,
+				palette);
+		layout = BitmapLayout.create(width, height, bitCount, false,
+				palette);
+		bytesPerLine = layout.bytesPerLine;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(
+				(int) layout.dataOffset);
+		layout.writeHeaders(new LittleEndianOutputStream(baos));
+		writeFully(ByteBuffer.wrap(baos.toByteArray()), 0);
+	}
+
+	/**
+	 * Creates a writer that writes a top-down bitmap to the specified stream.
+	 * The stream is closed when the writer is closed.
+	 *
+	 * @param os
+	 *            the stream to write to
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param height
+	 *            the height of the image in pixels
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt>,
+	 *            <tt>8</tt>, <tt>24</tt> or <tt>32</tt>
+	 * @param palette
+	 *            the palette for indexed color depths, may be <tt>null</tt>
+	 *            for a grayscale palette
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public BMPWriter(OutputStream os, int width, int height, int bitCount,
+			IndexColorModel palette) throws IOException
+	{
+		this.width = width;
+		this.height = height;
+		this.bitCount = bitCount;
+		this.channel = null;
+		this.out = new BufferedLittleEndianOutput(os);
+
+		palette = BitmapLayout.checkParameters(width, height, bitCount,
+				palette);
+		layout = BitmapLayout.create(width, height, bitCount, true,
+				palette);
+		bytesPerLine = layout.bytesPerLine;
+
+		layout.writeHeaders(out);
+	}
+
+	/**
+	 * @return the width of the image in pixels
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * @return the height of the image in pixels
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * @return the color depth of the image (bits per pixel)
+	 */
+	public int getBitCount()
+	{
+		return bitCount;
+	}
+
+	/**
+	 * Writes a band of rows. The band must have the same width as the image.
+	 * For indexed color depths, the band's samples are interpreted as color
+	 * indices, otherwise its RGB values are written.
+	 *
+	 * @param y
+	 *            the row of the image at which the band starts
+	 * @param band
+	 *            the band of rows
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeRows(int y, BufferedImage band) throws IOException
+	{
+		int bandHeight = band.getHeight();
+		checkBand(y, band.getWidth(), bandHeight);
+		byte[] buf = getBuffer(bandHeight);
+
+		if (samples == null) {
+			samples = new int[width];
+		}
+
+		if (bitCount <= 8) {
+			Raster raster = band.getRaster();
+			for (int r = 0; r < bandHeight; r++) {
+				raster.getSamples(raster.getMinX(), raster.getMinY() + r,
+						width, 1, 0, samples);
+				Scanlines.packIndices(samples, 0, buf,
+						getBufferOffset(bandHeight, r), width, bitCount);
+			}
+		} else {
+			for (int r = 0; r < bandHeight; r++) {
+				Scanlines.getRGB(band, r, samples);
+				packRgb(samples, 0, buf, getBufferOffset(bandHeight, r));
+			}
+		}
+
+		writeBand(y, bandHeight);
+	}
+
+	/**
+	 * Writes a single row of a 24 or 32-bit image.
+	 *
+	 * @param y
+	 *            the row of the image
+	 * @param rgb
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param offset
+	 *            the offset of the first pixel within <tt>rgb</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeRow(int y, int[] rgb, int offset) throws IOException
+	{
+		if (bitCount <= 8) {
+			throw new IllegalStateException(
+					"Writing RGB data to an indexed image");
+		}
+		checkBand(y, width, 1);
+		byte[] buf = getBuffer(1);
+		packRgb(rgb, offset, buf, 0);
+		writeBand(y, 1);
+	}
+
+	/**
+	 * Writes a single row of color indices of a 1, 4 or 8-bit image.
+	 *
+	 * @param y
+	 *            the row of the image
+	 * @param indices
+	 *            the color indices
+	 * @param offset
+	 *            the offset of the first pixel within <tt>indices</tt>
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void writeRow(int y, byte[] indices, int offset) throws IOException
+	{
+		if (bitCount > 8) {
+			throw new IllegalStateException(
+					"Writing color indices to a non-indexed image");
+		}
+		checkBand(y, width, 1);
+		byte[] buf = getBuffer(1);
+		Scanlines.packIndices(indices, offset, buf, 0, width, bitCount);
+		writeBand(y, 1);
+	}
+
+	/**
+	 * Completes the bitmap and closes the underlying channel or stream.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (channel != null) {
+			try {
+				long fileSize = layout.getFileSize();
+				if (channel.size() < fileSize) {
+					// unwritten rows are read back as zeros
+					writeFully(ByteBuffer.wrap(new byte[1]), fileSize - 1);
+				}
+			} finally {
+				channel.close();
+			}
+		} else {
+			try {
+				byte[] zero = new byte[bytesPerLine];
+				for (; nextRow < height; nextRow++) {
+					out.write(zero);
+				}
+				out.flush();
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private void packRgb(int[] rgb, int offset, byte[] buf, int bufOffset)
+	{
+		if (bitCount == 24) {
+			Scanlines.packRgb24(rgb, offset, buf, bufOffset, width);
+		} else {
+			Scanlines.packArgb32(rgb, offset, buf, bufOffset, width);
+		}
+	}
+
+	private void checkBand(int y, int bandWidth, int bandHeight)
+	{
+		if (closed) {
+			throw new IllegalStateException("Writer has been closed");
+		}
+		if (bandWidth != width) {
+			throw new IllegalArgumentException("Band width " + bandWidth
+					+ " does not match image width " + width);
+		}
+		if (y < 0 || bandHeight < 0 || y + bandHeight > height) {
+			throw new IllegalArgumentException("Rows " + y + " to "
+					+ (y + bandHeight - 1) + " out of bounds");
+		}
+		if (channel == null && y != nextRow) {
+			throw new IllegalStateException("Rows must be written in order "
+					+ "when writing to a stream, expected row " + nextRow
+					+ " but got " + y);
+		}
+	}
+
+	private byte[] getBuffer(int bandHeight)
+	{
+		int size = bytesPerLine * bandHeight;
+		if (buffer.length < size) {
+			// padding bytes are never written, so they stay zero
+			buffer = new byte[size];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Determines the position of a band row within the buffer, which holds
+	 * the rows in the order in which they are stored in the file.
+	 */
+	private int getBufferOffset(int bandHeight, int r)
+	{
+		if (channel != null) {
+			return (bandHeight - 1 - r) * bytesPerLine;
+		}
+		return r * bytesPerLine;
+	}
+
+	private void writeBand(int y, int bandHeight) throws IOException
+	{
+		int size = bytesPerLine * bandHeight;
+		if (channel != null) {
+			// the last row of the band comes first in a bottom-up bitmap
+			writeFully(ByteBuffer.wrap(buffer, 0, size),
+					layout.getLineOffset(y + bandHeight - 1));
+		} else {
+			out.write(buffer, 0, size);
+			nextRow += bandHeight;
+		}
+	}
+
+	private void writeFully(ByteBuffer buf, long position) throws IOException
+	{
+		while (buf.hasRemaining()) {
+			position += channel.write(buf, position);
+		}
+	}
+
+}
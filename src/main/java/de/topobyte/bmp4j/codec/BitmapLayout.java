@@ -0,0 +1,177 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+
+import de.topobyte.bmp4j.io.LittleEndianOutput;
+
+/**
+ * Describes where the scan lines of an uncompressed bitmap are located within
+ * a BMP file.
+ */
+final class BitmapLayout
+{
+
+	final int width;
+	final int height;
+	final int bitCount;
+	final boolean topDown;
+	final int bytesPerLine;
+	final long dataOffset;
+	final IndexColorModel palette;
+
+	BitmapLayout(int width, int height, int bitCount, boolean topDown,
+			long dataOffset)
+	{
+		this(width, height, bitCount, topDown, dataOffset, null);
+	}
+
+	private BitmapLayout(int width, int height, int bitCount,
+			boolean topDown, long dataOffset, IndexColorModel palette)
+	{
+		this.width = width;
+		this.height = height;
+		this.bitCount = bitCount;
+		this.topDown = topDown;
+		this.dataOffset = dataOffset;
+		this.palette = palette;
+		bytesPerLine = BMPEncoder.getBytesPerLine(width, bitCount);
+	}
+
+	/**
+	 * Creates the layout of a file as written by
+	 * {@link #writeHeaders(LittleEndianOutput)}: a file header, an
+	 * <tt>InfoHeader5</tt> and, for indexed color depths, a color table with
+	 * the entries of the palette.
+	 *
+	 * @param palette
+	 *            the palette for indexed color depths, <tt>null</tt>
+	 *            otherwise
+	 */
+	static BitmapLayout create(int width, int height, int bitCount,
+			boolean topDown, IndexColorModel palette)
+	{
+		int dataOffset = 14 + BMPConstants.HEADER_LENGTH_5;
+		if (palette != null) {
+			dataOffset += palette.getMapSize() * 4;
+		}
+		return new BitmapLayout(width, height, bitCount, topDown, dataOffset,
+				palette);
+	}
+
+	/**
+	 * Creates the layout of an existing file.
+	 *
+	 * @throws IOException
+	 *             if the file does not contain an uncompressed bitmap with
+	 *             1, 4, 8, 24 or 32 bits per pixel
+	 */
+	static BitmapLayout of(FileHeader fileHeader, InfoHeader infoHeader)
+			throws IOException
+	{
+		int bitCount = infoHeader.getBitCount();
+		int compression = infoHeader.getCompression();
+		if (!isUncompressed(infoHeader)) {
+			throw new IOException("Unsupported bitmap format: bit count="
+					+ bitCount + ", compression=" + compression);
+		}
+		int height = infoHeader.getHeight();
+		return new BitmapLayout(infoHeader.getWidth(), Math.abs(height),
+				bitCount, height < 0, fileHeader.dataOffset);
+	}
+
+	/**
+	 * @return whether the scan lines of the bitmap are stored uncompressed,
+	 *         with 1, 4, 8, 24 or 32 bits per pixel in the default layout
+	 */
+	static boolean isUncompressed(InfoHeader infoHeader)
+	{
+		int bitCount = infoHeader.getBitCount();
+		int compression = infoHeader.getCompression();
+		if (compression == BMPConstants.BI_BITFIELDS && bitCount == 32
+				&& infoHeader instanceof InfoHeader5) {
+			InfoHeader5 ih = (InfoHeader5) infoHeader;
+			return ih.iRedMask == 0x00FF0000 && ih.iGreenMask == 0x0000FF00
+					&& ih.iBlueMask == 0x000000FF;
+		} else if (compression == BMPConstants.BI_RGB) {
+			switch (bitCount) {
+			case 1:
+			case 4:
+			case 8:
+			case 24:
+			case 32:
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Validates the parameters of a new bitmap.
+	 *
+	 * @return the palette to use, which is a grayscale palette if the bitmap
+	 *         is indexed and no palette has been specified, or <tt>null</tt>
+	 *         for bitmaps that are not indexed
+	 */
+	static IndexColorModel checkParameters(int width, int height,
+			int bitCount, IndexColorModel palette)
+	{
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException(
+					"Invalid image size: " + width + "x" + height);
+		}
+		switch (bitCount) {
+		case 1:
+		case 4:
+		case 8:
+			if (palette == null) {
+				return BMPEncoder.createGrayPalette(bitCount);
+			}
+			if (palette.getMapSize() > 1 << bitCount) {
+				throw new IllegalArgumentException(
+						"Palette too large for bit count " + bitCount + ": "
+								+ palette.getMapSize());
+			}
+			return palette;
+		case 24:
+		case 32:
+			return null;
+		}
+		throw new IllegalArgumentException("Unsupported bit count: " + bitCount);
+	}
+
+	long getFileSize()
+	{
+		return dataOffset + (long) bytesPerLine * height;
+	}
+
+	/**
+	 * @return the position of the scan line of image row <tt>y</tt> within
+	 *         the file
+	 */
+	long getLineOffset(int y)
+	{
+		int line = topDown ? y : height - 1 - y;
+		return dataOffset + (long) line * bytesPerLine;
+	}
+
+	/**
+	 * Writes the file header, info header and color table.
+	 */
+	void writeHeaders(LittleEndianOutput out) throws IOException
+	{
+		InfoHeader5 ih = BMPEncoder.createInfoHeader5(width,
+				topDown ? -height : height, bitCount);
+		if (palette != null) {
+			ih.iColorsUsed = BMPEncoder.getColorsUsed(palette, bitCount);
+		}
+
+		BMPEncoder.writeFileHeader(getFileSize(), dataOffset, out);
+		ih.write(out);
+
+		if (palette != null) {
+			BMPEncoder.writeColorMap(palette, out);
+		}
+	}
+
+}
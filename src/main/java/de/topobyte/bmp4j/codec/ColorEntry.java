@@ -2,7 +2,7 @@ package de.topobyte.bmp4j.codec;
 
 import java.io.IOException;
 
-import de.topobyte.bmp4j.io.LittleEndianInputStream;
+import de.topobyte.bmp4j.io.LittleEndianInput;
 
 /**
  * Represents an RGB color entry used in the palette of an indexed image
@@ -38,7 +38,7 @@ public class ColorEntry
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public ColorEntry(LittleEndianInputStream in) throws IOException
+	public ColorEntry(LittleEndianInput in) throws IOException
 	{
 		bBlue = in.readUnsignedByte();
 		bGreen = in.readUnsignedByte();
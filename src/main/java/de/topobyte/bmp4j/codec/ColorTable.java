@@ -0,0 +1,137 @@
+package de.topobyte.bmp4j.codec;
+
+import java.util.Arrays;
+
+/**
+ * A set of distinct colors with a fixed maximum size, which assigns an index
+ * to each color in the order of insertion. Optionally, an <tt>int</tt> value
+ * can be stored with each color, which makes the table a map from colors to
+ * values.
+ *
+ * Colors are stored in a primitive open-addressing hash table, so adding and
+ * looking up colors does not allocate.
+ */
+final class ColorTable
+{
+
+	private final int limit;
+	private final int shift;
+	private final int mask;
+	private final int[] keys;
+	private final int[] values;
+	// color index + 1, 0 marks an empty slot
+	private final int[] slots;
+	private final int[] colors;
+	private int size = 0;
+
+	/**
+	 * Creates a table that holds up to <tt>limit</tt> colors.
+	 *
+	 * @param limit
+	 *            the maximum number of colors
+	 */
+	ColorTable(int limit)
+	{
+		this.limit = limit;
+		// keep the load factor at or below 0.5
+		int capacity = Integer.highestOneBit(Math.max(limit, 1) * 2 - 1) << 1;
+		shift = 32 - Integer.numberOfTrailingZeros(capacity);
+		mask = capacity - 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		slots = new int[capacity];
+		colors = new int[limit];
+	}
+
+	private int slot(int color)
+	{
+		int i = (color * 0x9E3779B9) >>> shift;
+		while (slots[i] != 0 && keys[i] != color) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Adds a color to the table. Its value is its index.
+	 *
+	 * @param color
+	 *            the color to add
+	 * @return <tt>false</tt> if the color is not contained in the table and
+	 *         the table is full, <tt>true</tt> otherwise
+	 */
+	boolean add(int color)
+	{
+		return add(color, size);
+	}
+
+	/**
+	 * Adds a color with an associated value to the table. If the table
+	 * already contains the color, its value is kept.
+	 *
+	 * @param color
+	 *            the color to add
+	 * @param value
+	 *            the value to associate with the color
+	 * @return <tt>false</tt> if the color is not contained in the table and
+	 *         the table is full, <tt>true</tt> otherwise
+	 */
+	boolean add(int color, int value)
+	{
+		int i = slot(color);
+		if (slots[i] != 0) {
+			return true;
+		}
+		if (size == limit) {
+			return false;
+		}
+		keys[i] = color;
+		values[i] = value;
+		colors[size] = color;
+		slots[i] = ++size;
+		return true;
+	}
+
+	/**
+	 * @return the value associated with the color, or <tt>-1</tt> if the
+	 *         table does not contain the color
+	 */
+	int get(int color)
+	{
+		int i = slot(color);
+		return slots[i] == 0 ? -1 : values[i];
+	}
+
+	/**
+	 * @return the index of the color, or <tt>-1</tt> if the table does not
+	 *         contain the color
+	 */
+	int indexOf(int color)
+	{
+		return slots[slot(color)] - 1;
+	}
+
+	/**
+	 * Removes all colors from the table.
+	 */
+	void clear()
+	{
+		Arrays.fill(slots, 0);
+		size = 0;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the colors, in the order of their indices. The returned array
+	 *         may be longer than the number of colors.
+	 */
+	int[] getColors()
+	{
+		return colors;
+	}
+
+}
@@ -4,12 +4,20 @@ public class FileHeader
 {
 
 	public String signature;
-	public int fileSize;
+	/**
+	 * The size of the file in bytes, an unsigned 32-bit value. Files that are
+	 * too large for the field have a file size of <tt>0</tt>.
+	 */
+	public long fileSize;
 	public int reserved;
-	public int dataOffset;
+	/**
+	 * The position of the raster data within the file, an unsigned 32-bit
+	 * value.
+	 */
+	public long dataOffset;
 
-	public FileHeader(String signature, int fileSize, int reserved,
-			int dataOffset)
+	public FileHeader(String signature, long fileSize, int reserved,
+			long dataOffset)
 	{
 		this.signature = signature;
 		this.fileSize = fileSize;
@@ -0,0 +1,222 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pool of the pixel arrays behind decoded images, so that decoding many
+ * images of the same shape does not allocate (and zero) a new array for each
+ * image.
+ *
+ * Arrays are grouped by their type and length, which is the same for all
+ * images with equal dimensions and pixel type. The pool holds at most a
+ * configurable number of bytes; when that is exceeded, the arrays of the
+ * least recently used shapes are dropped first.
+ *
+ * Configure a pool on a {@link BMPDecoderContext} and return images to the
+ * pool with {@link #release(BufferedImage)} once they are no longer used. An
+ * image must not be accessed after it has been released. The pool may be
+ * shared by multiple threads.
+ */
+public class ImageBufferPool
+{
+
+	private final long maxBytes;
+	private long size = 0;
+
+	// access order, so that the first entry is the least recently used one
+	private final LinkedHashMap<Key, ArrayDeque<Object>> buffers = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param maxBytes
+	 *            the maximum number of bytes held by the pool
+	 */
+	public ImageBufferPool(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return the maximum number of bytes held by the pool
+	 */
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * @return the number of bytes currently held by the pool
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the pixel array of an image to the pool. Images whose pixels
+	 * are not stored in a single <tt>byte</tt> or <tt>int</tt> array are
+	 * ignored.
+	 *
+	 * @param image
+	 *            an image that is no longer used
+	 */
+	public void release(BufferedImage image)
+	{
+		DataBuffer db = image.getRaster().getDataBuffer();
+		if (db.getNumBanks() != 1 || db.getOffset() != 0) {
+			return;
+		}
+		if (db instanceof DataBufferInt) {
+			release(((DataBufferInt) db).getData());
+		} else if (db instanceof DataBufferByte) {
+			release(((DataBufferByte) db).getData());
+		}
+	}
+
+	/**
+	 * Returns a pixel array to the pool.
+	 *
+	 * @param array
+	 *            an array that is no longer used
+	 */
+	public void release(int[] array)
+	{
+		put(new Key(DataBuffer.TYPE_INT, array.length), array,
+				array.length * 4L);
+	}
+
+	/**
+	 * Returns a pixel array to the pool.
+	 *
+	 * @param array
+	 *            an array that is no longer used
+	 */
+	public void release(byte[] array)
+	{
+		put(new Key(DataBuffer.TYPE_BYTE, array.length), array, array.length);
+	}
+
+	/**
+	 * Takes an array from the pool. Its contents are undefined.
+	 *
+	 * @param length
+	 *            the length of the array
+	 * @return an array from the pool or a newly allocated one
+	 */
+	public int[] takeInts(int length)
+	{
+		Object array = take(new Key(DataBuffer.TYPE_INT, length),
+				length * 4L);
+		return array != null ? (int[]) array : new int[length];
+	}
+
+	/**
+	 * Takes an array from the pool. Its contents are undefined.
+	 *
+	 * @param length
+	 *            the length of the array
+	 * @return an array from the pool or a newly allocated one
+	 */
+	public byte[] takeBytes(int length)
+	{
+		Object array = take(new Key(DataBuffer.TYPE_BYTE, length), length);
+		return array != null ? (byte[]) array : new byte[length];
+	}
+
+	/**
+	 * Removes all arrays from the pool.
+	 */
+	public synchronized void clear()
+	{
+		buffers.clear();
+		size = 0;
+	}
+
+	private synchronized void put(Key key, Object array, long bytes)
+	{
+		if (bytes > maxBytes) {
+			return;
+		}
+		ArrayDeque<Object> queue = buffers.get(key);
+		if (queue == null) {
+			queue = new ArrayDeque<>();
+			buffers.put(key, queue);
+		}
+		queue.addLast(array);
+		size += bytes;
+
+		// evict from the least recently used shapes
+		Iterator<Map.Entry<Key, ArrayDeque<Object>>> iterator = buffers
+				.entrySet().iterator();
+		while (size > maxBytes) {
+			Map.Entry<Key, ArrayDeque<Object>> eldest = iterator.next();
+			ArrayDeque<Object> eldestQueue = eldest.getValue();
+			while (size > maxBytes && !eldestQueue.isEmpty()) {
+				eldestQueue.removeFirst();
+				size -= eldest.getKey().bytes();
+			}
+			if (eldestQueue.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private synchronized Object take(Key key, long bytes)
+	{
+		ArrayDeque<Object> queue = buffers.get(key);
+		if (queue == null) {
+			return null;
+		}
+		Object array = queue.removeLast();
+		if (queue.isEmpty()) {
+			buffers.remove(key);
+		}
+		size -= bytes;
+		return array;
+	}
+
+	private static class Key
+	{
+
+		final int dataType;
+		final int length;
+
+		Key(int dataType, int length)
+		{
+			this.dataType = dataType;
+			this.length = length;
+		}
+
+		long bytes()
+		{
+			return dataType == DataBuffer.TYPE_INT ? length * 4L : length;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return dataType * 31 + length;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return dataType == other.dataType && length == other.length;
+		}
+
+	}
+
+}
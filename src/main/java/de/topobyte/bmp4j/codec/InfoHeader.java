@@ -2,7 +2,7 @@ package de.topobyte.bmp4j.codec;
 
 import java.io.IOException;
 
-import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+import de.topobyte.bmp4j.io.LittleEndianOutput;
 
 public interface InfoHeader
 {
@@ -31,6 +31,6 @@ public interface InfoHeader
 
 	public int getNumColors();
 
-	public void write(LittleEndianOutputStream out) throws IOException;
+	public void write(LittleEndianOutput out) throws IOException;
 
 }
@@ -2,8 +2,8 @@ package de.topobyte.bmp4j.codec;
 
 import java.io.IOException;
 
-import de.topobyte.bmp4j.io.LittleEndianInputStream;
-import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+import de.topobyte.bmp4j.io.LittleEndianInput;
+import de.topobyte.bmp4j.io.LittleEndianOutput;
 
 /**
  * Represents a bitmap <tt>InfoHeader</tt> structure, which provides header
@@ -71,7 +71,9 @@ public class InfoHeader5 implements InfoHeader
 
 	/**
 	 * Calculated number of colors, based on the color depth specified by
-	 * {@link #sBitCount sBitCount}.
+	 * {@link #sBitCount sBitCount}. For indexed images, this is the number of
+	 * entries in the color table, which is limited by
+	 * {@link #iColorsUsed iColorsUsed}.
 	 */
 	public int iNumColors;
 
@@ -105,12 +107,12 @@ public class InfoHeader5 implements InfoHeader
 	 * @throws IOException
 	 *             if an error occurs
 	 */
-	public InfoHeader5(LittleEndianInputStream in) throws IOException
+	public InfoHeader5(LittleEndianInput in) throws IOException
 	{
 		init(in, BMPConstants.HEADER_LENGTH_5);
 	}
 
-	protected void init(LittleEndianInputStream in, int infoSize)
+	protected void init(LittleEndianInput in, int infoSize)
 			throws IOException
 	{
 		this.iSize = infoSize;
@@ -140,6 +142,11 @@ public class InfoHeader5 implements InfoHeader
 		// Colors important - number of important colors 0 = all
 		iColorsImportant = in.readIntLE();
 
+		// indexed images may have a shorter color table
+		if (sBitCount <= 8 && iColorsUsed > 0 && iColorsUsed < iNumColors) {
+			iNumColors = iColorsUsed;
+		}
+
 		iRedMask = in.readIntLE();
 		iGreenMask = in.readIntLE();
 		iBlueMask = in.readIntLE();
@@ -274,7 +281,7 @@ public class InfoHeader5 implements InfoHeader
 	 *             if an error occurs
 	 */
 	@Override
-	public void write(LittleEndianOutputStream out) throws IOException
+	public void write(LittleEndianOutput out) throws IOException
 	{
 		// Size of InfoHeader structure = 124
 		out.writeIntLE(iSize);
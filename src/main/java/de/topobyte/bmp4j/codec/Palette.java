@@ -0,0 +1,250 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+
+import de.topobyte.bmp4j.io.LittleEndianInput;
+import de.topobyte.bmp4j.io.LittleEndianOutput;
+
+/**
+ * The palette of an indexed image (color depth &lt;= 8), stored as an array
+ * of packed <tt>int</tt> values.
+ *
+ * Each entry holds the four bytes of a BMP color table entry in little
+ * endian order, i.e. <tt>0xXXRRGGBB</tt> where <tt>XX</tt> is the reserved
+ * byte. Palettes are read and written with a single bulk operation and are
+ * converted to and from <tt>IndexColorModel</tt> without per-entry objects.
+ * {@link ColorEntry} objects are available as copies of individual entries.
+ */
+public class Palette
+{
+
+	private final int[] entries;
+
+	/**
+	 * Creates a palette with the specified number of entries, all of which
+	 * are black.
+	 *
+	 * @param size
+	 *            the number of entries
+	 */
+	public Palette(int size)
+	{
+		this(new int[size]);
+	}
+
+	/**
+	 * Creates a palette backed by the specified array, which is not copied.
+	 *
+	 * @param entries
+	 *            the entries, packed as <tt>0xXXRRGGBB</tt>
+	 */
+	public Palette(int[] entries)
+	{
+		this.entries = entries;
+	}
+
+	/**
+	 * Reads a palette from the source input.
+	 *
+	 * @param in
+	 *            the source input
+	 * @param size
+	 *            the number of entries
+	 * @return the palette
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static Palette read(LittleEndianInput in, int size)
+			throws IOException
+	{
+		return read(in, size, new byte[size * 4]);
+	}
+
+	/**
+	 * Reads a palette from the source input, using a buffer of at least
+	 * <tt>size * 4</tt> bytes.
+	 */
+	static Palette read(LittleEndianInput in, int size, byte[] buffer)
+			throws IOException
+	{
+		in.readFully(buffer, 0, size * 4);
+		return fromBytes(buffer, 0, size);
+	}
+
+	/**
+	 * Creates a palette from a color table as stored in a BMP file.
+	 *
+	 * @param bytes
+	 *            the color table, with four bytes (blue, green, red,
+	 *            reserved) per entry
+	 * @param offset
+	 *            the offset of the first entry within <tt>bytes</tt>
+	 * @param size
+	 *            the number of entries
+	 * @return the palette
+	 */
+	public static Palette fromBytes(byte[] bytes, int offset, int size)
+	{
+		int[] entries = new int[size];
+		for (int i = 0, p = offset; i < size; i++, p += 4) {
+			entries[i] = (bytes[p] & 0xFF) | (bytes[p + 1] & 0xFF) << 8
+					| (bytes[p + 2] & 0xFF) << 16 | bytes[p + 3] << 24;
+		}
+		return new Palette(entries);
+	}
+
+	/**
+	 * Creates a palette from the colors of an <tt>IndexColorModel</tt>. Alpha
+	 * values are dropped.
+	 *
+	 * @param icm
+	 *            the color model
+	 * @return the palette
+	 */
+	public static Palette fromColorModel(IndexColorModel icm)
+	{
+		int[] entries = new int[icm.getMapSize()];
+		icm.getRGBs(entries);
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] &= 0xFFFFFF;
+		}
+		return new Palette(entries);
+	}
+
+	/**
+	 * Creates a palette from a table of color entries.
+	 *
+	 * @param colorTable
+	 *            the color entries
+	 * @return the palette
+	 */
+	public static Palette fromColorTable(ColorEntry[] colorTable)
+	{
+		int[] entries = new int[colorTable.length];
+		for (int i = 0; i < entries.length; i++) {
+			ColorEntry ce = colorTable[i];
+			entries[i] = (ce.bBlue & 0xFF) | (ce.bGreen & 0xFF) << 8
+					| (ce.bRed & 0xFF) << 16 | (ce.bReserved & 0xFF) << 24;
+		}
+		return new Palette(entries);
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size()
+	{
+		return entries.length;
+	}
+
+	/**
+	 * @return the array backing this palette, with entries packed as
+	 *         <tt>0xXXRRGGBB</tt>
+	 */
+	public int[] getEntries()
+	{
+		return entries;
+	}
+
+	/**
+	 * @param index
+	 *            the index of an entry
+	 * @return the color of the entry, as a packed <tt>int</tt> value in the
+	 *         default RGB color model without alpha
+	 */
+	public int getRGB(int index)
+	{
+		return entries[index] & 0xFFFFFF;
+	}
+
+	/**
+	 * @param index
+	 *            the index of an entry
+	 * @param rgb
+	 *            the new color of the entry, the alpha value is ignored
+	 */
+	public void setRGB(int index, int rgb)
+	{
+		entries[index] = rgb & 0xFFFFFF;
+	}
+
+	/**
+	 * @param index
+	 *            the index of an entry
+	 * @return a copy of the entry
+	 */
+	public ColorEntry getColorEntry(int index)
+	{
+		int entry = entries[index];
+		return new ColorEntry((entry >> 16) & 0xFF, (entry >> 8) & 0xFF,
+				entry & 0xFF, (entry >>> 24));
+	}
+
+	/**
+	 * @return copies of all entries
+	 */
+	public ColorEntry[] toColorTable()
+	{
+		ColorEntry[] colorTable = new ColorEntry[entries.length];
+		for (int i = 0; i < colorTable.length; i++) {
+			colorTable[i] = getColorEntry(i);
+		}
+		return colorTable;
+	}
+
+	/**
+	 * Creates an opaque color model with the colors of this palette.
+	 *
+	 * @param bitCount
+	 *            the number of bits per pixel of the color model
+	 * @return the color model
+	 */
+	public IndexColorModel toColorModel(int bitCount)
+	{
+		// the reserved byte is ignored since the color model has no alpha
+		return new IndexColorModel(bitCount, entries.length, entries, 0,
+				false, -1, DataBuffer.TYPE_BYTE);
+	}
+
+	/**
+	 * Writes this palette to the specified output.
+	 *
+	 * @param out
+	 *            the output to which the palette will be written
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void write(LittleEndianOutput out) throws IOException
+	{
+		write(out, entries.length);
+	}
+
+	/**
+	 * Writes this palette to the specified output, padded with black entries
+	 * to a color table of the specified size.
+	 *
+	 * @param out
+	 *            the output to which the palette will be written
+	 * @param tableSize
+	 *            the number of entries to write, which must not be less than
+	 *            the size of this palette
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void write(LittleEndianOutput out, int tableSize)
+			throws IOException
+	{
+		byte[] bytes = new byte[tableSize * 4];
+		for (int i = 0, p = 0; i < entries.length; i++, p += 4) {
+			int entry = entries[i];
+			bytes[p] = (byte) entry;
+			bytes[p + 1] = (byte) (entry >> 8);
+			bytes[p + 2] = (byte) (entry >> 16);
+			bytes[p + 3] = (byte) (entry >> 24);
+		}
+		out.write(bytes);
+	}
+
+}
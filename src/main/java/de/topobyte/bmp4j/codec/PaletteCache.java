@@ -0,0 +1,228 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.IndexColorModel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.topobyte.bmp4j.io.ByteArrays;
+
+/**
+ * A cache of the palettes of indexed images, so that files sharing the same
+ * palette are decoded into images sharing the same
+ * <tt>IndexColorModel</tt>. Besides saving the allocation of a color model
+ * per image, this lets Java2D reuse the lookup tables it caches per color
+ * model.
+ *
+ * Palettes are identified by their raw bytes as stored in the file and the
+ * color depth. The cache holds a configurable number of palettes; when that
+ * is exceeded, the least recently used palette is dropped. The cache may be
+ * shared by multiple threads.
+ */
+public class PaletteCache
+{
+
+	/**
+	 * A cached palette. Instances are shared and must not be modified.
+	 */
+	public static final class Entry
+	{
+
+		private final IndexColorModel colorModel;
+		private final int[] rgb;
+
+		private Entry(IndexColorModel colorModel, int[] rgb)
+		{
+			this.colorModel = colorModel;
+			this.rgb = rgb;
+		}
+
+		/**
+		 * @return the shared color model of the palette
+		 */
+		public IndexColorModel getColorModel()
+		{
+			return colorModel;
+		}
+
+		/**
+		 * @return the colors of the palette, as packed <tt>int</tt> values in
+		 *         the default RGB color model; the array is shared and must
+		 *         not be modified
+		 */
+		public int[] getRGB()
+		{
+			return rgb;
+		}
+
+	}
+
+	private final int maxEntries;
+
+	private final LinkedHashMap<Key, Entry> entries;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of palettes held by the cache
+	 */
+	public PaletteCache(final int maxEntries)
+	{
+		if (maxEntries < 0) {
+			throw new IllegalArgumentException(
+					"Invalid number of entries: " + maxEntries);
+		}
+		this.maxEntries = maxEntries;
+		// access order, so that the first entry is the least recently used one
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Key, PaletteCache.Entry> eldest)
+			{
+				return size() > maxEntries;
+			}
+
+		};
+	}
+
+	/**
+	 * @return the maximum number of palettes held by the cache
+	 */
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	/**
+	 * @return the number of palettes currently held by the cache
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Removes all palettes from the cache.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Looks up a palette, adding it to the cache if it is not present yet.
+	 *
+	 * @param bitCount
+	 *            the color depth of the image, which must be <tt>1</tt>,
+	 *            <tt>4</tt> or <tt>8</tt>
+	 * @param palette
+	 *            the palette as stored in a BMP file, with four bytes (blue,
+	 *            green, red, reserved) per entry
+	 * @param offset
+	 *            the offset of the first entry within <tt>palette</tt>
+	 * @param numColors
+	 *            the number of entries, at most <tt>2^bitCount</tt>
+	 * @return the cached palette
+	 */
+	public Entry get(int bitCount, byte[] palette, int offset, int numColors)
+	{
+		Key key = new Key(bitCount, palette, offset, numColors * 4);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				return entry;
+			}
+		}
+
+		Entry entry = create(bitCount, palette, offset, numColors);
+		if (maxEntries == 0) {
+			return entry;
+		}
+		synchronized (this) {
+			// the key must not refer to the caller's array
+			Key copy = key.copy();
+			Entry existing = entries.get(copy);
+			if (existing != null) {
+				return existing;
+			}
+			entries.put(copy, entry);
+			return entry;
+		}
+	}
+
+	private static Entry create(int bitCount, byte[] palette, int offset,
+			int numColors)
+	{
+		Palette p = Palette.fromBytes(palette, offset, numColors);
+		int[] rgb = p.getEntries();
+		for (int i = 0; i < numColors; i++) {
+			rgb[i] &= 0xFFFFFF;
+		}
+		return new Entry(p.toColorModel(bitCount), rgb);
+	}
+
+	private static class Key
+	{
+
+		final int bitCount;
+		final byte[] data;
+		final int offset;
+		final int length;
+		final int hash;
+
+		Key(int bitCount, byte[] data, int offset, int length)
+		{
+			this.bitCount = bitCount;
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+			int h = bitCount;
+			for (int i = 0; i < length; i++) {
+				h = 31 * h + data[offset + i];
+			}
+			hash = h;
+		}
+
+		private Key(Key key, byte[] data)
+		{
+			bitCount = key.bitCount;
+			this.data = data;
+			offset = 0;
+			length = key.length;
+			hash = key.hash;
+		}
+
+		Key copy()
+		{
+			byte[] copy = new byte[length];
+			System.arraycopy(data, offset, copy, 0, length);
+			return new Key(this, copy);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (hash != other.hash || bitCount != other.bitCount
+					|| length != other.length) {
+				return false;
+			}
+			return ByteArrays.equals(data, offset, other.data, other.offset,
+					length);
+		}
+
+	}
+
+}
@@ -0,0 +1,156 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The formats of rows of pixels that {@link RowConverters} converts between:
+ * the layouts of BMP scan lines and the layouts of the predefined
+ * <tt>BufferedImage</tt> types with a single data bank.
+ *
+ * Rows are stored in <tt>byte</tt> arrays, except for the formats marked as
+ * <tt>int</tt> formats, and offsets into rows are given in array elements.
+ */
+enum PixelFormat {
+
+	/**
+	 * 24-bit scan lines: blue, green, red.
+	 */
+	BGR24(24, false),
+	/**
+	 * 32-bit scan lines: blue, green, red, alpha.
+	 */
+	BGRA32(32, false),
+	/**
+	 * 16-bit scan lines with 5 bits per color channel, little-endian.
+	 */
+	RGB555(16, false),
+	/**
+	 * 16-bit scan lines with 5 bits for red, 6 bits for green and 5 bits for
+	 * blue, little-endian.
+	 */
+	RGB565(16, false),
+	/**
+	 * 1-bit color indices, most significant bit first.
+	 */
+	INDEXED1(1, false),
+	/**
+	 * 4-bit color indices, high order nibble first.
+	 */
+	INDEXED4(4, false),
+	/**
+	 * 8-bit color indices.
+	 */
+	INDEXED8(8, false),
+	/**
+	 * <tt>TYPE_INT_RGB</tt>, the alpha bits are undefined.
+	 */
+	INT_RGB(32, true),
+	/**
+	 * <tt>TYPE_INT_ARGB</tt>.
+	 */
+	INT_ARGB(32, true),
+	/**
+	 * <tt>TYPE_INT_ARGB_PRE</tt>, color channels premultiplied with alpha.
+	 */
+	INT_ARGB_PRE(32, true),
+	/**
+	 * <tt>TYPE_3BYTE_BGR</tt>: blue, green, red.
+	 */
+	BYTE_BGR(24, false),
+	/**
+	 * <tt>TYPE_4BYTE_ABGR</tt>: alpha, blue, green, red.
+	 */
+	BYTE_ABGR(32, false),
+	/**
+	 * <tt>TYPE_BYTE_GRAY</tt>, 8-bit gray levels.
+	 */
+	BYTE_GRAY(8, false);
+
+	private final int bitsPerPixel;
+	private final boolean ints;
+
+	private PixelFormat(int bitsPerPixel, boolean ints)
+	{
+		this.bitsPerPixel = bitsPerPixel;
+		this.ints = ints;
+	}
+
+	/**
+	 * @return the number of bits per pixel
+	 */
+	int getBitsPerPixel()
+	{
+		return bitsPerPixel;
+	}
+
+	/**
+	 * @return whether rows are stored in <tt>int</tt> arrays, with one pixel
+	 *         per element
+	 */
+	boolean isInts()
+	{
+		return ints;
+	}
+
+	/**
+	 * @return the number of array elements occupied by <tt>width</tt> pixels
+	 */
+	int getRowLength(int width)
+	{
+		if (ints) {
+			return width;
+		}
+		return (int) (((long) width * bitsPerPixel + 7) / 8);
+	}
+
+	/**
+	 * @return the format of the scan lines of uncompressed bitmaps with the
+	 *         specified color depth, using 5 bits per channel for 16-bit
+	 *         bitmaps
+	 */
+	static PixelFormat forBitCount(int bitCount)
+	{
+		switch (bitCount) {
+		case 1:
+			return INDEXED1;
+		case 4:
+			return INDEXED4;
+		case 8:
+			return INDEXED8;
+		case 16:
+			return RGB555;
+		case 24:
+			return BGR24;
+		case 32:
+			return BGRA32;
+		default:
+			throw new IllegalArgumentException(
+					"Invalid bit count: " + bitCount);
+		}
+	}
+
+	/**
+	 * @return the format of the pixels of an image of one of the predefined
+	 *         types, or <tt>null</tt> if the type has no format
+	 */
+	static PixelFormat forImageType(int type)
+	{
+		switch (type) {
+		case BufferedImage.TYPE_INT_RGB:
+			return INT_RGB;
+		case BufferedImage.TYPE_INT_ARGB:
+			return INT_ARGB;
+		case BufferedImage.TYPE_INT_ARGB_PRE:
+			return INT_ARGB_PRE;
+		case BufferedImage.TYPE_3BYTE_BGR:
+			return BYTE_BGR;
+		case BufferedImage.TYPE_4BYTE_ABGR:
+			return BYTE_ABGR;
+		case BufferedImage.TYPE_BYTE_GRAY:
+			return BYTE_GRAY;
+		default:
+			return null;
+		}
+	}
+
+}
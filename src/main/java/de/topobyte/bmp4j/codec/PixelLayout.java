@@ -0,0 +1,61 @@
+package de.topobyte.bmp4j.codec;
+
+/**
+ * The byte layout of pixels with 8 bits per channel in a buffer of raw pixel
+ * data. The name of each constant lists the channels in the order in which
+ * they are stored, e.g. {@link #BGR} denotes pixels of three bytes with blue
+ * stored first, which is the layout of 24-bit BMP scan lines.
+ */
+public enum PixelLayout {
+
+	/**
+	 * Three bytes per pixel: blue, green, red.
+	 */
+	BGR(3, false),
+	/**
+	 * Three bytes per pixel: red, green, blue.
+	 */
+	RGB(3, false),
+	/**
+	 * Four bytes per pixel: blue, green, red, alpha.
+	 */
+	BGRA(4, true),
+	/**
+	 * Four bytes per pixel: red, green, blue, alpha.
+	 */
+	RGBA(4, true),
+	/**
+	 * Four bytes per pixel: alpha, blue, green, red.
+	 */
+	ABGR(4, true),
+	/**
+	 * Four bytes per pixel: alpha, red, green, blue.
+	 */
+	ARGB(4, true);
+
+	private final int bytesPerPixel;
+	private final boolean alpha;
+
+	private PixelLayout(int bytesPerPixel, boolean alpha)
+	{
+		this.bytesPerPixel = bytesPerPixel;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * @return the number of bytes per pixel
+	 */
+	public int getBytesPerPixel()
+	{
+		return bytesPerPixel;
+	}
+
+	/**
+	 * @return whether pixels have an alpha channel
+	 */
+	public boolean hasAlpha()
+	{
+		return alpha;
+	}
+
+}
@@ -0,0 +1,191 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the rows of an image as packed <tt>int</tt> pixels in the default
+ * RGB color model, regardless of where the pixels come from. This lets the
+ * encoder pack scan lines from images and from raw pixel arrays with the
+ * same code.
+ *
+ * After a call to {@link #load(int)}, the pixels of the requested row are
+ * found in {@link #data}, starting at index {@link #offset}. Depending on the
+ * source, <tt>data</tt> is either an internal row buffer or the source array
+ * itself, so it must not be modified. For sources without alpha channel, the
+ * alpha bits of the pixels are undefined.
+ */
+abstract class PixelRows
+{
+
+	final int width;
+	final int height;
+	final boolean alpha;
+
+	int[] data;
+	int offset;
+
+	PixelRows(int width, int height, boolean alpha)
+	{
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException(
+					"Invalid image size: " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Makes the pixels of the specified row available in {@link #data}.
+	 *
+	 * @param y
+	 *            the row, counted from the top of the image
+	 */
+	abstract void load(int y);
+
+	/**
+	 * Rows of an image. Rows of images with packed <tt>int</tt> RGB or ARGB
+	 * pixels are used in place, other images are converted using
+	 * {@link RowConverters}.
+	 */
+	static PixelRows of(final BufferedImage img,
+			final BMPEncoderContext context)
+	{
+		final boolean direct = Scanlines.getIntRowOffset(img, 0) >= 0;
+		final RowConverter converter = direct ? null
+				: RowConverters.getReader(img, PixelFormat.INT_ARGB);
+		return new PixelRows(img.getWidth(), img.getHeight(),
+				img.getColorModel().hasAlpha()) {
+
+			@Override
+			void load(int y)
+			{
+				if (direct) {
+					data = ((DataBufferInt) img.getRaster().getDataBuffer())
+							.getData();
+					offset = Scanlines.getIntRowOffset(img, y);
+					return;
+				}
+				if (data == null) {
+					data = context.getPixels(width);
+				}
+				RowConverters.readRow(img, y, converter, data, 0, data);
+			}
+
+		};
+	}
+
+	/**
+	 * Rows of a <tt>TYPE_BYTE_GRAY</tt> or <tt>TYPE_USHORT_GRAY</tt> image, as
+	 * gray levels of the 8-bit samples. Unlike
+	 * {@link BufferedImage#getRGB(int, int)}, no conversion from the linear
+	 * gray color space is applied.
+	 */
+	static PixelRows ofGray(final BufferedImage img,
+			final BMPEncoderContext context)
+	{
+		return new PixelRows(img.getWidth(), img.getHeight(), false) {
+
+			private byte[] samples;
+
+			@Override
+			void load(int y)
+			{
+				if (data == null) {
+					data = context.getPixels(width);
+					samples = context.getSamples(width);
+				}
+				Scanlines.getGray(img, y, samples);
+				for (int i = 0; i < width; i++) {
+					data[i] = (samples[i] & 0xFF) * 0x010101;
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Rows of an array of packed <tt>int</tt> RGB or ARGB pixels.
+	 */
+	static PixelRows of(final int[] pixels, final int start,
+			final int scansize, int width, int height, boolean alpha)
+	{
+		checkBounds(pixels.length, start, scansize, width, height);
+		return new PixelRows(width, height, alpha) {
+
+			@Override
+			void load(int y)
+			{
+				data = pixels;
+				offset = start + y * scansize;
+			}
+
+		};
+	}
+
+	/**
+	 * Rows of an array of color indices, mapped to the colors of a palette.
+	 */
+	static PixelRows of(final byte[] indices, final int start,
+			final int scansize, int width, int height,
+			IndexColorModel palette, final BMPEncoderContext context)
+	{
+		checkBounds(indices.length, start, scansize, width, height);
+		final int[] colors = new int[256];
+		palette.getRGBs(colors);
+		return new PixelRows(width, height, palette.hasAlpha()) {
+
+			@Override
+			void load(int y)
+			{
+				if (data == null) {
+					data = context.getPixels(width);
+				}
+				int rowStart = start + y * scansize;
+				for (int i = 0; i < width; i++) {
+					data[i] = colors[indices[rowStart + i] & 0xFF];
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Rows of a buffer of pixels in the specified layout. The position of the
+	 * buffer is not changed.
+	 */
+	static PixelRows of(final ByteBuffer pixels, final int start,
+			final int scansize, final PixelLayout layout, int width,
+			int height, final BMPEncoderContext context)
+	{
+		checkBounds(pixels.limit(), start, scansize,
+				width * layout.getBytesPerPixel(), height);
+		return new PixelRows(width, height, layout.hasAlpha()) {
+
+			@Override
+			void load(int y)
+			{
+				if (data == null) {
+					data = context.getPixels(width);
+				}
+				Scanlines.unpack(pixels, start + y * scansize, layout, data,
+						0, width);
+			}
+
+		};
+	}
+
+	private static void checkBounds(int length, int start, int scansize,
+			int rowLength, int height)
+	{
+		long last = start + (long) scansize * (height - 1);
+		if (start < 0 || scansize < rowLength || last < 0
+				|| last + rowLength > length) {
+			throw new IllegalArgumentException("Pixel data out of bounds");
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package de.topobyte.bmp4j.codec;
+
+/**
+ * Converts rows of pixels from one {@link PixelFormat} to another.
+ *
+ * Implementations are specialized for a single pair of formats, so that the
+ * conversion loop of each converter sees a single source and target array
+ * type. Converters are stateless and may be used concurrently.
+ */
+interface RowConverter
+{
+
+	/**
+	 * Converts a row of pixels. Only the bytes occupied by the pixels are
+	 * written; for formats with less than 8 bits per pixel, the remaining
+	 * bits of the last byte are cleared.
+	 *
+	 * @param src
+	 *            the source row, a <tt>byte[]</tt> or <tt>int[]</tt> depending
+	 *            on the source format
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the target row, a <tt>byte[]</tt> or <tt>int[]</tt> depending
+	 *            on the target format
+	 * @param dstOff
+	 *            the offset of the first pixel within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to convert
+	 */
+	void convert(Object src, int srcOff, Object dst, int dstOff, int width);
+
+}
@@ -0,0 +1,711 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+import de.topobyte.bmp4j.io.ByteArrays;
+
+/**
+ * A registry of {@link RowConverter}s, keyed by source and target
+ * {@link PixelFormat}.
+ *
+ * Specialized converters are registered for the common pairs of formats,
+ * including conversions from and to {@link PixelFormat#INT_ARGB} for every
+ * format. Other pairs are converted in two steps through
+ * <tt>INT_ARGB</tt>. Color indices can be converted between the indexed
+ * formats and {@link PixelFormat#BYTE_GRAY}, conversions of indices to
+ * colors are created for a palette using
+ * {@link #forPalette(PixelFormat, int[])}.
+ *
+ * Rows of images are accessed using {@link #readRow} and {@link #writeRow}
+ * with a converter determined once per image by {@link #getReader} or
+ * {@link #getWriter}. They convert directly from and to the data buffer of
+ * images of the predefined types, and fall back to the <tt>getRGB</tt> and
+ * <tt>setRGB</tt> methods of <tt>BufferedImage</tt> for other images.
+ */
+final class RowConverters
+{
+
+	private RowConverters()
+	{
+	}
+
+	// the number of pixels converted at once by two-step conversions
+	private static final int CHUNK_SIZE = 256;
+
+	private static final int[] SCALE5 = BMPDecoder.createScaleTable(0x1F);
+	private static final int[] SCALE6 = BMPDecoder.createScaleTable(0x3F);
+
+	private static final int NUM_FORMATS = PixelFormat.values().length;
+
+	// indexed by the ordinals of the source and target formats, only filled
+	// during class initialization, so lookups need no locking
+	private static final RowConverter[][] converters = new RowConverter[NUM_FORMATS][NUM_FORMATS];
+
+	/**
+	 * Registers a converter, replacing any converter registered for the same
+	 * pair of formats.
+	 */
+	private static void register(PixelFormat src, PixelFormat dst,
+			RowConverter converter)
+	{
+		converters[src.ordinal()][dst.ordinal()] = converter;
+	}
+
+	private static RowConverter lookup(PixelFormat src, PixelFormat dst)
+	{
+		return converters[src.ordinal()][dst.ordinal()];
+	}
+
+	/**
+	 * Returns a converter between two formats. Registered converters are
+	 * shared, other pairs are converted in two steps by a new converter with
+	 * its own chunk buffer, which must not be used concurrently.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if there is no conversion between the formats, i.e. between
+	 *             color indices and colors
+	 */
+	static RowConverter get(PixelFormat src, PixelFormat dst)
+	{
+		RowConverter converter = lookup(src, dst);
+		if (converter != null) {
+			return converter;
+		}
+		final RowConverter first = lookup(src, PixelFormat.INT_ARGB);
+		final RowConverter second = lookup(PixelFormat.INT_ARGB, dst);
+		if (first == null || second == null) {
+			throw new IllegalArgumentException(
+					"Unsupported conversion: " + src + " to " + dst);
+		}
+		final int srcChunk = src.getRowLength(CHUNK_SIZE);
+		final int dstChunk = dst.getRowLength(CHUNK_SIZE);
+		final int[] argb = new int[CHUNK_SIZE];
+		return new RowConverter() {
+
+			@Override
+			public void convert(Object s, int srcOff, Object d, int dstOff,
+					int width)
+			{
+				for (int x = 0; x < width; x += CHUNK_SIZE) {
+					int n = Math.min(width - x, CHUNK_SIZE);
+					first.convert(s, srcOff, argb, 0, n);
+					second.convert(argb, 0, d, dstOff, n);
+					srcOff += srcChunk;
+					dstOff += dstChunk;
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Creates a converter of color indices in one of the indexed formats to
+	 * {@link PixelFormat#INT_ARGB} colors. Indices beyond the end of the
+	 * palette are mapped to opaque black.
+	 *
+	 * @param colors
+	 *            the colors of the palette in the default RGB color model
+	 */
+	static RowConverter forPalette(PixelFormat src, int[] colors)
+	{
+		final int bitCount = src.getBitsPerPixel();
+		if (src != PixelFormat.INDEXED1 && src != PixelFormat.INDEXED4
+				&& src != PixelFormat.INDEXED8) {
+			throw new IllegalArgumentException("Not an indexed format: " + src);
+		}
+		final int[] lut = new int[256];
+		for (int i = 0; i < lut.length; i++) {
+			lut[i] = i < colors.length ? colors[i] : 0xFF000000;
+		}
+		if (bitCount == 8) {
+			return new RowConverter() {
+
+				@Override
+				public void convert(Object src, int srcOff, Object dst,
+						int dstOff, int width)
+				{
+					byte[] s = (byte[]) src;
+					int[] d = (int[]) dst;
+					for (int x = 0; x < width; x++) {
+						d[dstOff + x] = lut[s[srcOff + x] & 0xFF];
+					}
+				}
+
+			};
+		}
+		return new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				byte[] s = (byte[]) src;
+				int[] d = (int[]) dst;
+				for (int x = 0; x < width; x++) {
+					d[dstOff + x] = lut[getIndex(s, srcOff, x, bitCount)];
+				}
+			}
+
+		};
+	}
+
+	private static int getIndex(byte[] src, int srcOff, int x, int bitCount)
+	{
+		if (bitCount == 1) {
+			return (src[srcOff + x / 8] >> (7 - x % 8)) & 0x1;
+		}
+		return (src[srcOff + x / 2] >> ((x & 1) == 0 ? 4 : 0)) & 0xF;
+	}
+
+	/**
+	 * Determines the array that holds the pixels of an image of one of the
+	 * types supported by {@link PixelFormat#forImageType(int)}.
+	 */
+	static Object getData(BufferedImage img)
+	{
+		DataBuffer db = img.getRaster().getDataBuffer();
+		if (db instanceof DataBufferInt) {
+			return ((DataBufferInt) db).getData();
+		}
+		return ((DataBufferByte) db).getData();
+	}
+
+	/**
+	 * Determines the position of a row within the data bank of an image of one
+	 * of the types supported by {@link PixelFormat#forImageType(int)}, in
+	 * array elements.
+	 */
+	static int getRowOffset(BufferedImage img, int y)
+	{
+		Raster raster = img.getRaster();
+		SampleModel sm = raster.getSampleModel();
+		int sx = raster.getMinX() - raster.getSampleModelTranslateX();
+		int sy = raster.getMinY() + y - raster.getSampleModelTranslateY();
+		int offset = raster.getDataBuffer().getOffset();
+		if (sm instanceof SinglePixelPackedSampleModel) {
+			return offset + ((SinglePixelPackedSampleModel) sm).getOffset(sx,
+					sy);
+		}
+		// the band offsets of the predefined types start at 0
+		ComponentSampleModel csm = (ComponentSampleModel) sm;
+		return offset + sy * csm.getScanlineStride()
+				+ sx * csm.getPixelStride();
+	}
+
+	/**
+	 * Returns the converter for reading rows of an image in the specified
+	 * format using {@link #readRow}. It only depends on the type of the
+	 * image, so it is determined once per image.
+	 */
+	static RowConverter getReader(BufferedImage img, PixelFormat dstFormat)
+	{
+		PixelFormat format = PixelFormat.forImageType(img.getType());
+		return get(format != null ? format : PixelFormat.INT_ARGB, dstFormat);
+	}
+
+	/**
+	 * Returns the converter for writing rows of the specified format to an
+	 * image using {@link #writeRow}. It only depends on the type of the
+	 * image, so it is determined once per image.
+	 */
+	static RowConverter getWriter(BufferedImage img, PixelFormat srcFormat)
+	{
+		PixelFormat format = PixelFormat.forImageType(img.getType());
+		return get(srcFormat, format != null ? format : PixelFormat.INT_ARGB);
+	}
+
+	/**
+	 * Retrieves a row of an image.
+	 *
+	 * @param converter
+	 *            the converter returned by {@link #getReader} for the image
+	 * @param argb
+	 *            a buffer for the width of the image, used for images without
+	 *            {@link PixelFormat}
+	 */
+	static void readRow(BufferedImage img, int y, RowConverter converter,
+			Object dst, int dstOff, int[] argb)
+	{
+		int width = img.getWidth();
+		if (PixelFormat.forImageType(img.getType()) != null) {
+			converter.convert(getData(img), getRowOffset(img, y), dst, dstOff,
+					width);
+			return;
+		}
+		img.getRGB(0, y, width, 1, argb, 0, width);
+		converter.convert(argb, 0, dst, dstOff, width);
+	}
+
+	/**
+	 * Stores a row of pixels in an image.
+	 *
+	 * @param converter
+	 *            the converter returned by {@link #getWriter} for the image
+	 * @param argb
+	 *            a buffer for the width of the image, used for images without
+	 *            {@link PixelFormat}
+	 */
+	static void writeRow(BufferedImage img, int y, RowConverter converter,
+			Object src, int srcOff, int[] argb)
+	{
+		int width = img.getWidth();
+		if (PixelFormat.forImageType(img.getType()) != null) {
+			converter.convert(src, srcOff, getData(img), getRowOffset(img, y),
+					width);
+			return;
+		}
+		converter.convert(src, srcOff, argb, 0, width);
+		img.setRGB(0, y, width, 1, argb, 0, width);
+	}
+
+	static int premultiply(int argb)
+	{
+		int a = argb >>> 24;
+		if (a == 0xFF) {
+			return argb;
+		}
+		if (a == 0) {
+			return 0;
+		}
+		int r = (((argb >> 16) & 0xFF) * a + 127) / 255;
+		int g = (((argb >> 8) & 0xFF) * a + 127) / 255;
+		int b = ((argb & 0xFF) * a + 127) / 255;
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	static int unpremultiply(int argb)
+	{
+		int a = argb >>> 24;
+		if (a == 0xFF || a == 0) {
+			return argb;
+		}
+		int half = a / 2;
+		int r = Math.min(255, (((argb >> 16) & 0xFF) * 255 + half) / a);
+		int g = Math.min(255, (((argb >> 8) & 0xFF) * 255 + half) / a);
+		int b = Math.min(255, ((argb & 0xFF) * 255 + half) / a);
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	static {
+		for (PixelFormat format : PixelFormat.values()) {
+			register(format, format, copy(format));
+		}
+
+		// identical layouts
+		RowConverter copy24 = copy(PixelFormat.BGR24);
+		register(PixelFormat.BGR24, PixelFormat.BYTE_BGR, copy24);
+		register(PixelFormat.BYTE_BGR, PixelFormat.BGR24, copy24);
+		RowConverter copy8 = copy(PixelFormat.INDEXED8);
+		register(PixelFormat.INDEXED8, PixelFormat.BYTE_GRAY, copy8);
+		register(PixelFormat.BYTE_GRAY, PixelFormat.INDEXED8, copy8);
+
+		// color indices
+		for (PixelFormat src : new PixelFormat[] { PixelFormat.INDEXED1,
+				PixelFormat.INDEXED4 }) {
+			final int bitCount = src.getBitsPerPixel();
+			RowConverter unpack = new RowConverter() {
+
+				@Override
+				public void convert(Object src, int srcOff, Object dst,
+						int dstOff, int width)
+				{
+					byte[] s = (byte[]) src;
+					byte[] d = (byte[]) dst;
+					for (int x = 0; x < width; x++) {
+						d[dstOff + x] = (byte) getIndex(s, srcOff, x,
+								bitCount);
+					}
+				}
+
+			};
+			RowConverter pack = new RowConverter() {
+
+				@Override
+				public void convert(Object src, int srcOff, Object dst,
+						int dstOff, int width)
+				{
+					Scanlines.packIndices((byte[]) src, srcOff, (byte[]) dst,
+							dstOff, width, bitCount);
+				}
+
+			};
+			register(src, PixelFormat.INDEXED8, unpack);
+			register(src, PixelFormat.BYTE_GRAY, unpack);
+			register(PixelFormat.INDEXED8, src, pack);
+		}
+
+		// int pixels
+		RowConverter opaque = new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				int[] s = (int[]) src;
+				int[] d = (int[]) dst;
+				for (int x = 0; x < width; x++) {
+					d[dstOff + x] = 0xFF000000 | s[srcOff + x];
+				}
+			}
+
+		};
+		register(PixelFormat.INT_RGB, PixelFormat.INT_ARGB, opaque);
+		register(PixelFormat.INT_RGB, PixelFormat.INT_ARGB_PRE, opaque);
+		register(PixelFormat.INT_ARGB, PixelFormat.INT_RGB,
+				copy(PixelFormat.INT_ARGB));
+		register(PixelFormat.INT_ARGB, PixelFormat.INT_ARGB_PRE,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						int[] s = (int[]) src;
+						int[] d = (int[]) dst;
+						for (int x = 0; x < width; x++) {
+							d[dstOff + x] = premultiply(s[srcOff + x]);
+						}
+					}
+
+				});
+		register(PixelFormat.INT_ARGB_PRE, PixelFormat.INT_ARGB,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						int[] s = (int[]) src;
+						int[] d = (int[]) dst;
+						for (int x = 0; x < width; x++) {
+							d[dstOff + x] = unpremultiply(s[srcOff + x]);
+						}
+					}
+
+				});
+
+		// 24-bit pixels, BGR triplets for scan lines and TYPE_3BYTE_BGR
+		RowConverter unpackBgr = new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				Scanlines.unpack((byte[]) src, srcOff, PixelLayout.BGR,
+						(int[]) dst, dstOff, width);
+			}
+
+		};
+		RowConverter packBgr = new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				Scanlines.packRgb24((int[]) src, srcOff, (byte[]) dst, dstOff,
+						width);
+			}
+
+		};
+		for (PixelFormat format : new PixelFormat[] { PixelFormat.BGR24,
+				PixelFormat.BYTE_BGR }) {
+			register(format, PixelFormat.INT_RGB, unpackBgr);
+			register(format, PixelFormat.INT_ARGB, unpackBgr);
+			register(format, PixelFormat.INT_ARGB_PRE, unpackBgr);
+			register(PixelFormat.INT_RGB, format, packBgr);
+			register(PixelFormat.INT_ARGB, format, packBgr);
+		}
+
+		// 32-bit scan lines, little-endian ARGB ints
+		RowConverter unpackBgra = new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				byte[] s = (byte[]) src;
+				int[] d = (int[]) dst;
+				for (int x = 0; x < width; x++) {
+					d[dstOff + x] = ByteArrays.getIntLE(s, srcOff + x * 4);
+				}
+			}
+
+		};
+		register(PixelFormat.BGRA32, PixelFormat.INT_ARGB, unpackBgra);
+		register(PixelFormat.BGRA32, PixelFormat.INT_RGB, unpackBgra);
+		register(PixelFormat.BGRA32, PixelFormat.INT_ARGB_PRE,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						byte[] s = (byte[]) src;
+						int[] d = (int[]) dst;
+						for (int x = 0; x < width; x++) {
+							d[dstOff + x] = premultiply(
+									ByteArrays.getIntLE(s, srcOff + x * 4));
+						}
+					}
+
+				});
+		RowConverter packBgra = new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				Scanlines.packArgb32((int[]) src, srcOff, (byte[]) dst, dstOff,
+						width);
+			}
+
+		};
+		register(PixelFormat.INT_ARGB, PixelFormat.BGRA32, packBgra);
+		register(PixelFormat.INT_RGB, PixelFormat.BGRA32, new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				int[] s = (int[]) src;
+				byte[] d = (byte[]) dst;
+				for (int x = 0; x < width; x++) {
+					ByteArrays.putIntLE(d, dstOff + x * 4,
+							0xFF000000 | s[srcOff + x]);
+				}
+			}
+
+		});
+		register(PixelFormat.INT_ARGB_PRE, PixelFormat.BGRA32,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						int[] s = (int[]) src;
+						byte[] d = (byte[]) dst;
+						for (int x = 0; x < width; x++) {
+							ByteArrays.putIntLE(d, dstOff + x * 4,
+									unpremultiply(s[srcOff + x]));
+						}
+					}
+
+				});
+
+		// TYPE_4BYTE_ABGR
+		register(PixelFormat.BYTE_ABGR, PixelFormat.INT_ARGB,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						Scanlines.unpack((byte[]) src, srcOff,
+								PixelLayout.ABGR, (int[]) dst, dstOff, width);
+					}
+
+				});
+		register(PixelFormat.INT_ARGB, PixelFormat.BYTE_ABGR,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						int[] s = (int[]) src;
+						byte[] d = (byte[]) dst;
+						for (int x = 0, i = dstOff; x < width; x++, i += 4) {
+							int argb = s[srcOff + x];
+							d[i] = (byte) (argb >>> 24);
+							d[i + 1] = (byte) argb;
+							d[i + 2] = (byte) (argb >> 8);
+							d[i + 3] = (byte) (argb >> 16);
+						}
+					}
+
+				});
+		register(PixelFormat.BGRA32, PixelFormat.BYTE_ABGR,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						byte[] s = (byte[]) src;
+						byte[] d = (byte[]) dst;
+						for (int x = 0; x < width * 4; x += 4) {
+							int i = srcOff + x;
+							int j = dstOff + x;
+							d[j] = s[i + 3];
+							d[j + 1] = s[i];
+							d[j + 2] = s[i + 1];
+							d[j + 3] = s[i + 2];
+						}
+					}
+
+				});
+		register(PixelFormat.BYTE_ABGR, PixelFormat.BGRA32,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						byte[] s = (byte[]) src;
+						byte[] d = (byte[]) dst;
+						for (int x = 0; x < width * 4; x += 4) {
+							int i = srcOff + x;
+							int j = dstOff + x;
+							d[j] = s[i + 1];
+							d[j + 1] = s[i + 2];
+							d[j + 2] = s[i + 3];
+							d[j + 3] = s[i];
+						}
+					}
+
+				});
+
+		// 16-bit scan lines
+		register(PixelFormat.RGB555, PixelFormat.INT_ARGB,
+				unpack16(0x7C00, 0x03E0, 0x001F, SCALE5, SCALE5, SCALE5));
+		register(PixelFormat.RGB565, PixelFormat.INT_ARGB,
+				unpack16(0xF800, 0x07E0, 0x001F, SCALE5, SCALE6, SCALE5));
+		register(PixelFormat.INT_ARGB, PixelFormat.RGB555,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						Scanlines.packRgb555((int[]) src, srcOff,
+								(byte[]) dst, dstOff, width);
+					}
+
+				});
+		register(PixelFormat.INT_ARGB, PixelFormat.RGB565,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						Scanlines.packRgb565((int[]) src, srcOff,
+								(byte[]) dst, dstOff, width);
+					}
+
+				});
+
+		// gray levels
+		register(PixelFormat.BYTE_GRAY, PixelFormat.INT_ARGB,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						byte[] s = (byte[]) src;
+						int[] d = (int[]) dst;
+						for (int x = 0; x < width; x++) {
+							d[dstOff + x] = 0xFF000000
+									| (s[srcOff + x] & 0xFF) * 0x010101;
+						}
+					}
+
+				});
+		register(PixelFormat.INT_ARGB, PixelFormat.BYTE_GRAY,
+				new RowConverter() {
+
+					@Override
+					public void convert(Object src, int srcOff, Object dst,
+							int dstOff, int width)
+					{
+						// luma with the weights of ITU-R BT.601
+						int[] s = (int[]) src;
+						byte[] d = (byte[]) dst;
+						for (int x = 0; x < width; x++) {
+							int rgb = s[srcOff + x];
+							int r = (rgb >> 16) & 0xFF;
+							int g = (rgb >> 8) & 0xFF;
+							int b = rgb & 0xFF;
+							d[dstOff + x] = (byte) ((r * 77 + g * 150 + b * 29
+									+ 128) >> 8);
+						}
+					}
+
+				});
+	}
+
+	/**
+	 * Creates a converter that copies rows of a format without changes.
+	 */
+	private static RowConverter copy(final PixelFormat format)
+	{
+		return new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				System.arraycopy(src, srcOff, dst, dstOff,
+						format.getRowLength(width));
+			}
+
+		};
+	}
+
+	/**
+	 * Creates a converter of 16-bit scan lines with the specified channel
+	 * masks to {@link PixelFormat#INT_ARGB} colors, scaling the channels to 8
+	 * bits like {@link BMPDecoder#read16}. The registered converters are used
+	 * for the 5-5-5 and 5-6-5 layouts.
+	 */
+	static RowConverter forMasks16(int redMask, int greenMask, int blueMask)
+	{
+		if (redMask == 0x7C00 && greenMask == 0x03E0 && blueMask == 0x001F) {
+			return lookup(PixelFormat.RGB555, PixelFormat.INT_ARGB);
+		}
+		if (redMask == 0xF800 && greenMask == 0x07E0 && blueMask == 0x001F) {
+			return lookup(PixelFormat.RGB565, PixelFormat.INT_ARGB);
+		}
+		return unpack16(redMask, greenMask, blueMask,
+				BMPDecoder.createScaleTable(redMask & 0xFFFF),
+				BMPDecoder.createScaleTable(greenMask & 0xFFFF),
+				BMPDecoder.createScaleTable(blueMask & 0xFFFF));
+	}
+
+	private static RowConverter unpack16(final int redMask,
+			final int greenMask, final int blueMask, final int[] red,
+			final int[] green, final int[] blue)
+	{
+		final int redShift = Integer.numberOfTrailingZeros(redMask);
+		final int greenShift = Integer.numberOfTrailingZeros(greenMask);
+		final int blueShift = Integer.numberOfTrailingZeros(blueMask);
+		return new RowConverter() {
+
+			@Override
+			public void convert(Object src, int srcOff, Object dst,
+					int dstOff, int width)
+			{
+				byte[] s = (byte[]) src;
+				int[] d = (int[]) dst;
+				for (int x = 0; x < width; x++) {
+					int v = ByteArrays.getShortLE(s, srcOff + x * 2) & 0xFFFF;
+					d[dstOff + x] = 0xFF000000
+							| red[(v & redMask) >>> redShift] << 16
+							| green[(v & greenMask) >>> greenShift] << 8
+							| blue[(v & blueMask) >>> blueShift];
+				}
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,214 @@
+package de.topobyte.bmp4j.codec;
+
+/**
+ * Compresses rows of color indices using BMP run-length encoding
+ * (<tt>BI_RLE8</tt> or <tt>BI_RLE4</tt>).
+ *
+ * Rows are added from the bottom of the image to the top, as they are stored
+ * in the file. Pixels with color index <tt>0</tt> at the end of a row are
+ * omitted using an end-of-line code, and rows that consist of index
+ * <tt>0</tt> only are skipped using delta codes or the end-of-bitmap code.
+ * Decoders fill skipped pixels with color index <tt>0</tt>.
+ */
+final class RunLengthEncoder
+{
+
+	private static final int MAX_RUN = 255;
+
+	/**
+	 * Minimum length of a run that interrupts a sequence of pixels written in
+	 * absolute mode.
+	 */
+	private static final int MIN_RUN = 3;
+
+	private final int bitCount;
+	private byte[] data;
+	private int size = 0;
+	private int skippedLines = 0;
+
+	/**
+	 * @param bitCount
+	 *            the color depth, which must be <tt>4</tt> or <tt>8</tt>
+	 * @param width
+	 *            the width of the image in pixels
+	 */
+	RunLengthEncoder(int bitCount, int width)
+	{
+		this(bitCount, width, new byte[0]);
+	}
+
+	/**
+	 * @param bitCount
+	 *            the color depth, which must be <tt>4</tt> or <tt>8</tt>
+	 * @param width
+	 *            the width of the image in pixels
+	 * @param buffer
+	 *            a buffer to encode into, which is replaced with a larger one
+	 *            if necessary
+	 */
+	RunLengthEncoder(int bitCount, int width, byte[] buffer)
+	{
+		if (bitCount != 4 && bitCount != 8) {
+			throw new IllegalArgumentException(
+					"Run-length encoding requires 4 or 8 bits, not "
+							+ bitCount);
+		}
+		this.bitCount = bitCount;
+		int capacity = Math.max(64, width * 2);
+		data = buffer.length >= capacity ? buffer : new byte[capacity];
+	}
+
+	/**
+	 * @return the compression type written by this encoder
+	 */
+	int getCompression()
+	{
+		return bitCount == 8 ? BMPConstants.BI_RLE8 : BMPConstants.BI_RLE4;
+	}
+
+	/**
+	 * @return the encoded data, of which the first {@link #size()} bytes are
+	 *         valid
+	 */
+	byte[] getData()
+	{
+		return data;
+	}
+
+	/**
+	 * @return the number of bytes encoded so far
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Encodes the next row of the image.
+	 *
+	 * @param indices
+	 *            the color indices, one per byte
+	 * @param offset
+	 *            the position of the first pixel of the row in
+	 *            <tt>indices</tt>
+	 * @param width
+	 *            the number of pixels in the row
+	 */
+	void addLine(byte[] indices, int offset, int width)
+	{
+		// pixels after the last non-zero pixel are covered by end-of-line
+		int end = offset + width;
+		while (end > offset && indices[end - 1] == 0) {
+			end--;
+		}
+		if (end == offset) {
+			skippedLines++;
+			return;
+		}
+
+		// worst case: two bytes per pixel, plus deltas and end-of-line
+		ensureCapacity(width * 2 + (skippedLines / MAX_RUN + 1) * 4 + 2);
+
+		while (skippedLines > 0) {
+			int dy = Math.min(skippedLines, MAX_RUN);
+			put(0, 2);
+			put(0, dy);
+			skippedLines -= dy;
+		}
+
+		int i = offset;
+		while (i < end) {
+			int run = runLength(indices, i, end);
+			if (run >= 2) {
+				putRun(run, indices[i]);
+				i += run;
+				continue;
+			}
+
+			// collect pixels up to the next run worth encoding
+			int j = i + 1;
+			while (j < end && j - i < MAX_RUN
+					&& runLength(indices, j, end) < MIN_RUN) {
+				j++;
+			}
+			int n = j - i;
+			if (n < MIN_RUN) {
+				// absolute mode requires at least 3 pixels
+				for (int k = i; k < j; k++) {
+					putRun(1, indices[k]);
+				}
+			} else {
+				putAbsolute(indices, i, n);
+			}
+			i = j;
+		}
+
+		// end of line
+		put(0, 0);
+	}
+
+	/**
+	 * Terminates the bitmap, any remaining rows are skipped.
+	 */
+	void finish()
+	{
+		ensureCapacity(2);
+		put(0, 1);
+		skippedLines = 0;
+	}
+
+	private static int runLength(byte[] indices, int start, int end)
+	{
+		byte v = indices[start];
+		int limit = Math.min(end, start + MAX_RUN);
+		int i = start + 1;
+		while (i < limit && indices[i] == v) {
+			i++;
+		}
+		return i - start;
+	}
+
+	private void putRun(int length, byte index)
+	{
+		if (bitCount == 8) {
+			put(length, index);
+		} else {
+			put(length, ((index & 0xF) << 4) | (index & 0xF));
+		}
+	}
+
+	private void putAbsolute(byte[] indices, int start, int n)
+	{
+		put(0, n);
+		int bytes;
+		if (bitCount == 8) {
+			System.arraycopy(indices, start, data, size, n);
+			bytes = n;
+		} else {
+			bytes = (n + 1) / 2;
+			Scanlines.packIndices(indices, start, data, size, n, 4);
+		}
+		size += bytes;
+		// absolute runs are padded to a 16-bit boundary
+		if (bytes % 2 != 0) {
+			data[size++] = 0;
+		}
+	}
+
+	private void put(int a, int b)
+	{
+		data[size++] = (byte) a;
+		data[size++] = (byte) b;
+	}
+
+	private void ensureCapacity(int additional)
+	{
+		if (size + additional > data.length) {
+			byte[] grown = new byte[Math.max(data.length * 2,
+					size + additional)];
+			System.arraycopy(data, 0, grown, 0, size);
+			data = grown;
+		}
+	}
+
+}
@@ -0,0 +1,509 @@
+package de.topobyte.bmp4j.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
+
+import de.topobyte.bmp4j.io.ByteArrays;
+
+/**
+ * Packs rows of pixels into the byte layout of BMP scan lines.
+ *
+ * All methods operate on whole rows. Packing methods write only the data
+ * part of a scan line, padding bytes are left untouched.
+ */
+final class Scanlines
+{
+
+	private Scanlines()
+	{
+	}
+
+	/**
+	 * Retrieves a row of pixels in the default RGB color model, like
+	 * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+	 * Pixels of images with packed <tt>int</tt> RGB or ARGB pixels are copied
+	 * directly from their data buffer.
+	 *
+	 * @param img
+	 *            the source image
+	 * @param y
+	 *            the row to retrieve
+	 * @param dst
+	 *            the array that receives the pixels, starting at index
+	 *            <tt>0</tt>
+	 */
+	static void getRGB(BufferedImage img, int y, int[] dst)
+	{
+		int width = img.getWidth();
+		int offset = getIntRowOffset(img, y);
+		if (offset < 0) {
+			img.getRGB(0, y, width, 1, dst, 0, width);
+			return;
+		}
+
+		int[] data = ((DataBufferInt) img.getRaster().getDataBuffer())
+				.getData();
+		System.arraycopy(data, offset, dst, 0, width);
+		if (img.getType() == BufferedImage.TYPE_INT_RGB) {
+			for (int i = 0; i < width; i++) {
+				dst[i] |= 0xFF000000;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether an image is of type <tt>TYPE_BYTE_GRAY</tt> or
+	 * <tt>TYPE_USHORT_GRAY</tt>, which are handled by {@link #getGray}.
+	 */
+	static boolean isGray(BufferedImage img)
+	{
+		int type = img.getType();
+		return type == BufferedImage.TYPE_BYTE_GRAY
+				|| type == BufferedImage.TYPE_USHORT_GRAY;
+	}
+
+	/**
+	 * Retrieves a row of gray samples of a <tt>TYPE_BYTE_GRAY</tt> or
+	 * <tt>TYPE_USHORT_GRAY</tt> image as 8-bit values. Byte samples are copied
+	 * in bulk from the data buffer, 16-bit samples are reduced to their high
+	 * order byte.
+	 *
+	 * @param img
+	 *            the source image
+	 * @param y
+	 *            the row to retrieve
+	 * @param dst
+	 *            the array that receives the samples, starting at index
+	 *            <tt>0</tt>
+	 */
+	static void getGray(BufferedImage img, int y, byte[] dst)
+	{
+		int width = img.getWidth();
+		Raster raster = img.getRaster();
+		ComponentSampleModel sm = (ComponentSampleModel) raster
+				.getSampleModel();
+		int sx = raster.getMinX() - raster.getSampleModelTranslateX();
+		int sy = raster.getMinY() + y - raster.getSampleModelTranslateY();
+		DataBuffer db = raster.getDataBuffer();
+		int offset = db.getOffset() + sm.getOffset(sx, sy);
+		int stride = sm.getPixelStride();
+
+		if (db instanceof DataBufferByte) {
+			byte[] data = ((DataBufferByte) db).getData();
+			if (stride == 1) {
+				System.arraycopy(data, offset, dst, 0, width);
+			} else {
+				for (int i = 0; i < width; i++) {
+					dst[i] = data[offset + i * stride];
+				}
+			}
+		} else {
+			short[] data = ((DataBufferUShort) db).getData();
+			for (int i = 0; i < width; i++) {
+				dst[i] = (byte) (data[offset + i * stride] >> 8);
+			}
+		}
+	}
+
+	/**
+	 * Determines the position of a row within the data bank of an image with
+	 * packed <tt>int</tt> RGB or ARGB pixels, so that the pixels can be
+	 * processed in place. Note that the alpha bits of <tt>TYPE_INT_RGB</tt>
+	 * pixels are undefined.
+	 *
+	 * @param img
+	 *            the source image
+	 * @param y
+	 *            the row
+	 * @return the offset of the row within the data bank, or <tt>-1</tt> if
+	 *         the image is not of type <tt>TYPE_INT_RGB</tt> or
+	 *         <tt>TYPE_INT_ARGB</tt>
+	 */
+	static int getIntRowOffset(BufferedImage img, int y)
+	{
+		int type = img.getType();
+		if (type != BufferedImage.TYPE_INT_RGB
+				&& type != BufferedImage.TYPE_INT_ARGB) {
+			return -1;
+		}
+
+		Raster raster = img.getRaster();
+		DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+		SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster
+				.getSampleModel();
+		int sx = raster.getMinX() - raster.getSampleModelTranslateX();
+		int sy = raster.getMinY() + y - raster.getSampleModelTranslateY();
+		return db.getOffset() + sm.getOffset(sx, sy);
+	}
+
+	/**
+	 * Packs a row of color indices with the specified color depth.
+	 *
+	 * @param src
+	 *            the color indices
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the scan line buffer
+	 * @param dstOff
+	 *            the offset of the scan line within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to pack
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt> or
+	 *            <tt>8</tt>
+	 */
+	static void packIndices(int[] src, int srcOff, byte[] dst, int dstOff,
+			int width, int bitCount)
+	{
+		switch (bitCount) {
+		case 1: {
+			int d = dstOff;
+			int bits = 0;
+			int n = 0;
+			for (int i = srcOff, end = srcOff + width; i < end; i++) {
+				bits = (bits << 1) | (src[i] & 0x1);
+				if (++n == 8) {
+					dst[d++] = (byte) bits;
+					bits = 0;
+					n = 0;
+				}
+			}
+			if (n > 0) {
+				dst[d] = (byte) (bits << (8 - n));
+			}
+			break;
+		}
+		case 4: {
+			int d = dstOff;
+			int i = srcOff;
+			int end = srcOff + width;
+			for (; i + 1 < end; i += 2) {
+				dst[d++] = (byte) (((src[i] & 0xF) << 4) | (src[i + 1] & 0xF));
+			}
+			if (i < end) {
+				dst[d] = (byte) ((src[i] & 0xF) << 4);
+			}
+			break;
+		}
+		case 8: {
+			for (int i = 0; i < width; i++) {
+				dst[dstOff + i] = (byte) src[srcOff + i];
+			}
+			break;
+		}
+		default:
+			throw new IllegalArgumentException(
+					"Not an indexed bit count: " + bitCount);
+		}
+	}
+
+	/**
+	 * Packs a row of color indices with the specified color depth.
+	 *
+	 * @param src
+	 *            the color indices
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the scan line buffer
+	 * @param dstOff
+	 *            the offset of the scan line within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to pack
+	 * @param bitCount
+	 *            the color depth, which must be <tt>1</tt>, <tt>4</tt> or
+	 *            <tt>8</tt>
+	 */
+	static void packIndices(byte[] src, int srcOff, byte[] dst, int dstOff,
+			int width, int bitCount)
+	{
+		switch (bitCount) {
+		case 1: {
+			int d = dstOff;
+			int bits = 0;
+			int n = 0;
+			for (int i = srcOff, end = srcOff + width; i < end; i++) {
+				bits = (bits << 1) | (src[i] & 0x1);
+				if (++n == 8) {
+					dst[d++] = (byte) bits;
+					bits = 0;
+					n = 0;
+				}
+			}
+			if (n > 0) {
+				dst[d] = (byte) (bits << (8 - n));
+			}
+			break;
+		}
+		case 4: {
+			int d = dstOff;
+			int i = srcOff;
+			int end = srcOff + width;
+			for (; i + 1 < end; i += 2) {
+				dst[d++] = (byte) (((src[i] & 0xF) << 4) | (src[i + 1] & 0xF));
+			}
+			if (i < end) {
+				dst[d] = (byte) ((src[i] & 0xF) << 4);
+			}
+			break;
+		}
+		case 8: {
+			System.arraycopy(src, srcOff, dst, dstOff, width);
+			break;
+		}
+		default:
+			throw new IllegalArgumentException(
+					"Not an indexed bit count: " + bitCount);
+		}
+	}
+
+	/**
+	 * Packs a row of (A)RGB pixels as 24-bit BGR triplets, the alpha channel is
+	 * dropped.
+	 *
+	 * @param src
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the scan line buffer
+	 * @param dstOff
+	 *            the offset of the scan line within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to pack
+	 */
+	static void packRgb24(int[] src, int srcOff, byte[] dst, int dstOff,
+			int width)
+	{
+		int n = Shuffles.INSTANCE.packRgb24(src, srcOff, dst, dstOff, width);
+		if (n == width) {
+			return;
+		}
+		// store 4 bytes per pixel, the fourth is overwritten by the next
+		// pixel, except for the last pixel which might end the array
+		int d = dstOff + n * 3;
+		int last = srcOff + width - 1;
+		for (int i = srcOff + n; i < last; i++, d += 3) {
+			ByteArrays.putIntLE(dst, d, src[i]);
+		}
+		int rgb = src[last];
+		dst[d] = (byte) rgb;
+		dst[d + 1] = (byte) (rgb >> 8);
+		dst[d + 2] = (byte) (rgb >> 16);
+	}
+
+	/**
+	 * Packs a row of ARGB pixels as 32-bit BGRA quadruplets.
+	 *
+	 * @param src
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the scan line buffer
+	 * @param dstOff
+	 *            the offset of the scan line within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to pack
+	 */
+	static void packArgb32(int[] src, int srcOff, byte[] dst, int dstOff,
+			int width)
+	{
+		int d = dstOff;
+		for (int i = srcOff, end = srcOff + width; i < end; i++, d += 4) {
+			ByteArrays.putIntLE(dst, d, src[i]);
+		}
+	}
+
+	/**
+	 * Packs a row of (A)RGB pixels as 16-bit values with 5 bits for red, 6
+	 * bits for green and 5 bits for blue, the alpha channel is dropped.
+	 *
+	 * @param src
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the scan line buffer
+	 * @param dstOff
+	 *            the offset of the scan line within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to pack
+	 */
+	static void packRgb565(int[] src, int srcOff, byte[] dst, int dstOff,
+			int width)
+	{
+		int d = dstOff;
+		for (int i = srcOff, end = srcOff + width; i < end; i++) {
+			int rgb = src[i];
+			int v = ((rgb >> 8) & 0xF800) | ((rgb >> 5) & 0x07E0)
+					| ((rgb >> 3) & 0x001F);
+			ByteArrays.putShortLE(dst, d, (short) v);
+			d += 2;
+		}
+	}
+
+	/**
+	 * Packs a row of (A)RGB pixels as 16-bit values with 5 bits per color
+	 * channel, the alpha channel is dropped.
+	 *
+	 * @param src
+	 *            the pixels, as packed <tt>int</tt> values in the default RGB
+	 *            color model
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param dst
+	 *            the scan line buffer
+	 * @param dstOff
+	 *            the offset of the scan line within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to pack
+	 */
+	static void packRgb555(int[] src, int srcOff, byte[] dst, int dstOff,
+			int width)
+	{
+		int d = dstOff;
+		for (int i = srcOff, end = srcOff + width; i < end; i++) {
+			int rgb = src[i];
+			int v = ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x03E0)
+					| ((rgb >> 3) & 0x001F);
+			ByteArrays.putShortLE(dst, d, (short) v);
+			d += 2;
+		}
+	}
+
+	/**
+	 * Unpacks a row of pixels stored in the specified byte layout into packed
+	 * <tt>int</tt> values in the default RGB color model. Pixels of layouts
+	 * without alpha channel are opaque.
+	 *
+	 * @param src
+	 *            the pixel data, which is accessed using absolute positions
+	 * @param srcOff
+	 *            the position of the first pixel within <tt>src</tt>
+	 * @param layout
+	 *            the layout of the pixel data
+	 * @param dst
+	 *            the array that receives the pixels
+	 * @param dstOff
+	 *            the index of the first pixel within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to unpack
+	 */
+	static void unpack(ByteBuffer src, int srcOff, PixelLayout layout,
+			int[] dst, int dstOff, int width)
+	{
+		if (src.hasArray()) {
+			unpack(src.array(), src.arrayOffset() + srcOff, layout, dst,
+					dstOff, width);
+			return;
+		}
+		unpackScalar(src, srcOff, layout, dst, dstOff, width);
+	}
+
+	/**
+	 * Unpacks a row of pixels stored in the specified byte layout into packed
+	 * <tt>int</tt> values in the default RGB color model. Pixels of layouts
+	 * without alpha channel are opaque.
+	 *
+	 * @param src
+	 *            the pixel data
+	 * @param srcOff
+	 *            the offset of the first pixel within <tt>src</tt>
+	 * @param layout
+	 *            the layout of the pixel data
+	 * @param dst
+	 *            the array that receives the pixels
+	 * @param dstOff
+	 *            the index of the first pixel within <tt>dst</tt>
+	 * @param width
+	 *            the number of pixels to unpack
+	 */
+	static void unpack(byte[] src, int srcOff, PixelLayout layout,
+			int[] dst, int dstOff, int width)
+	{
+		int n = Shuffles.INSTANCE.unpack(src, srcOff, layout, dst, dstOff,
+				width);
+		if (n == width) {
+			return;
+		}
+		int s = srcOff + n * layout.getBytesPerPixel();
+		if (layout == PixelLayout.BGR) {
+			// load 4 bytes per pixel and drop the first byte of the next
+			// pixel, the last pixel might end the array
+			int last = dstOff + width - 1;
+			for (int i = dstOff + n; i < last; i++, s += 3) {
+				dst[i] = 0xFF000000 | ByteArrays.getIntLE(src, s);
+			}
+			dst[last] = 0xFF000000 | (src[s + 2] & 0xFF) << 16
+					| (src[s + 1] & 0xFF) << 8 | (src[s] & 0xFF);
+			return;
+		}
+		unpackScalar(ByteBuffer.wrap(src), s, layout, dst, dstOff + n,
+				width - n);
+	}
+
+	private static void unpackScalar(ByteBuffer src, int srcOff,
+			PixelLayout layout, int[] dst, int dstOff, int width)
+	{
+		int s = srcOff;
+		switch (layout) {
+		case BGR:
+			for (int i = 0; i < width; i++, s += 3) {
+				dst[dstOff + i] = 0xFF000000 | (src.get(s + 2) & 0xFF) << 16
+						| (src.get(s + 1) & 0xFF) << 8 | (src.get(s) & 0xFF);
+			}
+			break;
+		case RGB:
+			for (int i = 0; i < width; i++, s += 3) {
+				dst[dstOff + i] = 0xFF000000 | (src.get(s) & 0xFF) << 16
+						| (src.get(s + 1) & 0xFF) << 8
+						| (src.get(s + 2) & 0xFF);
+			}
+			break;
+		case BGRA:
+			for (int i = 0; i < width; i++, s += 4) {
+				dst[dstOff + i] = (src.get(s + 3) & 0xFF) << 24
+						| (src.get(s + 2) & 0xFF) << 16
+						| (src.get(s + 1) & 0xFF) << 8 | (src.get(s) & 0xFF);
+			}
+			break;
+		case RGBA:
+			for (int i = 0; i < width; i++, s += 4) {
+				dst[dstOff + i] = (src.get(s + 3) & 0xFF) << 24
+						| (src.get(s) & 0xFF) << 16
+						| (src.get(s + 1) & 0xFF) << 8
+						| (src.get(s + 2) & 0xFF);
+			}
+			break;
+		case ABGR:
+			for (int i = 0; i < width; i++, s += 4) {
+				dst[dstOff + i] = (src.get(s) & 0xFF) << 24
+						| (src.get(s + 3) & 0xFF) << 16
+						| (src.get(s + 2) & 0xFF) << 8
+						| (src.get(s + 1) & 0xFF);
+			}
+			break;
+		case ARGB:
+			for (int i = 0; i < width; i++, s += 4) {
+				dst[dstOff + i] = (src.get(s) & 0xFF) << 24
+						| (src.get(s + 1) & 0xFF) << 16
+						| (src.get(s + 2) & 0xFF) << 8
+						| (src.get(s + 3) & 0xFF);
+			}
+			break;
+		}
+	}
+
+}
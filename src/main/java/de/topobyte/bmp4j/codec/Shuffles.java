@@ -0,0 +1,56 @@
+package de.topobyte.bmp4j.codec;
+
+/**
+ * Vectorized implementations of the channel shuffles performed by
+ * {@link Scanlines}.
+ *
+ * On Java 17 and later, the JAR contains a subclass based on the incubating
+ * Vector API in <tt>META-INF/versions/17</tt>. It is used if the module
+ * <tt>jdk.incubator.vector</tt> has been enabled, e.g. using
+ * <tt>--add-modules jdk.incubator.vector</tt>. Otherwise this class is used,
+ * which converts no pixels at all and leaves all work to the scalar code.
+ *
+ * Each method converts a prefix of the row and returns the number of pixels
+ * it converted, the caller converts the remaining pixels.
+ */
+class Shuffles
+{
+
+	static final Shuffles INSTANCE = load();
+
+	private static Shuffles load()
+	{
+		try {
+			Class<?> c = Class
+					.forName("de.topobyte.bmp4j.codec.VectorShuffles");
+			return (Shuffles) c.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// not available on this platform or module not enabled
+			return new Shuffles();
+		}
+	}
+
+	/**
+	 * Unpacks a prefix of a row of pixels stored in the specified byte layout
+	 * into packed <tt>int</tt> values in the default RGB color model.
+	 *
+	 * @return the number of pixels unpacked
+	 */
+	int unpack(byte[] src, int srcOff, PixelLayout layout, int[] dst,
+			int dstOff, int width)
+	{
+		return 0;
+	}
+
+	/**
+	 * Packs a prefix of a row of (A)RGB pixels as 24-bit BGR triplets, without
+	 * writing beyond the data of the scan line.
+	 *
+	 * @return the number of pixels packed
+	 */
+	int packRgb24(int[] src, int srcOff, byte[] dst, int dstOff, int width)
+	{
+		return 0;
+	}
+
+}
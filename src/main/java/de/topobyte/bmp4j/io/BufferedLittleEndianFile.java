@@ -0,0 +1,533 @@
+package de.topobyte.bmp4j.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Provides random access to little-endian data in a file through a
+ * <tt>FileChannel</tt>. Reads and writes at the file pointer go through a
+ * page buffer, so that small values cost no system calls unless the file
+ * pointer leaves the current page. Dirty bytes are written back when the
+ * page is replaced, on {@link #flush()} and on {@link #close()}.
+ *
+ * In addition, the positional methods
+ * {@link #readFully(ByteBuffer, long)} and {@link #write(ByteBuffer, long)}
+ * transfer data directly between the channel and a caller's buffer. They
+ * bypass the page buffer and do not move the file pointer, so they may be
+ * called concurrently from multiple threads. Call {@link #flush()} before
+ * switching between buffered and positional access to the same bytes.
+ *
+ * All positions are absolute offsets in the file.
+ */
+public class BufferedLittleEndianFile
+		implements LittleEndianInput, LittleEndianOutput, Closeable
+{
+
+	public static final int DEFAULT_PAGE_SIZE = 8192;
+
+	private final FileChannel channel;
+	private final ByteBuffer page;
+
+	// file position of the first byte of the page
+	private long pageStart = 0;
+	// number of bytes of the page that hold file contents
+	private int valid = 0;
+	// range of bytes of the page that have to be written back
+	private int dirtyStart = Integer.MAX_VALUE;
+	private int dirtyEnd = 0;
+
+	/**
+	 * Opens a file like <tt>RandomAccessFile</tt> does.
+	 *
+	 * @param mode
+	 *            <tt>"r"</tt> to open the file for reading only,
+	 *            <tt>"rw"</tt> to open it for reading and writing, creating
+	 *            it if it does not exist
+	 */
+	public BufferedLittleEndianFile(File file, String mode) throws IOException
+	{
+		this(file.toPath(), mode);
+	}
+
+	/**
+	 * Opens a file like <tt>RandomAccessFile</tt> does.
+	 *
+	 * @param mode
+	 *            <tt>"r"</tt> to open the file for reading only,
+	 *            <tt>"rw"</tt> to open it for reading and writing, creating
+	 *            it if it does not exist
+	 */
+	public BufferedLittleEndianFile(Path file, String mode) throws IOException
+	{
+		this(open(file, mode), DEFAULT_PAGE_SIZE);
+	}
+
+	public BufferedLittleEndianFile(FileChannel channel)
+	{
+		this(channel, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * The file pointer starts at position <tt>0</tt>, independent of the
+	 * channel's position.
+	 */
+	public BufferedLittleEndianFile(FileChannel channel, int pageSize)
+	{
+		if (pageSize < 8) {
+			throw new IllegalArgumentException(
+					"Page too small: " + pageSize);
+		}
+		this.channel = channel;
+		page = ByteBuffer.allocate(pageSize).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static FileChannel open(Path file, String mode) throws IOException
+	{
+		if (mode.equals("r")) {
+			return FileChannel.open(file, StandardOpenOption.READ);
+		} else if (mode.equals("rw")) {
+			return FileChannel.open(file, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		}
+		throw new IllegalArgumentException("Invalid mode: " + mode);
+	}
+
+	public FileChannel getChannel()
+	{
+		return channel;
+	}
+
+	@Override
+	public long getCount()
+	{
+		return getPosition();
+	}
+
+	/**
+	 * @return the file pointer
+	 */
+	@Override
+	public long getPosition()
+	{
+		return pageStart + page.position();
+	}
+
+	/**
+	 * Moves the file pointer. It may be moved beyond the end of the file, the
+	 * file is extended once data is written there.
+	 */
+	public void seek(long position) throws IOException
+	{
+		if (position < 0) {
+			throw new IllegalArgumentException(
+					"Negative position: " + position);
+		}
+		if (position >= pageStart && position <= pageStart + valid) {
+			page.position((int) (position - pageStart));
+			return;
+		}
+		moveTo(position);
+	}
+
+	/**
+	 * @return the length of the file, including buffered data that has not
+	 *         been written yet
+	 */
+	public long length() throws IOException
+	{
+		return Math.max(channel.size(), pageStart + valid);
+	}
+
+	/**
+	 * Truncates or extends the file. Extended parts of the file read back as
+	 * zeros. If the file pointer is beyond the new end of the file, it is
+	 * moved to the end.
+	 */
+	public void setLength(long length) throws IOException
+	{
+		long position = getPosition();
+		flush();
+		if (length < channel.size()) {
+			channel.truncate(length);
+		} else if (length > channel.size()) {
+			writeFully(ByteBuffer.wrap(new byte[1]), length - 1);
+		}
+		seek(Math.min(position, length));
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!fill(1)) {
+			return -1;
+		}
+		return page.get() & 0xFF;
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException
+	{
+		require(1);
+		return page.get() & 0xFF;
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException
+	{
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException
+	{
+		int n = Math.min(len, valid - page.position());
+		page.get(b, off, n);
+		off += n;
+		len -= n;
+		if (len == 0) {
+			return;
+		}
+
+		if (len < page.capacity()) {
+			require(len);
+			page.get(b, off, len);
+			return;
+		}
+
+		// large reads bypass the page
+		long position = getPosition();
+		flushPage();
+		readFully(ByteBuffer.wrap(b, off, len), position);
+		moveTo(position + len);
+	}
+
+	@Override
+	public short readShortLE() throws IOException
+	{
+		require(2);
+		return page.getShort();
+	}
+
+	@Override
+	public int readIntLE() throws IOException
+	{
+		require(4);
+		return page.getInt();
+	}
+
+	@Override
+	public long readUnsignedIntLE() throws IOException
+	{
+		return readIntLE() & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public void readShorts(short[] dst, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, (valid - page.position()) / 2);
+			if (n == 0) {
+				require(2);
+				continue;
+			}
+			page.asShortBuffer().get(dst, off, n);
+			page.position(page.position() + n * 2);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void readInts(int[] dst, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, (valid - page.position()) / 4);
+			if (n == 0) {
+				require(4);
+				continue;
+			}
+			page.asIntBuffer().get(dst, off, n);
+			page.position(page.position() + n * 4);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public int skip(int count, boolean strict) throws IOException
+	{
+		long position = getPosition();
+		int n = (int) Math.max(0,
+				Math.min(count, length() - position));
+		seek(position + n);
+		if (n < count && strict) {
+			throw new EOFException(
+					"Failed to skip " + count + " bytes in input");
+		}
+		return n;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		int start = reserve(1);
+		page.put((byte) b);
+		written(start);
+	}
+
+	@Override
+	public void writeByte(int v) throws IOException
+	{
+		write(v);
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException
+	{
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		write(ByteBuffer.wrap(b, off, len));
+	}
+
+	@Override
+	public void write(ByteBuffer src) throws IOException
+	{
+		int len = src.remaining();
+		if (len < page.capacity()) {
+			int start = reserve(len);
+			page.put(src);
+			written(start);
+			return;
+		}
+
+		// large writes bypass the page
+		long position = getPosition();
+		flushPage();
+		writeFully(src, position);
+		moveTo(position + len);
+	}
+
+	@Override
+	public void writeShortLE(short value) throws IOException
+	{
+		int start = reserve(2);
+		page.putShort(value);
+		written(start);
+	}
+
+	@Override
+	public void writeIntLE(int value) throws IOException
+	{
+		int start = reserve(4);
+		page.putInt(value);
+		written(start);
+	}
+
+	@Override
+	public void writeUnsignedIntLE(long value) throws IOException
+	{
+		writeIntLE((int) value);
+	}
+
+	@Override
+	public void writeShorts(short[] src, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, page.remaining() / 2);
+			if (n == 0) {
+				reserve(2);
+				continue;
+			}
+			int start = page.position();
+			page.asShortBuffer().put(src, off, n);
+			page.position(start + n * 2);
+			written(start);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void writeInts(int[] src, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, page.remaining() / 4);
+			if (n == 0) {
+				reserve(4);
+				continue;
+			}
+			int start = page.position();
+			page.asIntBuffer().put(src, off, n);
+			page.position(start + n * 4);
+			written(start);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Reads bytes at the specified position until the buffer is full,
+	 * bypassing the page buffer. The file pointer is not changed.
+	 *
+	 * @throws EOFException
+	 *             if the file ends before the buffer is full
+	 */
+	public void readFully(ByteBuffer dst, long position) throws IOException
+	{
+		while (dst.hasRemaining()) {
+			int r = channel.read(dst, position);
+			if (r < 0) {
+				throw new EOFException();
+			}
+			position += r;
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer at the specified position,
+	 * bypassing the page buffer. The file pointer is not changed.
+	 */
+	public void write(ByteBuffer src, long position) throws IOException
+	{
+		writeFully(src, position);
+	}
+
+	/**
+	 * Writes dirty bytes to the channel and discards the page buffer, so
+	 * that subsequent reads see changes made through the positional methods.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		flushPage();
+		moveTo(getPosition());
+	}
+
+	/**
+	 * Flushes the page buffer and forces all changes to the storage device.
+	 *
+	 * @see FileChannel#force(boolean)
+	 */
+	public void force(boolean metaData) throws IOException
+	{
+		flush();
+		channel.force(metaData);
+	}
+
+	/**
+	 * Flushes the page buffer and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try {
+			flushPage();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void require(int n) throws IOException
+	{
+		if (!fill(n)) {
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * Makes sure that at least <tt>n</tt> bytes at the file pointer are
+	 * available in the page, by loading the page at the file pointer if
+	 * necessary.
+	 *
+	 * @return <tt>false</tt> if the file ends before that many bytes are
+	 *         available
+	 */
+	private boolean fill(int n) throws IOException
+	{
+		if (valid - page.position() >= n) {
+			return true;
+		}
+		long position = getPosition();
+		flushPage();
+		pageStart = position;
+		page.clear();
+		while (page.position() < n) {
+			int r = channel.read(page, pageStart + page.position());
+			if (r < 0) {
+				break;
+			}
+		}
+		valid = page.position();
+		page.position(0);
+		return valid >= n;
+	}
+
+	/**
+	 * Makes sure that <tt>n</tt> bytes can be written to the page at the file
+	 * pointer, by starting a new page at the file pointer if necessary.
+	 *
+	 * @return the offset within the page at which the bytes will be written
+	 */
+	private int reserve(int n) throws IOException
+	{
+		if (page.remaining() < n) {
+			moveTo(getPosition());
+		}
+		return page.position();
+	}
+
+	/**
+	 * Marks the bytes from <tt>start</tt> up to the current offset within the
+	 * page as dirty.
+	 */
+	private void written(int start)
+	{
+		int end = page.position();
+		dirtyStart = Math.min(dirtyStart, start);
+		dirtyEnd = Math.max(dirtyEnd, end);
+		valid = Math.max(valid, end);
+	}
+
+	/**
+	 * Writes back dirty bytes and starts an empty page at the specified
+	 * position.
+	 */
+	private void moveTo(long position) throws IOException
+	{
+		flushPage();
+		pageStart = position;
+		valid = 0;
+		page.clear();
+	}
+
+	private void flushPage() throws IOException
+	{
+		if (dirtyEnd <= dirtyStart) {
+			return;
+		}
+		ByteBuffer dirty = page.duplicate();
+		dirty.limit(dirtyEnd).position(dirtyStart);
+		writeFully(dirty, pageStart + dirtyStart);
+		dirtyStart = Integer.MAX_VALUE;
+		dirtyEnd = 0;
+	}
+
+	private void writeFully(ByteBuffer src, long position) throws IOException
+	{
+		while (src.hasRemaining()) {
+			position += channel.write(src, position);
+		}
+	}
+
+}
@@ -0,0 +1,303 @@
+package de.topobyte.bmp4j.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Reads little-endian data from an <tt>InputStream</tt> or a channel through
+ * a <tt>ByteBuffer</tt>, which is refilled in large chunks. Single values are
+ * decoded from the buffer directly and arrays are transferred in bulk.
+ *
+ * Since data is read ahead, the underlying source may be positioned beyond
+ * the last value that has been read. If the source is shared with other
+ * readers, {@link #setReadLimit(long)} keeps the read-ahead within a known
+ * range of the input.
+ */
+public class BufferedLittleEndianInput implements LittleEndianInput, Closeable
+{
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final InputStream in;
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private long position = 0;
+	private long readLimit = Long.MAX_VALUE;
+
+	public BufferedLittleEndianInput(InputStream in)
+	{
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedLittleEndianInput(InputStream in, int bufferSize)
+	{
+		this(in, null, bufferSize);
+	}
+
+	public BufferedLittleEndianInput(ReadableByteChannel channel)
+	{
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedLittleEndianInput(ReadableByteChannel channel,
+			int bufferSize)
+	{
+		this(null, channel, bufferSize);
+	}
+
+	private BufferedLittleEndianInput(InputStream in,
+			ReadableByteChannel channel, int bufferSize)
+	{
+		if (bufferSize < 8) {
+			throw new IllegalArgumentException(
+					"Buffer too small: " + bufferSize);
+		}
+		this.in = in;
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(bufferSize)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		// start with an empty buffer in read mode
+		buffer.flip();
+	}
+
+	/**
+	 * Limits reading ahead to the specified position of the input, counted
+	 * like {@link #getPosition()}. Bytes beyond the limit are only read from
+	 * the underlying source when they are requested, and then no more than
+	 * requested. With a limit of <tt>0</tt>, nothing is read ahead at all.
+	 * The default is <tt>Long.MAX_VALUE</tt>, i.e. no limit.
+	 *
+	 * @param readLimit
+	 *            the position up to which data may be read ahead
+	 */
+	public void setReadLimit(long readLimit)
+	{
+		this.readLimit = readLimit;
+	}
+
+	@Override
+	public long getCount()
+	{
+		return position;
+	}
+
+	@Override
+	public long getPosition()
+	{
+		return position;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!fill(1)) {
+			return -1;
+		}
+		position++;
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException
+	{
+		require(1);
+		position++;
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException
+	{
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException
+	{
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		position += n;
+		off += n;
+		len -= n;
+		if (len == 0) {
+			return;
+		}
+
+		if (len < buffer.capacity()) {
+			require(len);
+			buffer.get(b, off, len);
+			position += len;
+			return;
+		}
+
+		// large reads bypass the buffer, which is empty at this point
+		while (len > 0) {
+			int r;
+			if (channel != null) {
+				r = channel.read(ByteBuffer.wrap(b, off, len));
+			} else {
+				r = in.read(b, off, len);
+			}
+			if (r < 0) {
+				throw new EOFException();
+			}
+			position += r;
+			off += r;
+			len -= r;
+		}
+	}
+
+	@Override
+	public short readShortLE() throws IOException
+	{
+		require(2);
+		position += 2;
+		return buffer.getShort();
+	}
+
+	@Override
+	public int readIntLE() throws IOException
+	{
+		require(4);
+		position += 4;
+		return buffer.getInt();
+	}
+
+	@Override
+	public long readUnsignedIntLE() throws IOException
+	{
+		return readIntLE() & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public void readShorts(short[] dst, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, buffer.remaining() / 2);
+			if (n == 0) {
+				require(2);
+				continue;
+			}
+			buffer.asShortBuffer().get(dst, off, n);
+			buffer.position(buffer.position() + n * 2);
+			position += n * 2;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void readInts(int[] dst, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, buffer.remaining() / 4);
+			if (n == 0) {
+				require(4);
+				continue;
+			}
+			buffer.asIntBuffer().get(dst, off, n);
+			buffer.position(buffer.position() + n * 4);
+			position += n * 4;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public int skip(int count, boolean strict) throws IOException
+	{
+		int n = Math.min(count, buffer.remaining());
+		buffer.position(buffer.position() + n);
+		int skipped = n;
+
+		int rest = count - n;
+		if (rest > 0) {
+			if (channel instanceof SeekableByteChannel) {
+				SeekableByteChannel sbc = (SeekableByteChannel) channel;
+				long current = sbc.position();
+				long target = Math.min(current + rest, sbc.size());
+				sbc.position(target);
+				skipped += (int) (target - current);
+			} else if (channel != null) {
+				while (skipped < count && fill(1)) {
+					int m = Math.min(count - skipped, buffer.remaining());
+					buffer.position(buffer.position() + m);
+					skipped += m;
+				}
+			} else {
+				skipped += IOUtils.skip(in, rest, false);
+			}
+		}
+
+		position += skipped;
+		if (skipped < count && strict) {
+			throw new EOFException(
+					"Failed to skip " + count + " bytes in input");
+		}
+		return skipped;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (channel != null) {
+			channel.close();
+		} else {
+			in.close();
+		}
+	}
+
+	private void require(int n) throws IOException
+	{
+		if (!fill(n)) {
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * Makes sure that at least <tt>n</tt> bytes are available in the buffer.
+	 * Beyond that, the buffer is filled up to the read limit.
+	 *
+	 * @return <tt>false</tt> if the input ends before that many bytes are
+	 *         available
+	 */
+	private boolean fill(int n) throws IOException
+	{
+		if (buffer.remaining() >= n) {
+			return true;
+		}
+		buffer.compact();
+		try {
+			// position is the number of bytes before the buffered ones
+			long ahead = Math.min(buffer.capacity(), readLimit - position);
+			int max = (int) Math.max(n, ahead);
+			while (buffer.position() < n) {
+				int r;
+				if (channel != null) {
+					buffer.limit(max);
+					r = channel.read(buffer);
+				} else {
+					r = in.read(buffer.array(),
+							buffer.arrayOffset() + buffer.position(),
+							max - buffer.position());
+					if (r > 0) {
+						buffer.position(buffer.position() + r);
+					}
+				}
+				if (r < 0) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			buffer.flip();
+		}
+	}
+
+}
@@ -0,0 +1,274 @@
+package de.topobyte.bmp4j.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes little-endian data to an <tt>OutputStream</tt> or a channel through
+ * a <tt>ByteBuffer</tt>, which is drained in large chunks. Single values are
+ * encoded into the buffer directly and arrays are transferred in bulk.
+ *
+ * Data is only guaranteed to reach the target after {@link #flush()} or
+ * {@link #close()}.
+ */
+public class BufferedLittleEndianOutput
+		implements LittleEndianOutput, Closeable
+{
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private long position = 0;
+
+	public BufferedLittleEndianOutput(OutputStream out)
+	{
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedLittleEndianOutput(OutputStream out, int bufferSize)
+	{
+		this(out, null, bufferSize);
+	}
+
+	public BufferedLittleEndianOutput(WritableByteChannel channel)
+	{
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedLittleEndianOutput(WritableByteChannel channel,
+			int bufferSize)
+	{
+		this(null, channel, bufferSize);
+	}
+
+	private BufferedLittleEndianOutput(OutputStream out,
+			WritableByteChannel channel, int bufferSize)
+	{
+		if (bufferSize < 8) {
+			throw new IllegalArgumentException(
+					"Buffer too small: " + bufferSize);
+		}
+		this.out = out;
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(bufferSize)
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @return the number of bytes written so far, including those that are
+	 *         still buffered
+	 */
+	public long getPosition()
+	{
+		return position;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		ensure(1);
+		buffer.put((byte) b);
+		position++;
+	}
+
+	@Override
+	public void writeByte(int v) throws IOException
+	{
+		write(v);
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException
+	{
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (len <= buffer.remaining()) {
+			buffer.put(b, off, len);
+			position += len;
+			return;
+		}
+		if (len < buffer.capacity()) {
+			drain();
+			buffer.put(b, off, len);
+			position += len;
+			return;
+		}
+
+		// large writes bypass the buffer
+		drain();
+		if (channel != null) {
+			writeFully(ByteBuffer.wrap(b, off, len));
+		} else {
+			out.write(b, off, len);
+		}
+		position += len;
+	}
+
+	@Override
+	public void write(ByteBuffer src) throws IOException
+	{
+		int len = src.remaining();
+		if (len <= buffer.remaining()) {
+			buffer.put(src);
+			position += len;
+			return;
+		}
+		if (len < buffer.capacity()) {
+			drain();
+			buffer.put(src);
+			position += len;
+			return;
+		}
+
+		drain();
+		if (channel != null) {
+			writeFully(src);
+		} else if (src.hasArray()) {
+			out.write(src.array(), src.arrayOffset() + src.position(), len);
+			src.position(src.limit());
+		} else {
+			// copy direct buffers through our own buffer
+			ByteBuffer chunk = src.duplicate();
+			while (src.hasRemaining()) {
+				int n = Math.min(src.remaining(), buffer.capacity());
+				chunk.limit(src.position() + n);
+				buffer.put(chunk);
+				src.position(chunk.position());
+				drain();
+			}
+		}
+		position += len;
+	}
+
+	@Override
+	public void writeShortLE(short value) throws IOException
+	{
+		ensure(2);
+		buffer.putShort(value);
+		position += 2;
+	}
+
+	@Override
+	public void writeIntLE(int value) throws IOException
+	{
+		ensure(4);
+		buffer.putInt(value);
+		position += 4;
+	}
+
+	@Override
+	public void writeUnsignedIntLE(long value) throws IOException
+	{
+		writeIntLE((int) value);
+	}
+
+	@Override
+	public void writeShorts(short[] src, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, buffer.remaining() / 2);
+			if (n == 0) {
+				drain();
+				continue;
+			}
+			buffer.asShortBuffer().put(src, off, n);
+			buffer.position(buffer.position() + n * 2);
+			position += n * 2;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void writeInts(int[] src, int off, int len) throws IOException
+	{
+		while (len > 0) {
+			int n = Math.min(len, buffer.remaining() / 4);
+			if (n == 0) {
+				drain();
+				continue;
+			}
+			buffer.asIntBuffer().put(src, off, n);
+			buffer.position(buffer.position() + n * 4);
+			position += n * 4;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes all buffered data to the target and flushes the target if it is
+	 * an <tt>OutputStream</tt>.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		drain();
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Flushes this output and closes the target.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try {
+			flush();
+		} finally {
+			if (channel != null) {
+				channel.close();
+			} else {
+				out.close();
+			}
+		}
+	}
+
+	private void ensure(int n) throws IOException
+	{
+		if (buffer.remaining() < n) {
+			drain();
+		}
+	}
+
+	/**
+	 * Writes the contents of the buffer to the target and empties the buffer.
+	 */
+	private void drain() throws IOException
+	{
+		if (buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		try {
+			if (channel != null) {
+				writeFully(buffer);
+			} else {
+				out.write(buffer.array(), buffer.arrayOffset(),
+						buffer.remaining());
+			}
+		} finally {
+			buffer.clear();
+		}
+	}
+
+	private void writeFully(ByteBuffer src) throws IOException
+	{
+		while (src.hasRemaining()) {
+			channel.write(src);
+		}
+	}
+
+}
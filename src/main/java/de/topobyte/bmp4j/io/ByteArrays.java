@@ -0,0 +1,59 @@
+package de.topobyte.bmp4j.io;
+
+/**
+ * Accesses little-endian values in byte arrays and compares ranges of byte
+ * arrays.
+ *
+ * This is the Java 8 implementation. The JAR contains another version for
+ * Java 9 and later in <tt>META-INF/versions/9</tt>, which uses
+ * <tt>VarHandle</tt> views and the range methods of <tt>Arrays</tt>.
+ */
+public final class ByteArrays
+{
+
+	private ByteArrays()
+	{
+	}
+
+	public static short getShortLE(byte[] b, int off)
+	{
+		return (short) ((b[off] & 0xFF) | (b[off + 1] << 8));
+	}
+
+	public static void putShortLE(byte[] b, int off, short value)
+	{
+		b[off] = (byte) value;
+		b[off + 1] = (byte) (value >> 8);
+	}
+
+	public static int getIntLE(byte[] b, int off)
+	{
+		return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8
+				| (b[off + 2] & 0xFF) << 16 | b[off + 3] << 24;
+	}
+
+	public static void putIntLE(byte[] b, int off, int value)
+	{
+		b[off] = (byte) value;
+		b[off + 1] = (byte) (value >> 8);
+		b[off + 2] = (byte) (value >> 16);
+		b[off + 3] = (byte) (value >> 24);
+	}
+
+	/**
+	 * @return <tt>true</tt> if the <tt>len</tt> bytes of <tt>a</tt> starting
+	 *         at <tt>aOff</tt> equal those of <tt>b</tt> starting at
+	 *         <tt>bOff</tt>
+	 */
+	public static boolean equals(byte[] a, int aOff, byte[] b, int bOff,
+			int len)
+	{
+		for (int i = 0; i < len; i++) {
+			if (a[aOff + i] != b[bOff + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,43 @@
+package de.topobyte.bmp4j.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An <tt>OutputStream</tt> that writes to a heap or direct
+ * <tt>ByteBuffer</tt>, starting at the buffer's current position.
+ */
+public class ByteBufferOutputStream extends OutputStream
+{
+
+	private final ByteBuffer buffer;
+
+	public ByteBufferOutputStream(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		if (!buffer.hasRemaining()) {
+			throw new IOException("Buffer full");
+		}
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (buffer.remaining() < len) {
+			throw new IOException("Buffer full");
+		}
+		buffer.put(b, off, len);
+	}
+}
@@ -14,7 +14,7 @@ public class CountingDataInputStream extends DataInputStream
 	}
 
 	@Override
-	public int getCount()
+	public long getCount()
 	{
 		return ((CountingInputStream) in).getCount();
 	}
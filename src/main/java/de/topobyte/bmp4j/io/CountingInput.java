@@ -3,6 +3,6 @@ package de.topobyte.bmp4j.io;
 public interface CountingInput
 {
 
-	int getCount();
+	long getCount();
 
 }
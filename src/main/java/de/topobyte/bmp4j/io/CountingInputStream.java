@@ -7,14 +7,14 @@ import java.io.InputStream;
 public class CountingInputStream extends FilterInputStream
 {
 
-	private int count;
+	private long count;
 
 	public CountingInputStream(InputStream src)
 	{
 		super(src);
 	}
 
-	public int getCount()
+	public long getCount()
 	{
 		return count;
 	}
@@ -38,4 +38,14 @@ public class CountingInputStream extends FilterInputStream
 		}
 		return r;
 	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long r = super.skip(n);
+		if (r > 0) {
+			count += r;
+		}
+		return r;
+	}
 }
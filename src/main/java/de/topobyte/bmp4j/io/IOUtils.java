@@ -12,11 +12,16 @@ public class IOUtils
 	{
 		int skipped = 0;
 		while (skipped < count) {
-			int b = in.read();
-			if (b == -1) {
-				break;
+			long n = in.skip(count - skipped);
+			if (n <= 0) {
+				// skip() may make no progress before the end of the stream,
+				// read a single byte to find out
+				if (in.read() == -1) {
+					break;
+				}
+				n = 1;
 			}
-			skipped++;
+			skipped += n;
 		}
 		if (skipped < count && strict) {
 			throw new EOFException(
@@ -0,0 +1,53 @@
+package de.topobyte.bmp4j.io;
+
+import java.io.IOException;
+
+/**
+ * A source of little-endian data, as read by the BMP decoder.
+ */
+public interface LittleEndianInput extends CountingInput
+{
+
+	/**
+	 * @return the next byte, or <tt>-1</tt> at the end of the input
+	 */
+	int read() throws IOException;
+
+	int readUnsignedByte() throws IOException;
+
+	void readFully(byte[] b) throws IOException;
+
+	void readFully(byte[] b, int off, int len) throws IOException;
+
+	short readShortLE() throws IOException;
+
+	int readIntLE() throws IOException;
+
+	long readUnsignedIntLE() throws IOException;
+
+	/**
+	 * Reads <tt>len</tt> little-endian <tt>short</tt> values into the array.
+	 */
+	void readShorts(short[] dst, int off, int len) throws IOException;
+
+	/**
+	 * Reads <tt>len</tt> little-endian <tt>int</tt> values into the array.
+	 */
+	void readInts(int[] dst, int off, int len) throws IOException;
+
+	/**
+	 * Skips <tt>count</tt> bytes.
+	 *
+	 * @param strict
+	 *            whether to throw an <tt>EOFException</tt> if the input ends
+	 *            before all bytes have been skipped
+	 * @return the number of bytes skipped
+	 */
+	int skip(int count, boolean strict) throws IOException;
+
+	/**
+	 * @return the number of bytes read or skipped so far
+	 */
+	long getPosition();
+
+}
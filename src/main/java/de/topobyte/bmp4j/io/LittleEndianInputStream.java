@@ -10,7 +10,6 @@
 package de.topobyte.bmp4j.io;
 
 import java.io.DataInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 
 /**
@@ -20,9 +19,14 @@ import java.io.IOException;
  * @author Ian McDonagh
  */
 public class LittleEndianInputStream extends DataInputStream
-		implements CountingDataInput
+		implements CountingDataInput, LittleEndianInput
 {
 
+	private static final int CHUNK_SIZE = 4096;
+
+	// scratch space for converting values, grown for bulk reads
+	private byte[] buffer = new byte[8];
+
 	/**
 	 * Creates a new instance of <tt>LittleEndianInputStream</tt>, which will
 	 * read from the specified source.
@@ -36,11 +40,18 @@ public class LittleEndianInputStream extends DataInputStream
 	}
 
 	@Override
-	public int getCount()
+	public long getCount()
 	{
 		return ((CountingInputStream) in).getCount();
 	}
 
+	@Override
+	public long getPosition()
+	{
+		return getCount();
+	}
+
+	@Override
 	public int skip(int count, boolean strict) throws IOException
 	{
 		return IOUtils.skip(this, count, strict);
@@ -53,18 +64,11 @@ public class LittleEndianInputStream extends DataInputStream
 	 *             if an error occurs
 	 * @return <tt>short</tt> value with reversed byte order
 	 */
+	@Override
 	public short readShortLE() throws IOException
 	{
-		int b1 = read();
-		int b2 = read();
-
-		if (b1 < 0 || b2 < 0) {
-			throw new EOFException();
-		}
-
-		short ret = (short) ((b2 << 8) + (b1 << 0));
-
-		return ret;
+		readFully(buffer, 0, 2);
+		return ByteArrays.getShortLE(buffer, 0);
 	}
 
 	/**
@@ -74,20 +78,49 @@ public class LittleEndianInputStream extends DataInputStream
 	 *             if an error occurs
 	 * @return <tt>int</tt> value with reversed byte order
 	 */
+	@Override
 	public int readIntLE() throws IOException
 	{
-		int b1 = read();
-		int b2 = read();
-		int b3 = read();
-		int b4 = read();
+		readFully(buffer, 0, 4);
+		return ByteArrays.getIntLE(buffer, 0);
+	}
 
-		if (b1 < -1 || b2 < -1 || b3 < -1 || b4 < -1) {
-			throw new EOFException();
+	@Override
+	public void readShorts(short[] dst, int off, int len) throws IOException
+	{
+		byte[] chunk = getChunk();
+		while (len > 0) {
+			int n = Math.min(len, CHUNK_SIZE / 2);
+			readFully(chunk, 0, n * 2);
+			for (int i = 0; i < n; i++) {
+				dst[off + i] = ByteArrays.getShortLE(chunk, i * 2);
+			}
+			off += n;
+			len -= n;
 		}
+	}
 
-		int ret = (b4 << 24) + (b3 << 16) + (b2 << 8) + (b1 << 0);
+	@Override
+	public void readInts(int[] dst, int off, int len) throws IOException
+	{
+		byte[] chunk = getChunk();
+		while (len > 0) {
+			int n = Math.min(len, CHUNK_SIZE / 4);
+			readFully(chunk, 0, n * 4);
+			for (int i = 0; i < n; i++) {
+				dst[off + i] = ByteArrays.getIntLE(chunk, i * 4);
+			}
+			off += n;
+			len -= n;
+		}
+	}
 
-		return ret;
+	private byte[] getChunk()
+	{
+		if (buffer.length < CHUNK_SIZE) {
+			buffer = new byte[CHUNK_SIZE];
+		}
+		return buffer;
 	}
 
 	/**
@@ -151,15 +184,9 @@ public class LittleEndianInputStream extends DataInputStream
 		return ret;
 	}
 
+	@Override
 	public long readUnsignedIntLE() throws IOException
 	{
-		long i1 = readUnsignedByte();
-		long i2 = readUnsignedByte();
-		long i3 = readUnsignedByte();
-		long i4 = readUnsignedByte();
-
-		long ret = (i4 << 24) | (i3 << 16) | (i2 << 8) | i1;
-
-		return ret;
+		return readIntLE() & 0xFFFFFFFFL;
 	}
 }
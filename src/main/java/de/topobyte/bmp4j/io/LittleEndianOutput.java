@@ -0,0 +1,45 @@
+package de.topobyte.bmp4j.io;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A target for little-endian data, as written by the BMP encoder.
+ */
+public interface LittleEndianOutput extends Flushable
+{
+
+	void write(int b) throws IOException;
+
+	void writeByte(int v) throws IOException;
+
+	void write(byte[] b) throws IOException;
+
+	void write(byte[] b, int off, int len) throws IOException;
+
+	/**
+	 * Writes the remaining bytes of the buffer. The buffer's position is
+	 * advanced to its limit.
+	 */
+	void write(ByteBuffer src) throws IOException;
+
+	void writeShortLE(short value) throws IOException;
+
+	void writeIntLE(int value) throws IOException;
+
+	void writeUnsignedIntLE(long value) throws IOException;
+
+	/**
+	 * Writes <tt>len</tt> values from the array as little-endian
+	 * <tt>short</tt> values.
+	 */
+	void writeShorts(short[] src, int off, int len) throws IOException;
+
+	/**
+	 * Writes <tt>len</tt> values from the array as little-endian <tt>int</tt>
+	 * values.
+	 */
+	void writeInts(int[] src, int off, int len) throws IOException;
+
+}
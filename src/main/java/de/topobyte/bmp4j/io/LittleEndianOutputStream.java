@@ -3,6 +3,7 @@ package de.topobyte.bmp4j.io;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Writes little-endian data to a target <tt>OutputStream</tt> by reversing byte
@@ -11,8 +12,14 @@ import java.io.OutputStream;
  * @author Ian McDonagh
  */
 public class LittleEndianOutputStream extends DataOutputStream
+		implements LittleEndianOutput
 {
 
+	private static final int CHUNK_SIZE = 4096;
+
+	// scratch space for converting values, grown for bulk writes
+	private byte[] buffer = new byte[8];
+
 	/**
 	 * Creates a new instance of <tt>LittleEndianOutputStream</tt>, which will
 	 * write to the specified target.
@@ -33,10 +40,11 @@ public class LittleEndianOutputStream extends DataOutputStream
 	 * @throws IOException
 	 *             if an error occurs
 	 */
+	@Override
 	public void writeShortLE(short value) throws IOException
 	{
-		value = EndianUtils.swapShort(value);
-		super.writeShort(value);
+		ByteArrays.putShortLE(buffer, 0, value);
+		write(buffer, 0, 2);
 	}
 
 	/**
@@ -47,10 +55,11 @@ public class LittleEndianOutputStream extends DataOutputStream
 	 * @throws IOException
 	 *             if an error occurs
 	 */
+	@Override
 	public void writeIntLE(int value) throws IOException
 	{
-		value = EndianUtils.swapInteger(value);
-		super.writeInt(value);
+		ByteArrays.putIntLE(buffer, 0, value);
+		write(buffer, 0, 4);
 	}
 
 	/**
@@ -108,16 +117,62 @@ public class LittleEndianOutputStream extends DataOutputStream
 		write(i4);
 	}
 
+	@Override
 	public void writeUnsignedIntLE(long value) throws IOException
 	{
-		int i1 = (int) (value >> 24);
-		int i2 = (int) ((value >> 16) & 0xFF);
-		int i3 = (int) ((value >> 8) & 0xFF);
-		int i4 = (int) (value & 0xFF);
+		writeIntLE((int) value);
+	}
 
-		write(i4);
-		write(i3);
-		write(i2);
-		write(i1);
+	@Override
+	public void writeShorts(short[] src, int off, int len) throws IOException
+	{
+		byte[] chunk = getChunk();
+		while (len > 0) {
+			int n = Math.min(len, CHUNK_SIZE / 2);
+			for (int i = 0; i < n; i++) {
+				ByteArrays.putShortLE(chunk, i * 2, src[off + i]);
+			}
+			write(chunk, 0, n * 2);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void writeInts(int[] src, int off, int len) throws IOException
+	{
+		byte[] chunk = getChunk();
+		while (len > 0) {
+			int n = Math.min(len, CHUNK_SIZE / 4);
+			for (int i = 0; i < n; i++) {
+				ByteArrays.putIntLE(chunk, i * 4, src[off + i]);
+			}
+			write(chunk, 0, n * 4);
+			off += n;
+			len -= n;
+		}
 	}
+
+	private byte[] getChunk()
+	{
+		if (buffer.length < CHUNK_SIZE) {
+			buffer = new byte[CHUNK_SIZE];
+		}
+		return buffer;
+	}
+
+	@Override
+	public void write(ByteBuffer src) throws IOException
+	{
+		if (src.hasArray()) {
+			write(src.array(), src.arrayOffset() + src.position(),
+					src.remaining());
+			src.position(src.limit());
+			return;
+		}
+		byte[] b = new byte[src.remaining()];
+		src.get(b);
+		write(b);
+	}
+
 }
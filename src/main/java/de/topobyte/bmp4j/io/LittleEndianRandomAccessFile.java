@@ -9,10 +9,13 @@ import java.io.RandomAccessFile;
  * Provides endian conversions for input and output with a
  * <tt>RandomAccessFile</tt>.
  *
- * This class is currently not in use and has not been tested.
+ * This class is not in use anymore.
  *
  * @author Ian McDonagh
+ * @deprecated use {@link BufferedLittleEndianFile}, which buffers small
+ *             reads and writes
  */
+@Deprecated
 public class LittleEndianRandomAccessFile extends RandomAccessFile
 {
 
@@ -0,0 +1,118 @@
+package de.topobyte.bmp4j.codec;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Channel shuffles based on the Vector API, using the preferred vector size
+ * of the platform. A vector of <tt>n</tt> bytes holds <tt>n / 4</tt> pixels
+ * as packed <tt>int</tt> values, which are little-endian BGRA quadruplets.
+ *
+ * This class is loaded reflectively by {@link Shuffles} and fails to load if
+ * the module <tt>jdk.incubator.vector</tt> is not enabled.
+ */
+final class VectorShuffles extends Shuffles
+{
+
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	// pixels per vector
+	private static final int PIXELS = INTS.length();
+
+	private final Map<PixelLayout, VectorShuffle<Byte>> unpack = new EnumMap<>(
+			PixelLayout.class);
+	private final VectorShuffle<Byte> packRgb24;
+
+	VectorShuffles()
+	{
+		for (PixelLayout layout : PixelLayout.values()) {
+			unpack.put(layout, createUnpack(layout));
+		}
+
+		// BGRA quadruplets to BGR triplets, the last quarter of the vector is
+		// not used
+		int[] indices = new int[BYTES.length()];
+		for (int i = 0; i < PIXELS * 3; i++) {
+			indices[i] = i / 3 * 4 + i % 3;
+		}
+		packRgb24 = VectorShuffle.fromArray(BYTES, indices, 0);
+	}
+
+	private static VectorShuffle<Byte> createUnpack(PixelLayout layout)
+	{
+		// positions of blue, green, red and alpha within a pixel
+		int[] channels;
+		switch (layout) {
+		default:
+		case BGR:
+		case BGRA:
+			channels = new int[] { 0, 1, 2, 3 };
+			break;
+		case RGB:
+		case RGBA:
+			channels = new int[] { 2, 1, 0, 3 };
+			break;
+		case ABGR:
+			channels = new int[] { 1, 2, 3, 0 };
+			break;
+		case ARGB:
+			channels = new int[] { 3, 2, 1, 0 };
+			break;
+		}
+
+		int bpp = layout.getBytesPerPixel();
+		int[] indices = new int[BYTES.length()];
+		for (int p = 0; p < PIXELS; p++) {
+			for (int c = 0; c < 4; c++) {
+				// alpha is set separately for layouts without alpha
+				int channel = c < bpp ? channels[c] : 0;
+				indices[p * 4 + c] = p * bpp + channel;
+			}
+		}
+		return VectorShuffle.fromArray(BYTES, indices, 0);
+	}
+
+	@Override
+	int unpack(byte[] src, int srcOff, PixelLayout layout, int[] dst,
+			int dstOff, int width)
+	{
+		VectorShuffle<Byte> shuffle = unpack.get(layout);
+		int bpp = layout.getBytesPerPixel();
+		boolean opaque = !layout.hasAlpha();
+		int x = 0;
+		// each load reads a whole vector, which may extend beyond the row
+		for (int s = srcOff; x + PIXELS <= width
+				&& s + BYTES.length() <= src.length; x += PIXELS, s += PIXELS
+						* bpp) {
+			IntVector v = ByteVector.fromArray(BYTES, src, s)
+					.rearrange(shuffle).reinterpretAsInts();
+			if (opaque) {
+				v = v.or(0xFF000000);
+			}
+			v.intoArray(dst, dstOff + x);
+		}
+		return x;
+	}
+
+	@Override
+	int packRgb24(int[] src, int srcOff, byte[] dst, int dstOff, int width)
+	{
+		int end = dstOff + width * 3;
+		int x = 0;
+		// each store writes a whole vector, which must not extend beyond the
+		// data of the scan line
+		for (int d = dstOff; d + BYTES.length() <= end; x += PIXELS, d += PIXELS
+				* 3) {
+			IntVector.fromArray(INTS, src, srcOff + x).reinterpretAsBytes()
+					.rearrange(packRgb24).intoArray(dst, d);
+		}
+		return x;
+	}
+
+}
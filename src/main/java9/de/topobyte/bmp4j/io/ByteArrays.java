@@ -0,0 +1,60 @@
+package de.topobyte.bmp4j.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Accesses little-endian values in byte arrays and compares ranges of byte
+ * arrays.
+ *
+ * This is the implementation for Java 9 and later. Values are accessed
+ * through <tt>VarHandle</tt> views, which compile to single loads and stores,
+ * and ranges are compared by the vectorized <tt>Arrays</tt> methods.
+ */
+public final class ByteArrays
+{
+
+	private static final VarHandle SHORT = MethodHandles
+			.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private static final VarHandle INT = MethodHandles
+			.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private ByteArrays()
+	{
+	}
+
+	public static short getShortLE(byte[] b, int off)
+	{
+		return (short) SHORT.get(b, off);
+	}
+
+	public static void putShortLE(byte[] b, int off, short value)
+	{
+		SHORT.set(b, off, value);
+	}
+
+	public static int getIntLE(byte[] b, int off)
+	{
+		return (int) INT.get(b, off);
+	}
+
+	public static void putIntLE(byte[] b, int off, int value)
+	{
+		INT.set(b, off, value);
+	}
+
+	/**
+	 * @return <tt>true</tt> if the <tt>len</tt> bytes of <tt>a</tt> starting
+	 *         at <tt>aOff</tt> equal those of <tt>b</tt> starting at
+	 *         <tt>bOff</tt>
+	 */
+	public static boolean equals(byte[] a, int aOff, byte[] b, int bOff,
+			int len)
+	{
+		return Arrays.equals(a, aOff, aOff + len, b, bOff, bOff + len);
+	}
+
+}
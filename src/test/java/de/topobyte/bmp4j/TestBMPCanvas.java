@@ -0,0 +1,98 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPCanvas;
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestBMPCanvas
+{
+
+	private static final int TILE_SIZE = 8;
+
+	@Test
+	public void testRgb1() throws Exception
+	{
+		test("rgb1", "png", 32);
+	}
+
+	@Test
+	public void testRgb2_4bit() throws Exception
+	{
+		test("rgb2-4bit", "bmp", 4);
+	}
+
+	@Test
+	public void testColors() throws Exception
+	{
+		test("colors", "png", 32);
+	}
+
+	/**
+	 * Write tiles of an image concurrently into a canvas and compare the
+	 * result, read back with our decoder and with ImageIO, to the original
+	 * image.
+	 */
+	private void test(String filename, String format, int bitCount)
+			throws IOException, InterruptedException, ExecutionException
+	{
+		Path dirTestdata = SystemPaths.CWD.resolve("testdata");
+		Path input = dirTestdata.resolve(format)
+				.resolve(filename + "." + format);
+		BufferedImage image = format.equals("bmp") ? BMPDecoder.read(input)
+				: ImageIO.read(input.toFile());
+
+		Path dirOutput = dirTestdata.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path bmpFile = dirOutput.resolve(filename + "-canvas.bmp");
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		IndexColorModel palette = bitCount <= 8
+				? (IndexColorModel) image.getColorModel()
+				: null;
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (BMPCanvas canvas = BMPCanvas.create(bmpFile, width, height,
+				bitCount, palette)) {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int y = 0; y < height; y += TILE_SIZE) {
+				for (int x = 0; x < width; x += TILE_SIZE) {
+					BufferedImage tile = image.getSubimage(x, y,
+							Math.min(TILE_SIZE, width - x),
+							Math.min(TILE_SIZE, height - y));
+					int tx = x;
+					int ty = y;
+					futures.add(executor.submit(() -> {
+						canvas.writeTile(tx, ty, tile);
+						return null;
+					}));
+				}
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		TestUtils.compare(image, BMPDecoder.read(bmpFile));
+		TestUtils.compare(image, ImageIO.read(bmpFile.toFile()));
+	}
+
+}
@@ -0,0 +1,126 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPDecoderOptions;
+import de.topobyte.bmp4j.codec.BMPEditor;
+import de.topobyte.bmp4j.codec.BMPWriter;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestBMPEditor
+{
+
+	@Test
+	public void testRgb1() throws IOException
+	{
+		test("rgb1");
+	}
+
+	@Test
+	public void testRgb1_4bit() throws IOException
+	{
+		test("rgb1-4bit");
+	}
+
+	@Test
+	public void testRgb2_4bit() throws IOException
+	{
+		test("rgb2-4bit");
+	}
+
+	/**
+	 * Write more distinct colors to an indexed file than the editor caches
+	 * palette entries for, and check that each is mapped to the closest entry
+	 * of a gray palette.
+	 */
+	@Test
+	public void testNearestColors() throws IOException
+	{
+		Path dirOutput = SystemPaths.CWD.resolve("testdata")
+				.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path bmpFile = dirOutput.resolve("nearest-colors.bmp");
+
+		int w = 128;
+		int h = 64;
+		BMPWriter.open(bmpFile, w, h, 8, null).close();
+
+		int[] rgb = new int[w * h];
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				rgb[y * w + x] = (x * 2 << 16) | (y * 4 << 8) | ((x + y) & 0xFF);
+			}
+		}
+		try (BMPEditor editor = BMPEditor.open(bmpFile)) {
+			editor.writeRGB(0, 0, w, h, rgb, 0, w);
+			// again, with the cache filled
+			editor.writeRGB(0, 0, w, h, rgb, 0, w);
+		}
+
+		BMPDecoderOptions options = new BMPDecoderOptions();
+		options.setNativeLayout(true);
+		Raster raster;
+		try (InputStream in = Files.newInputStream(bmpFile)) {
+			raster = BMPDecoder.read(in, options).getRaster();
+		}
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				int c = rgb[y * w + x];
+				int sum = (c >> 16) + ((c >> 8) & 0xFF) + (c & 0xFF);
+				Assert.assertEquals(Math.round(sum / 3f),
+						raster.getSample(x, y, 0));
+			}
+		}
+	}
+
+	/**
+	 * Copy a region of a file to another location within the same file, using
+	 * an unaligned rectangle, and compare the result to the expected image.
+	 */
+	private void test(String filename) throws IOException
+	{
+		Path dirTestdata = SystemPaths.CWD.resolve("testdata");
+		Path input = dirTestdata.resolve("bmp").resolve(filename + ".bmp");
+		Path dirOutput = dirTestdata.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path bmpFile = dirOutput.resolve(filename + "-edited.bmp");
+		Files.copy(input, bmpFile, StandardCopyOption.REPLACE_EXISTING);
+
+		BufferedImage original = BMPDecoder.read(input);
+		int w = 11;
+		int h = 9;
+		BufferedImage patch = copy(original.getSubimage(20, 22, w, h));
+
+		BufferedImage expected = copy(original);
+		int[] rgb = patch.getRGB(0, 0, w, h, null, 0, w);
+		expected.setRGB(3, 5, w, h, rgb, 0, w);
+
+		try (BMPEditor editor = BMPEditor.open(bmpFile)) {
+			editor.write(3, 5, patch);
+		}
+
+		TestUtils.compare(expected, BMPDecoder.read(bmpFile));
+		TestUtils.compare(expected, ImageIO.read(bmpFile.toFile()));
+	}
+
+	private static BufferedImage copy(BufferedImage image)
+	{
+		BufferedImage copy = new BufferedImage(image.getWidth(),
+				image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		copy.getGraphics().drawImage(image, 0, 0, null);
+		return copy;
+	}
+
+}
@@ -0,0 +1,118 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPConstants;
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPReader;
+import de.topobyte.bmp4j.codec.FileHeader;
+import de.topobyte.bmp4j.io.BufferedLittleEndianInput;
+import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestBMPReader
+{
+
+	@Test
+	public void testRgb1() throws IOException
+	{
+		test("rgb1");
+	}
+
+	@Test
+	public void testRgb1_4bit() throws IOException
+	{
+		test("rgb1-4bit");
+	}
+
+	@Test
+	public void testColors() throws IOException
+	{
+		test("colors");
+	}
+
+	@Test
+	public void test8bitAnd24bit() throws IOException
+	{
+		Path dirTestdata = SystemPaths.CWD.resolve("testdata");
+		BufferedImage image = BMPDecoder
+				.read(dirTestdata.resolve("bmp").resolve("colors.bmp"));
+		Path dirOutput = dirTestdata.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+
+		int[] types = { BufferedImage.TYPE_BYTE_INDEXED,
+				BufferedImage.TYPE_INT_RGB };
+		for (int type : types) {
+			BufferedImage converted = new BufferedImage(image.getWidth(),
+					image.getHeight(), type);
+			converted.getGraphics().drawImage(image, 0, 0, null);
+			Path file = dirOutput.resolve("reader-" + type + ".bmp");
+			BMPEncoder.write(converted, file);
+			test(file);
+		}
+	}
+
+	@Test
+	public void testFileSizeOverflow() throws IOException
+	{
+		Assert.assertEquals(BMPConstants.MAX_FILE_SIZE,
+				writeFileHeader(BMPConstants.MAX_FILE_SIZE).fileSize);
+		Assert.assertEquals(0,
+				writeFileHeader(BMPConstants.MAX_FILE_SIZE + 1).fileSize);
+	}
+
+	private static FileHeader writeFileHeader(long fileSize)
+			throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BMPEncoder.writeFileHeader(fileSize, 138,
+				new LittleEndianOutputStream(baos));
+		FileHeader header = BMPDecoder.readHeader(new BufferedLittleEndianInput(
+				new ByteArrayInputStream(baos.toByteArray())));
+		Assert.assertEquals(138, header.dataOffset);
+		return header;
+	}
+
+	private void test(String filename) throws IOException
+	{
+		Path dirTestdata = SystemPaths.CWD.resolve("testdata");
+		test(dirTestdata.resolve("bmp").resolve(filename + ".bmp"));
+	}
+
+	private void test(Path file) throws IOException
+	{
+		BufferedImage expected = BMPDecoder.read(file);
+		try (BMPReader reader = BMPReader.open(file)) {
+			int width = reader.getWidth();
+			int height = reader.getHeight();
+			BufferedImage image = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			int[] rgb = new int[width + 3];
+			// read rows in reverse order to exercise random access
+			for (int y = height - 1; y >= 0; y--) {
+				reader.readRGB(y, rgb, 3);
+				image.setRGB(0, y, width, 1, rgb, 3, width);
+			}
+			TestUtils.compare(expected, image);
+
+			ByteBuffer line = ByteBuffer
+					.allocateDirect(reader.getBytesPerLine());
+			reader.readLine(0, line);
+			Assert.assertFalse(line.hasRemaining());
+			Assert.assertEquals(
+					(long) reader.getBytesPerLine() * height,
+					reader.getRasterSize());
+		}
+	}
+
+}
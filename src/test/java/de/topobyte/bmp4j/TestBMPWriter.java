@@ -0,0 +1,126 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPWriter;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestBMPWriter
+{
+
+	private static final int BAND_HEIGHT = 7;
+
+	@Test
+	public void testFile24() throws IOException
+	{
+		testFile("rgb1-4bit", "bmp", 24);
+	}
+
+	@Test
+	public void testFile32() throws IOException
+	{
+		testFile("rgb1", "png", 32);
+	}
+
+	@Test
+	public void testFile4() throws IOException
+	{
+		testFile("rgb2-4bit", "bmp", 4);
+	}
+
+	@Test
+	public void testStream24() throws IOException
+	{
+		testStream("rgb2-4bit", "bmp", 24);
+	}
+
+	@Test
+	public void testStream4() throws IOException
+	{
+		testStream("rgb1-4bit", "bmp", 4);
+	}
+
+	private BufferedImage load(String filename, String format)
+			throws IOException
+	{
+		Path dirTestdata = SystemPaths.CWD.resolve("testdata");
+		Path input = dirTestdata.resolve(format)
+				.resolve(filename + "." + format);
+		if (format.equals("bmp")) {
+			return BMPDecoder.read(input);
+		}
+		return ImageIO.read(input.toFile());
+	}
+
+	private static IndexColorModel palette(BufferedImage image, int bitCount)
+	{
+		return bitCount <= 8 ? (IndexColorModel) image.getColorModel() : null;
+	}
+
+	/**
+	 * Write bands to a file in reverse order and compare the result, read
+	 * back with our decoder and with ImageIO, to the original image.
+	 */
+	private void testFile(String filename, String format, int bitCount)
+			throws IOException
+	{
+		BufferedImage image = load(filename, format);
+
+		Path dirOutput = SystemPaths.CWD.resolve("testdata")
+				.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path bmpFile = dirOutput.resolve(filename + "-writer.bmp");
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		try (BMPWriter writer = BMPWriter.open(bmpFile, width, height,
+				bitCount, palette(image, bitCount))) {
+			int start = (height - 1) / BAND_HEIGHT * BAND_HEIGHT;
+			for (int y = start; y >= 0; y -= BAND_HEIGHT) {
+				int h = Math.min(BAND_HEIGHT, height - y);
+				writer.writeRows(y, image.getSubimage(0, y, width, h));
+			}
+		}
+
+		TestUtils.compare(image, BMPDecoder.read(bmpFile));
+		TestUtils.compare(image, ImageIO.read(bmpFile.toFile()));
+	}
+
+	/**
+	 * Write bands to a stream and compare the result, read back with our
+	 * decoder and with ImageIO, to the original image.
+	 */
+	private void testStream(String filename, String format, int bitCount)
+			throws IOException
+	{
+		BufferedImage image = load(filename, format);
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (BMPWriter writer = new BMPWriter(baos, width, height, bitCount,
+				palette(image, bitCount))) {
+			for (int y = 0; y < height; y += BAND_HEIGHT) {
+				int h = Math.min(BAND_HEIGHT, height - y);
+				writer.writeRows(y, image.getSubimage(0, y, width, h));
+			}
+		}
+
+		byte[] bytes = baos.toByteArray();
+		TestUtils.compare(image,
+				BMPDecoder.read(new ByteArrayInputStream(bytes)));
+		TestUtils.compare(image, ImageIO.read(new ByteArrayInputStream(bytes)));
+	}
+
+}
@@ -0,0 +1,89 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+
+public class TestColorsUsed
+{
+
+	/**
+	 * Images with fewer colors than their color depth allows are written with
+	 * a short color table.
+	 */
+	@Test
+	public void testShortPalette() throws IOException
+	{
+		int[][] cases = { { 3, 4 }, { 9, 4 }, { 16, 4 }, { 17, 8 },
+				{ 40, 8 } };
+		for (int[] c : cases) {
+			BufferedImage image = TestUtils.createColorCycle(23, 7, c[0], 0);
+			for (int i = 0; i < 2; i++) {
+				BMPEncoderOptions options = new BMPEncoderOptions();
+				options.setReduceColorDepth(true);
+				options.setRunLengthEncoding(i == 1);
+				byte[] bytes = BMPEncoder.encode(image, options);
+
+				ByteBuffer buf = ByteBuffer.wrap(bytes)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				int bitCount = buf.getShort(14 + 14);
+				int colorsUsed = buf.getInt(14 + 32);
+				int dataOffset = buf.getInt(10);
+				Assert.assertEquals(c[1], bitCount);
+				Assert.assertEquals(c[0] < 1 << bitCount ? c[0] : 0,
+						colorsUsed);
+				Assert.assertEquals(14 + 124 + c[0] * 4, dataOffset);
+
+				TestUtils.compare(image,
+						BMPDecoder.read(new ByteArrayInputStream(bytes)));
+				TestUtils.compare(image,
+						ImageIO.read(new ByteArrayInputStream(bytes)));
+			}
+		}
+	}
+
+	/**
+	 * Data between the headers and the raster data is skipped.
+	 */
+	@Test
+	public void testDataOffset() throws IOException
+	{
+		for (int numColors : new int[] { 2, 9, 1000 }) {
+			BufferedImage image = TestUtils.createColorCycle(13, 5, numColors,
+					0);
+			BMPEncoderOptions options = new BMPEncoderOptions();
+			options.setReduceColorDepth(true);
+			byte[] bytes = BMPEncoder.encode(image, options);
+
+			int gap = 37;
+			int dataOffset = ByteBuffer.wrap(bytes)
+					.order(ByteOrder.LITTLE_ENDIAN).getInt(10);
+			byte[] shifted = new byte[bytes.length + gap];
+			System.arraycopy(bytes, 0, shifted, 0, dataOffset);
+			for (int i = 0; i < gap; i++) {
+				shifted[dataOffset + i] = (byte) 0xA5;
+			}
+			System.arraycopy(bytes, dataOffset, shifted, dataOffset + gap,
+					bytes.length - dataOffset);
+			ByteBuffer buf = ByteBuffer.wrap(shifted)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(2, shifted.length);
+			buf.putInt(10, dataOffset + gap);
+
+			TestUtils.compare(image,
+					BMPDecoder.read(new ByteArrayInputStream(shifted)));
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPDecoderContext;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderContext;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+
+public class TestContexts
+{
+
+	/**
+	 * Encode and decode images of varying size and color depth with a single
+	 * pair of contexts, so that buffers left over from larger images are
+	 * reused for smaller ones, and compare to the results without contexts.
+	 */
+	@Test
+	public void testReuse() throws IOException
+	{
+		BMPEncoderContext encoderContext = new BMPEncoderContext();
+		BMPDecoderContext decoderContext = new BMPDecoderContext();
+
+		int[][] cases = { { 61, 13, 1000 }, { 5, 3, 2 }, { 43, 7, 200 },
+				{ 3, 9, 9 }, { 17, 4, 1000 }, { 61, 13, 9 }, { 7, 2, 3 } };
+		for (int[] c : cases) {
+			BufferedImage image = TestUtils.createColorCycle(c[0], c[1], c[2],
+					0);
+			for (int i = 0; i < 4; i++) {
+				BMPEncoderOptions options = new BMPEncoderOptions();
+				options.setReduceColorDepth((i & 1) != 0);
+				options.setRunLengthEncoding((i & 2) != 0);
+
+				byte[] expected = BMPEncoder.encode(image, options);
+				byte[] bytes = encoderContext.encode(image, options);
+				Assert.assertArrayEquals(expected, bytes);
+
+				BufferedImage decoded = decoderContext
+						.read(new ByteArrayInputStream(bytes));
+				BufferedImage reference = BMPDecoder
+						.read(new ByteArrayInputStream(bytes));
+				Assert.assertEquals(reference.getType(), decoded.getType());
+				TestUtils.compare(image, decoded);
+				TestUtils.compare(reference, decoded);
+			}
+		}
+	}
+
+	@Test
+	public void testThreadLocal() throws InterruptedException
+	{
+		final BMPEncoderContext encoderContext = BMPEncoderContext
+				.forCurrentThread();
+		final BMPDecoderContext decoderContext = BMPDecoderContext
+				.forCurrentThread();
+		Assert.assertSame(encoderContext, BMPEncoderContext.forCurrentThread());
+		Assert.assertSame(decoderContext, BMPDecoderContext.forCurrentThread());
+
+		final Object[] other = new Object[2];
+		Thread thread = new Thread() {
+
+			@Override
+			public void run()
+			{
+				other[0] = BMPEncoderContext.forCurrentThread();
+				other[1] = BMPDecoderContext.forCurrentThread();
+			}
+
+		};
+		thread.start();
+		thread.join();
+		Assert.assertNotSame(encoderContext, other[0]);
+		Assert.assertNotSame(decoderContext, other[1]);
+	}
+
+}
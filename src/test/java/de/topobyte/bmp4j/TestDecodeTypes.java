@@ -0,0 +1,115 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoderContext;
+import de.topobyte.bmp4j.codec.BMPDecoderOptions;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.ImageBufferPool;
+
+public class TestDecodeTypes
+{
+
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR };
+
+	@Test
+	public void test24() throws IOException
+	{
+		test(TestUtils.createGradient(29, 17,
+				BufferedImage.TYPE_INT_RGB, true), new BMPEncoderOptions());
+	}
+
+	@Test
+	public void test32() throws IOException
+	{
+		test(TestUtils.createGradient(29, 17,
+				BufferedImage.TYPE_INT_ARGB, true),
+				new BMPEncoderOptions());
+	}
+
+	@Test
+	public void test16() throws IOException
+	{
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRgb16Format(BMPEncoderOptions.RGB16_565);
+		test(TestUtils.createGradient(29, 17,
+				BufferedImage.TYPE_INT_RGB, true), options);
+	}
+
+	private void test(BufferedImage image, BMPEncoderOptions encoderOptions)
+			throws IOException
+	{
+		byte[] bytes = BMPEncoder.encode(image, encoderOptions);
+		BufferedImage reference = new BMPDecoderContext()
+				.read(new ByteArrayInputStream(bytes));
+
+		BMPDecoderContext pooled = new BMPDecoderContext();
+		pooled.setImagePool(new ImageBufferPool(1 << 20));
+		for (BMPDecoderContext context : new BMPDecoderContext[] {
+				new BMPDecoderContext(), pooled }) {
+			for (int type : TYPES) {
+				BMPDecoderOptions options = new BMPDecoderOptions();
+				options.setImageType(type);
+				BufferedImage decoded = context
+						.read(new ByteArrayInputStream(bytes), options);
+				Assert.assertEquals(type, decoded.getType());
+				check(reference, decoded);
+				if (context.getImagePool() != null) {
+					context.getImagePool().release(decoded);
+				}
+			}
+		}
+	}
+
+	private static void check(BufferedImage expected, BufferedImage actual)
+	{
+		boolean alpha = actual.getColorModel().hasAlpha();
+		boolean premultiplied = actual.isAlphaPremultiplied();
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int e = expected.getRGB(x, y);
+				if (!alpha) {
+					e |= 0xFF000000;
+				}
+				int v = actual.getRGB(x, y);
+				if (e >>> 24 == 0) {
+					Assert.assertEquals(0, v >>> 24);
+					continue;
+				}
+				if (!premultiplied) {
+					Assert.assertEquals(e, v);
+					continue;
+				}
+				// compare the premultiplied channels, allowing for rounding
+				int a = e >>> 24;
+				Assert.assertEquals(a, v >>> 24);
+				for (int shift = 0; shift < 24; shift += 8) {
+					int d = ((e >> shift) & 0xFF) * a / 255
+							- ((v >> shift) & 0xFF) * a / 255;
+					Assert.assertTrue("pixel " + x + "," + y,
+							Math.abs(d) <= 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUnsupportedType()
+	{
+		try {
+			new BMPDecoderOptions().setImageType(BufferedImage.TYPE_BYTE_GRAY);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
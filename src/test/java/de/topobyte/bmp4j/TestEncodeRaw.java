@@ -0,0 +1,175 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPImage;
+import de.topobyte.bmp4j.codec.PixelLayout;
+
+public class TestEncodeRaw
+{
+
+	private static final int WIDTH = 37;
+	private static final int HEIGHT = 23;
+	private static final int SCANSIZE = 41;
+	private static final int OFFSET = 5;
+
+	private static int pixel(int x, int y, boolean alpha)
+	{
+		int a = alpha ? (x * 13 + y) & 0xFF : 0xFF;
+		return a << 24 | (x * 7) << 16 | (y * 11) << 8 | ((x * y) & 0xFF);
+	}
+
+	@Test
+	public void testIntRGB() throws IOException
+	{
+		testInt(false, 24);
+	}
+
+	@Test
+	public void testIntARGB() throws IOException
+	{
+		testInt(true, 32);
+	}
+
+	private void testInt(boolean alpha, int expectedBitCount)
+			throws IOException
+	{
+		int[] pixels = new int[OFFSET + SCANSIZE * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int p = pixel(x, y, alpha);
+				if (!alpha) {
+					// alpha bits of RGB pixels must be ignored
+					p &= 0x00FFFFFF;
+				}
+				pixels[OFFSET + y * SCANSIZE + x] = p;
+			}
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BMPEncoder.writeRGB(pixels, OFFSET, SCANSIZE, WIDTH, HEIGHT, alpha,
+				baos);
+		check(baos.toByteArray(), alpha, expectedBitCount);
+	}
+
+	@Test
+	public void testWidths() throws IOException
+	{
+		// covers rows converted in whole vectors and the scalar remainders
+		for (int width = 1; width <= 70; width++) {
+			int[] pixels = new int[width * 2];
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] = pixel(i, i * 3, false);
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			BMPEncoder.writeRGB(pixels, 0, width, width, 2, false, baos);
+			BufferedImage image = BMPDecoder
+					.read(new ByteArrayInputStream(baos.toByteArray()));
+			for (int i = 0; i < pixels.length; i++) {
+				Assert.assertEquals("width " + width, pixels[i],
+						image.getRGB(i % width, i / width));
+			}
+		}
+	}
+
+	@Test
+	public void testByteBuffer() throws IOException
+	{
+		for (PixelLayout layout : PixelLayout.values()) {
+			int bpp = layout.getBytesPerPixel();
+			int scansize = SCANSIZE * bpp;
+			ByteBuffer buffer = ByteBuffer.allocate(OFFSET + scansize * HEIGHT);
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					int p = pixel(x, y, layout.hasAlpha());
+					String channels = layout.name();
+					for (int c = 0; c < channels.length(); c++) {
+						int shift = "ARGB".indexOf(channels.charAt(c));
+						buffer.put(OFFSET + y * scansize + x * bpp + c,
+								(byte) (p >>> (24 - shift * 8)));
+					}
+				}
+			}
+			buffer.position(OFFSET);
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			BMPEncoder.write(buffer, layout, scansize, WIDTH, HEIGHT, baos);
+			Assert.assertEquals(OFFSET, buffer.position());
+			check(baos.toByteArray(), layout.hasAlpha(),
+					layout.hasAlpha() ? 32 : 24);
+		}
+	}
+
+	private void check(byte[] bytes, boolean alpha, int expectedBitCount)
+			throws IOException
+	{
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		Assert.assertEquals(expectedBitCount,
+				bmp.getInfoHeader().getBitCount());
+		BufferedImage image = bmp.getImage();
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Assert.assertEquals(pixel(x, y, alpha), image.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testIndexed() throws IOException
+	{
+		testIndexed(2, 1, false);
+		testIndexed(16, 4, false);
+		testIndexed(200, 8, false);
+		testIndexed(200, 8, true);
+	}
+
+	private void testIndexed(int numColors, int expectedBitCount,
+			boolean rle) throws IOException
+	{
+		int[] colors = new int[numColors];
+		for (int i = 0; i < numColors; i++) {
+			colors[i] = 0xFF000000 | (i * 0x010305);
+		}
+		IndexColorModel palette = new IndexColorModel(8, numColors, colors, 0,
+				false, -1, DataBuffer.TYPE_BYTE);
+
+		byte[] indices = new byte[OFFSET + SCANSIZE * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				indices[OFFSET + y * SCANSIZE + x] = (byte) ((x / 3 + y)
+						% numColors);
+			}
+		}
+
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRunLengthEncoding(rle);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BMPEncoder.writeIndexed(indices, OFFSET, SCANSIZE, WIDTH, HEIGHT,
+				palette, baos, options);
+
+		BMPImage bmp = BMPDecoder
+				.readExt(new ByteArrayInputStream(baos.toByteArray()));
+		Assert.assertEquals(expectedBitCount,
+				bmp.getInfoHeader().getBitCount());
+		BufferedImage image = bmp.getImage();
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Assert.assertEquals(colors[(x / 3 + y) % numColors],
+						image.getRGB(x, y));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestEncodedSize
+{
+
+	private static BufferedImage[] images() throws IOException
+	{
+		BufferedImage png = ImageIO.read(SystemPaths.CWD
+				.resolve("testdata/png/colors.png").toFile());
+		BufferedImage rgb = new BufferedImage(png.getWidth(), png.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		rgb.getGraphics().drawImage(png, 0, 0, null);
+		BufferedImage indexed = BMPDecoder.read(SystemPaths.CWD
+				.resolve("testdata/bmp/rgb1-4bit.bmp").toFile());
+		return new BufferedImage[] { png, rgb, indexed };
+	}
+
+	private static BMPEncoderOptions[] options()
+	{
+		BMPEncoderOptions plain = new BMPEncoderOptions();
+		BMPEncoderOptions reduce = new BMPEncoderOptions();
+		reduce.setReduceColorDepth(true);
+		BMPEncoderOptions rle = new BMPEncoderOptions();
+		rle.setRunLengthEncoding(true);
+		BMPEncoderOptions rgb16 = new BMPEncoderOptions();
+		rgb16.setRgb16Format(BMPEncoderOptions.RGB16_565);
+		return new BMPEncoderOptions[] { plain, reduce, rle, rgb16 };
+	}
+
+	@Test
+	public void testEncodedSize() throws IOException
+	{
+		for (BufferedImage image : images()) {
+			for (BMPEncoderOptions options : options()) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				BMPEncoder.write(image, baos, options);
+				byte[] expected = baos.toByteArray();
+
+				Assert.assertEquals(expected.length,
+						BMPEncoder.getEncodedSize(image, options));
+				Assert.assertArrayEquals(expected,
+						BMPEncoder.encode(image, options));
+
+				byte[] array = new byte[expected.length + 10];
+				Assert.assertEquals(expected.length,
+						BMPEncoder.encode(image, array, 7, options));
+				for (int i = 0; i < expected.length; i++) {
+					Assert.assertEquals(expected[i], array[7 + i]);
+				}
+
+				ByteBuffer direct = ByteBuffer
+						.allocateDirect(expected.length + 3);
+				direct.position(3);
+				Assert.assertEquals(expected.length,
+						BMPEncoder.encode(image, direct, options));
+				Assert.assertEquals(expected.length + 3, direct.position());
+				for (int i = 0; i < expected.length; i++) {
+					Assert.assertEquals(expected[i], direct.get(3 + i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBufferTooSmall() throws IOException
+	{
+		BufferedImage image = images()[0];
+		long size = BMPEncoder.getEncodedSize(image);
+		try {
+			BMPEncoder.encode(image, new byte[(int) size - 1], 0,
+					new BMPEncoderOptions());
+			Assert.fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+}
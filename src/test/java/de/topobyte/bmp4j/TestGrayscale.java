@@ -0,0 +1,115 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPImage;
+
+public class TestGrayscale
+{
+
+	private static int sample(int x, int y)
+	{
+		return (x * 7 + y * 3) & 0xFF;
+	}
+
+	/**
+	 * Create an image with the test samples in the high order byte of each
+	 * sample and some noise below.
+	 */
+	private static BufferedImage createImage(int type, int shift)
+	{
+		BufferedImage image = new BufferedImage(37, 23, type);
+		WritableRaster raster = image.getRaster();
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				raster.setSample(x, y, 0, sample(x, y) << shift | ((1 << shift) - 1) & y);
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void testByteGray() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_BYTE_GRAY, 0);
+		test(image, BMPEncoder.encode(image));
+	}
+
+	@Test
+	public void testUShortGray() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_USHORT_GRAY, 8);
+		test(image, BMPEncoder.encode(image));
+	}
+
+	@Test
+	public void testSubimage() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_BYTE_GRAY, 0);
+		BufferedImage sub = image.getSubimage(3, 5, 20, 10);
+		byte[] bytes = BMPEncoder.encode(sub);
+		BufferedImage decoded = BMPDecoder
+				.read(new ByteArrayInputStream(bytes));
+		for (int y = 0; y < 10; y++) {
+			for (int x = 0; x < 20; x++) {
+				Assert.assertEquals(sample(x + 3, y + 5),
+						decoded.getRaster().getSample(x, y, 0));
+			}
+		}
+	}
+
+	@Test
+	public void testRunLengthEncoded() throws IOException
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_BYTE_GRAY, 0);
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRunLengthEncoding(true);
+		byte[] bytes = BMPEncoder.encode(image, options);
+		BufferedImage decoded = BMPDecoder
+				.read(new ByteArrayInputStream(bytes));
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				Assert.assertEquals(image.getRaster().getSample(x, y, 0),
+						decoded.getRaster().getSample(x, y, 0));
+			}
+		}
+	}
+
+	/**
+	 * Check the encoded file, and that it decodes to a gray image with the
+	 * same samples, with our decoder and with ImageIO.
+	 */
+	private void test(BufferedImage image, byte[] bytes) throws IOException
+	{
+		Assert.assertEquals(BMPEncoder.getEncodedSize(image), bytes.length);
+
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		Assert.assertEquals(8, bmp.getInfoHeader().getBitCount());
+		BufferedImage decoded = bmp.getImage();
+		Assert.assertEquals(BufferedImage.TYPE_BYTE_GRAY, decoded.getType());
+
+		BufferedImage imageIO = ImageIO.read(new ByteArrayInputStream(bytes));
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int expected = sample(x, y);
+				Assert.assertEquals(expected,
+						decoded.getRaster().getSample(x, y, 0));
+				// ImageIO decodes to a gray image as well
+				Assert.assertEquals(expected,
+						imageIO.getRaster().getSample(x, y, 0));
+			}
+		}
+	}
+
+}
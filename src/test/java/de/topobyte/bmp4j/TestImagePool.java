@@ -0,0 +1,98 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPDecoderContext;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.ImageBufferPool;
+
+public class TestImagePool
+{
+
+	private static Object getData(BufferedImage image)
+	{
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		if (buffer instanceof DataBufferInt) {
+			return ((DataBufferInt) buffer).getData();
+		}
+		return ((DataBufferByte) buffer).getData();
+	}
+
+	/**
+	 * Decode images of the same size with different color depths and
+	 * compression, returning each image to the pool, so that buffers holding
+	 * the pixels of previous images are reused.
+	 */
+	@Test
+	public void testReuse() throws IOException
+	{
+		ImageBufferPool pool = new ImageBufferPool(1 << 20);
+		BMPDecoderContext context = new BMPDecoderContext();
+		context.setImagePool(pool);
+
+		int[][] cases = { { 61, 13, 1000 }, { 61, 13, 200 }, { 61, 13, 9 },
+				{ 61, 13, 2 }, { 17, 4, 1000 } };
+		for (int[] c : cases) {
+			BufferedImage image = TestUtils.createColorCycle(c[0], c[1], c[2],
+					c[1] / 2);
+			for (int i = 0; i < 4; i++) {
+				BMPEncoderOptions options = new BMPEncoderOptions();
+				options.setReduceColorDepth((i & 1) != 0);
+				options.setRunLengthEncoding((i & 2) != 0);
+				byte[] bytes = BMPEncoder.encode(image, options);
+
+				for (int k = 0; k < 2; k++) {
+					BufferedImage decoded = context
+							.read(new ByteArrayInputStream(bytes));
+					BufferedImage reference = BMPDecoder
+							.read(new ByteArrayInputStream(bytes));
+					Assert.assertEquals(reference.getType(),
+							decoded.getType());
+					TestUtils.compare(image, decoded);
+
+					// the next decode of the same shape reuses the array
+					Object data = getData(decoded);
+					pool.release(decoded);
+					BufferedImage next = context
+							.read(new ByteArrayInputStream(bytes));
+					Assert.assertSame(data, getData(next));
+					pool.release(next);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEviction()
+	{
+		ImageBufferPool pool = new ImageBufferPool(100);
+		int[] ints = new int[20];
+		byte[] bytes = new byte[10];
+		pool.release(ints);
+		pool.release(bytes);
+		Assert.assertEquals(90, pool.getSize());
+
+		// the int array is used most recently, so the byte array is evicted
+		Assert.assertSame(ints, pool.takeInts(20));
+		pool.release(ints);
+		pool.release(new byte[20]);
+		Assert.assertEquals(100, pool.getSize());
+		Assert.assertNotSame(bytes, pool.takeBytes(10));
+		Assert.assertSame(ints, pool.takeInts(20));
+
+		// arrays larger than the pool are not kept
+		pool.release(new int[30]);
+		Assert.assertEquals(20, pool.getSize());
+	}
+
+}
@@ -0,0 +1,84 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPImage;
+
+public class TestImageTypes
+{
+
+	@Test
+	public void test3ByteBgr() throws IOException
+	{
+		test(BufferedImage.TYPE_3BYTE_BGR, 24, 0);
+	}
+
+	@Test
+	public void test4ByteAbgr() throws IOException
+	{
+		test(BufferedImage.TYPE_4BYTE_ABGR, 32, 0);
+	}
+
+	@Test
+	public void testIntArgbPre() throws IOException
+	{
+		// premultiplied channels lose precision
+		test(BufferedImage.TYPE_INT_ARGB_PRE, 32, 1);
+	}
+
+	@Test
+	public void testUshort565() throws IOException
+	{
+		test(BufferedImage.TYPE_USHORT_565_RGB, 24, 0);
+	}
+
+	@Test
+	public void testSubimage() throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(37, 23,
+				BufferedImage.TYPE_4BYTE_ABGR, true);
+		test(image.getSubimage(3, 5, 20, 11), 32, 0);
+	}
+
+	private void test(int type, int expectedBitCount, int tolerance)
+			throws IOException
+	{
+		test(TestUtils.createGradient(37, 23, type, true), expectedBitCount,
+				tolerance);
+	}
+
+	private void test(BufferedImage image, int expectedBitCount,
+			int tolerance) throws IOException
+	{
+		byte[] bytes = BMPEncoder.encode(image);
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		Assert.assertEquals(expectedBitCount,
+				bmp.getInfoHeader().getBitCount());
+
+		BufferedImage decoded = bmp.getImage();
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int expected = image.getRGB(x, y);
+				int actual = decoded.getRGB(x, y);
+				if (expected >>> 24 == 0) {
+					Assert.assertEquals(0, actual >>> 24);
+					continue;
+				}
+				for (int shift = 0; shift < 32; shift += 8) {
+					int e = (expected >> shift) & 0xFF;
+					int v = (actual >> shift) & 0xFF;
+					Assert.assertTrue("pixel " + x + "," + y,
+							Math.abs(e - v) <= tolerance);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package de.topobyte.bmp4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.io.BufferedLittleEndianFile;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestLittleEndianFile
+{
+
+	private static Path createFile(String name, int size) throws IOException
+	{
+		Path dirOutput = SystemPaths.CWD.resolve("testdata")
+				.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path file = dirOutput.resolve(name);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31 + 7);
+		}
+		Files.write(file, data);
+		return file;
+	}
+
+	@Test
+	public void testReadWrite() throws IOException
+	{
+		Path path = createFile("le-file.bin", 300);
+		ByteBuffer expected = ByteBuffer.wrap(Files.readAllBytes(path))
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try (BufferedLittleEndianFile file = new BufferedLittleEndianFile(
+				channel, 16)) {
+			// reads within and across pages
+			file.seek(13);
+			Assert.assertEquals(expected.getInt(13), file.readIntLE());
+			Assert.assertEquals(expected.getShort(17), file.readShortLE());
+			int[] ints = new int[10];
+			file.readInts(ints, 0, 10);
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals(expected.getInt(19 + i * 4), ints[i]);
+			}
+
+			// overwrite values in the middle of a page and read them back
+			file.seek(100);
+			file.writeIntLE(0xCAFEBABE);
+			file.writeShorts(new short[] { 1, 2, 3 }, 0, 3);
+			expected.putInt(100, 0xCAFEBABE);
+			expected.putShort(104, (short) 1);
+			expected.putShort(106, (short) 2);
+			expected.putShort(108, (short) 3);
+			Assert.assertEquals(expected.getShort(110), file.readShortLE());
+			file.seek(98);
+			Assert.assertEquals(expected.getInt(98), file.readIntLE());
+			Assert.assertEquals(102, file.getPosition());
+
+			// large writes bypass the page
+			byte[] bytes = new byte[40];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) i;
+			}
+			file.seek(150);
+			file.write(bytes);
+			expected.position(150);
+			expected.put(bytes);
+
+			// positional access after flushing
+			file.flush();
+			ByteBuffer buf = ByteBuffer.allocate(8)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			file.readFully(buf, 148);
+			for (int i = 0; i < 8; i++) {
+				Assert.assertEquals(expected.get(148 + i), buf.get(i));
+			}
+			buf.clear();
+			buf.putLong(0x0102030405060708L).flip();
+			file.write(buf, 200);
+			expected.position(200);
+			expected.putLong(0x0102030405060708L);
+
+			// append beyond the end
+			file.seek(298);
+			file.writeIntLE(-1);
+			Assert.assertEquals(302, file.length());
+			Assert.assertEquals(0, file.skip(10, false));
+			try {
+				file.readUnsignedByte();
+				Assert.fail();
+			} catch (EOFException e) {
+				// expected
+			}
+		}
+
+		byte[] data = Files.readAllBytes(path);
+		Assert.assertEquals(302, data.length);
+		for (int i = 0; i < 298; i++) {
+			Assert.assertEquals("position " + i, expected.get(i), data[i]);
+		}
+		for (int i = 298; i < 302; i++) {
+			Assert.assertEquals(-1, data[i]);
+		}
+	}
+
+	@Test
+	public void testSetLength() throws IOException
+	{
+		Path path = createFile("le-file-length.bin", 10);
+		try (BufferedLittleEndianFile file = new BufferedLittleEndianFile(
+				path.toFile(), "rw")) {
+			file.seek(8);
+			file.writeShortLE((short) 7);
+			file.setLength(20);
+			Assert.assertEquals(10, file.getPosition());
+			Assert.assertEquals(0, file.readIntLE());
+			file.setLength(5);
+			Assert.assertEquals(5, file.getPosition());
+			Assert.assertEquals(-1, file.read());
+		}
+		Assert.assertEquals(5, Files.size(path));
+	}
+
+}
@@ -0,0 +1,155 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.io.BufferedLittleEndianInput;
+import de.topobyte.bmp4j.io.LittleEndianInput;
+
+public class TestLittleEndianInput
+{
+
+	private static byte[] createData(int size)
+	{
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31 + 7);
+		}
+		return data;
+	}
+
+	private static void test(LittleEndianInput in, byte[] data)
+			throws IOException
+	{
+		ByteBuffer expected = ByteBuffer.wrap(data)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		Assert.assertEquals(expected.get() & 0xFF, in.readUnsignedByte());
+		Assert.assertEquals(expected.getShort(), in.readShortLE());
+		Assert.assertEquals(expected.getInt(), in.readIntLE());
+		Assert.assertEquals(expected.getInt() & 0xFFFFFFFFL,
+				in.readUnsignedIntLE());
+
+		// arrays crossing buffer boundaries
+		int[] ints = new int[7];
+		in.readInts(ints, 1, 5);
+		for (int i = 1; i < 6; i++) {
+			Assert.assertEquals(expected.getInt(), ints[i]);
+		}
+		short[] shorts = new short[9];
+		in.readShorts(shorts, 0, 9);
+		for (int i = 0; i < 9; i++) {
+			Assert.assertEquals(expected.getShort(), shorts[i]);
+		}
+
+		Assert.assertEquals(21, in.skip(21, true));
+		expected.position(expected.position() + 21);
+
+		// larger than the buffer
+		byte[] bytes = new byte[40];
+		in.readFully(bytes, 3, 37);
+		for (int i = 3; i < 40; i++) {
+			Assert.assertEquals(expected.get(), bytes[i]);
+		}
+		Assert.assertEquals(expected.position(), in.getPosition());
+
+		Assert.assertEquals(100, in.skip(100, true));
+		expected.position(expected.position() + 100);
+		Assert.assertEquals(expected.getInt(), in.readIntLE());
+		Assert.assertEquals(expected.position(), in.getPosition());
+
+		int remaining = expected.remaining();
+		Assert.assertEquals(remaining, in.skip(remaining + 10, false));
+		Assert.assertEquals(-1, in.read());
+		try {
+			in.readIntLE();
+			Assert.fail();
+		} catch (EOFException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStream() throws IOException
+	{
+		byte[] data = createData(300);
+		test(new BufferedLittleEndianInput(new ByteArrayInputStream(data), 16),
+				data);
+	}
+
+	@Test
+	public void testChannel() throws IOException
+	{
+		byte[] data = createData(300);
+		test(new BufferedLittleEndianInput(
+				Channels.newChannel(new ByteArrayInputStream(data)), 16),
+				data);
+	}
+
+	@Test
+	public void testReadLimit() throws IOException
+	{
+		byte[] data = createData(300);
+		ByteArrayInputStream stream = new ByteArrayInputStream(data);
+		BufferedLittleEndianInput in = new BufferedLittleEndianInput(stream,
+				16);
+		ByteBuffer expected = ByteBuffer.wrap(data)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		// nothing is read ahead
+		in.setReadLimit(0);
+		Assert.assertEquals(expected.getInt(), in.readIntLE());
+		Assert.assertEquals(296, stream.available());
+
+		// read ahead up to the limit, then only what is requested
+		in.setReadLimit(10);
+		Assert.assertEquals(expected.getShort(), in.readShortLE());
+		Assert.assertEquals(290, stream.available());
+		Assert.assertEquals(expected.getInt(), in.readIntLE());
+		Assert.assertEquals(expected.getInt(), in.readIntLE());
+		Assert.assertEquals(286, stream.available());
+	}
+
+	/**
+	 * Images read from a stream leave the stream positioned right after the
+	 * image, so that data following it can be read.
+	 */
+	@Test
+	public void testConcatenatedImages() throws IOException
+	{
+		BufferedImage image = TestUtils.createColorCycle(23, 7, 9, 3);
+		BMPEncoderOptions rle = new BMPEncoderOptions();
+		rle.setReduceColorDepth(true);
+		rle.setRunLengthEncoding(true);
+		BMPEncoderOptions rgb16 = new BMPEncoderOptions();
+		rgb16.setRgb16Format(BMPEncoderOptions.RGB16_565);
+		for (BMPEncoderOptions options : new BMPEncoderOptions[] {
+				new BMPEncoderOptions(), rle, rgb16 }) {
+			byte[] bytes = BMPEncoder.encode(image, options);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(bytes);
+			baos.write(bytes);
+			ByteArrayInputStream in = new ByteArrayInputStream(
+					baos.toByteArray());
+
+			BufferedImage first = BMPDecoder.read(in);
+			Assert.assertEquals(bytes.length, in.available());
+			BufferedImage second = BMPDecoder.read(in);
+			Assert.assertEquals(0, in.available());
+			TestUtils.compare(first, second);
+		}
+	}
+
+}
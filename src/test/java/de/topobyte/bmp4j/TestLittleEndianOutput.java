@@ -0,0 +1,110 @@
+package de.topobyte.bmp4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.io.BufferedLittleEndianOutput;
+import de.topobyte.bmp4j.io.LittleEndianOutput;
+import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+
+public class TestLittleEndianOutput
+{
+
+	private static final int[] INTS = { 0x01020304, -1, 0x7F00FF80, 42, 0,
+			0x80000000, 123456789 };
+
+	private static final short[] SHORTS = { 1, -2, 0x7F80, 0x1234, 0, 99,
+			-32768, 255, 256 };
+
+	private static void write(LittleEndianOutput out) throws IOException
+	{
+		out.write(0xAB);
+		out.writeShortLE((short) 0x1234);
+		out.writeIntLE(0xCAFEBABE);
+		out.writeUnsignedIntLE(0xF0E0D0C0L);
+
+		// arrays crossing buffer boundaries
+		out.writeInts(INTS, 1, 5);
+		out.writeShorts(SHORTS, 0, 9);
+
+		// larger than the buffer
+		byte[] bytes = new byte[40];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31 + 7);
+		}
+		out.write(bytes, 3, 37);
+		out.write(ByteBuffer.wrap(bytes, 5, 10));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(40);
+		direct.put(bytes).flip();
+		out.write(direct);
+		Assert.assertFalse(direct.hasRemaining());
+
+		out.writeByte(0x55);
+		out.flush();
+	}
+
+	private static byte[] expected()
+	{
+		ByteBuffer expected = ByteBuffer.allocate(200)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		expected.put((byte) 0xAB);
+		expected.putShort((short) 0x1234);
+		expected.putInt(0xCAFEBABE);
+		expected.putInt(0xF0E0D0C0);
+		for (int i = 1; i < 6; i++) {
+			expected.putInt(INTS[i]);
+		}
+		for (int i = 0; i < 9; i++) {
+			expected.putShort(SHORTS[i]);
+		}
+		byte[] bytes = new byte[40];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31 + 7);
+		}
+		expected.put(bytes, 3, 37);
+		expected.put(bytes, 5, 10);
+		expected.put(bytes);
+		expected.put((byte) 0x55);
+
+		byte[] result = new byte[expected.position()];
+		expected.flip();
+		expected.get(result);
+		return result;
+	}
+
+	@Test
+	public void testStream() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BufferedLittleEndianOutput out = new BufferedLittleEndianOutput(baos,
+				16);
+		write(out);
+		byte[] expected = expected();
+		Assert.assertArrayEquals(expected, baos.toByteArray());
+		Assert.assertEquals(expected.length, out.getPosition());
+	}
+
+	@Test
+	public void testChannel() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		write(new BufferedLittleEndianOutput(Channels.newChannel(baos), 16));
+		Assert.assertArrayEquals(expected(), baos.toByteArray());
+	}
+
+	@Test
+	public void testUnbuffered() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		write(new LittleEndianOutputStream(baos));
+		Assert.assertArrayEquals(expected(), baos.toByteArray());
+	}
+
+}
@@ -0,0 +1,34 @@
+package de.topobyte.bmp4j;
+
+import java.lang.reflect.Field;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the Java 9 and 17 implementations are in use when the tests
+ * run against them (task <tt>testJava17</tt>), so that the other tests cover
+ * the vector and <tt>VarHandle</tt> code paths there.
+ */
+public class TestMultiRelease
+{
+
+	@Test
+	public void testImplementations() throws ReflectiveOperationException
+	{
+		if (!Boolean.getBoolean("bmp4j.test.multiRelease")) {
+			return;
+		}
+
+		Class<?> shuffles = Class.forName("de.topobyte.bmp4j.codec.Shuffles");
+		Field instance = shuffles.getDeclaredField("INSTANCE");
+		instance.setAccessible(true);
+		Assert.assertEquals("de.topobyte.bmp4j.codec.VectorShuffles",
+				instance.get(null).getClass().getName());
+
+		Class<?> byteArrays = Class.forName("de.topobyte.bmp4j.io.ByteArrays");
+		Assert.assertEquals("java.lang.invoke.VarHandle",
+				byteArrays.getDeclaredField("INT").getType().getName());
+	}
+
+}
@@ -0,0 +1,146 @@
+package de.topobyte.bmp4j;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPDecoderOptions;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPImage;
+import de.topobyte.bmp4j.codec.BMPNativeImages;
+
+public class TestNativeImages
+{
+
+	@Test
+	public void testDraw24() throws IOException
+	{
+		testDraw(BMPNativeImages.createImage(31, 19, 24));
+	}
+
+	@Test
+	public void testDraw32() throws IOException
+	{
+		testDraw(BMPNativeImages.createImage(31, 19, 32));
+	}
+
+	@Test
+	public void testDrawIndexed() throws IOException
+	{
+		IndexColorModel palette = BMPEncoder.createGrayPalette(4);
+		BufferedImage image = BMPNativeImages.createImage(31, 19, 4, palette);
+		Assert.assertEquals(4, BMPNativeImages.getBitCount(image));
+		testDraw(image);
+	}
+
+	@Test
+	public void testNotNative()
+	{
+		BufferedImage image = BMPNativeImages.createImage(31, 19, 24);
+		Assert.assertEquals(24, BMPNativeImages.getBitCount(image));
+		Assert.assertEquals(0,
+				BMPNativeImages.getBitCount(image.getSubimage(1, 1, 8, 8)));
+		Assert.assertEquals(0, BMPNativeImages.getBitCount(
+				new BufferedImage(32, 19, BufferedImage.TYPE_3BYTE_BGR)));
+		Assert.assertEquals(0, BMPNativeImages.getBitCount(
+				new BufferedImage(31, 19, BufferedImage.TYPE_INT_ARGB)));
+	}
+
+	private void testDraw(BufferedImage image) throws IOException
+	{
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setColor(new Color(0x40, 0x80, 0xC0, 0x80));
+		g.fillOval(3, 2, 20, 15);
+		g.dispose();
+
+		byte[] bytes = BMPEncoder.encode(image);
+		Assert.assertEquals(BMPEncoder.getEncodedSize(image), bytes.length);
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		Assert.assertTrue(bmp.getInfoHeader().getHeight() < 0);
+		check(image, bmp.getImage());
+
+		// conversions still apply
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setReduceColorDepth(true);
+		check(image, BMPDecoder.read(new ByteArrayInputStream(
+				BMPEncoder.encode(image, options))));
+	}
+
+	@Test
+	public void testDecode24() throws IOException
+	{
+		testDecode(BufferedImage.TYPE_INT_RGB, 24);
+	}
+
+	@Test
+	public void testDecode32() throws IOException
+	{
+		testDecode(BufferedImage.TYPE_INT_ARGB, 32);
+	}
+
+	@Test
+	public void testDecode8() throws IOException
+	{
+		testDecode(BufferedImage.TYPE_BYTE_INDEXED, 8);
+	}
+
+	@Test
+	public void testDecode1() throws IOException
+	{
+		testDecode(BufferedImage.TYPE_BYTE_BINARY, 1);
+	}
+
+	private void testDecode(int type, int bitCount) throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(29, 17, type, true);
+
+		BMPDecoderOptions options = new BMPDecoderOptions();
+		options.setNativeLayout(true);
+
+		// bottom-up file as written for regular images
+		byte[] bytes = BMPEncoder.encode(image);
+		BufferedImage decoded = BMPDecoder
+				.read(new ByteArrayInputStream(bytes), options);
+		Assert.assertEquals(bitCount, BMPNativeImages.getBitCount(decoded));
+		check(image, decoded);
+
+		// top-down file as written for native images, data is read verbatim
+		byte[] topDown = BMPEncoder.encode(decoded);
+		BufferedImage again = BMPDecoder
+				.read(new ByteArrayInputStream(topDown), options);
+		check(image, again);
+		byte[] data = ((DataBufferByte) again.getRaster().getDataBuffer())
+				.getData();
+		Assert.assertArrayEquals(data, Arrays.copyOfRange(topDown,
+				topDown.length - data.length, topDown.length));
+	}
+
+	private static void check(BufferedImage expected, BufferedImage actual)
+	{
+		boolean alpha = expected.getColorModel().hasAlpha();
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int e = expected.getRGB(x, y);
+				int v = actual.getRGB(x, y);
+				if (!alpha) {
+					e |= 0xFF000000;
+					v |= 0xFF000000;
+				}
+				Assert.assertEquals("pixel " + x + "," + y, e, v);
+			}
+		}
+	}
+
+}
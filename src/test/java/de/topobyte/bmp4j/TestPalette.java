@@ -0,0 +1,76 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.ColorEntry;
+import de.topobyte.bmp4j.codec.Palette;
+import de.topobyte.bmp4j.io.CountingInputStream;
+import de.topobyte.bmp4j.io.LittleEndianInputStream;
+import de.topobyte.bmp4j.io.LittleEndianOutputStream;
+
+public class TestPalette
+{
+
+	@Test
+	public void testReadWrite() throws IOException
+	{
+		byte[] bytes = new byte[16 * 4];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 37);
+		}
+
+		Palette palette = Palette.read(new LittleEndianInputStream(
+				new CountingInputStream(new ByteArrayInputStream(bytes))), 16);
+		Assert.assertEquals(16, palette.size());
+		for (int i = 0; i < 16; i++) {
+			int b = bytes[i * 4] & 0xFF;
+			int g = bytes[i * 4 + 1] & 0xFF;
+			int r = bytes[i * 4 + 2] & 0xFF;
+			Assert.assertEquals((r << 16) | (g << 8) | b, palette.getRGB(i));
+
+			ColorEntry ce = palette.getColorEntry(i);
+			Assert.assertEquals(r, ce.bRed);
+			Assert.assertEquals(g, ce.bGreen);
+			Assert.assertEquals(b, ce.bBlue);
+			Assert.assertEquals(bytes[i * 4 + 3] & 0xFF, ce.bReserved);
+		}
+
+		// entries are written unchanged, padded to the table size
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		palette.write(new LittleEndianOutputStream(baos), 20);
+		byte[] written = baos.toByteArray();
+		Assert.assertEquals(20 * 4, written.length);
+		for (int i = 0; i < written.length; i++) {
+			Assert.assertEquals(i < bytes.length ? bytes[i] : 0, written[i]);
+		}
+
+		Palette copy = Palette.fromColorTable(palette.toColorTable());
+		Assert.assertArrayEquals(palette.getEntries(), copy.getEntries());
+	}
+
+	@Test
+	public void testColorModel()
+	{
+		int[] rgb = { 0x000000, 0xFF0000, 0x00FF00, 0x123456 };
+		IndexColorModel icm = new IndexColorModel(2, 4, rgb, 0, true, -1,
+				DataBuffer.TYPE_BYTE);
+
+		Palette palette = Palette.fromColorModel(icm);
+		Assert.assertArrayEquals(rgb, palette.getEntries());
+
+		IndexColorModel converted = palette.toColorModel(8);
+		Assert.assertEquals(4, converted.getMapSize());
+		Assert.assertFalse(converted.hasAlpha());
+		for (int i = 0; i < 4; i++) {
+			Assert.assertEquals(0xFF000000 | rgb[i], converted.getRGB(i));
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPDecoderContext;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.PaletteCache;
+
+public class TestPaletteCache
+{
+
+	private static BufferedImage createImage(int width, int height,
+			IndexColorModel icm, int seed)
+	{
+		int type = icm.getMapSize() > 16 ? BufferedImage.TYPE_BYTE_INDEXED
+				: BufferedImage.TYPE_BYTE_BINARY;
+		BufferedImage image = new BufferedImage(width, height, type, icm);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int index = (x * 7 + y * 3 + seed) % icm.getMapSize();
+				image.getRaster().setSample(x, y, 0, index);
+			}
+		}
+		return image;
+	}
+
+	private static IndexColorModel createPalette(int bits, int offset)
+	{
+		int n = 1 << bits;
+		int[] rgb = new int[n];
+		for (int i = 0; i < n; i++) {
+			rgb[i] = (i * 0x0F0703 + offset) & 0xFFFFFF;
+		}
+		return new IndexColorModel(bits, n, rgb, 0, false, -1,
+				DataBuffer.TYPE_BYTE);
+	}
+
+	private static BufferedImage decode(BMPDecoderContext context,
+			BufferedImage image) throws IOException
+	{
+		byte[] bytes = BMPEncoder.encode(image);
+		BufferedImage decoded = context.read(new ByteArrayInputStream(bytes));
+		BufferedImage reference = BMPDecoder
+				.read(new ByteArrayInputStream(bytes));
+		Assert.assertEquals(reference.getType(), decoded.getType());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				Assert.assertEquals(image.getRGB(x, y), decoded.getRGB(x, y));
+			}
+		}
+		return decoded;
+	}
+
+	@Test
+	public void testShared() throws IOException
+	{
+		PaletteCache cache = new PaletteCache(16);
+		BMPDecoderContext context = new BMPDecoderContext();
+		context.setPaletteCache(cache);
+
+		for (int bits : new int[] { 1, 4, 8 }) {
+			IndexColorModel a = createPalette(bits, 0);
+			IndexColorModel b = createPalette(bits, 0x102030);
+
+			BufferedImage a1 = decode(context, createImage(13, 5, a, 0));
+			BufferedImage a2 = decode(context, createImage(7, 9, a, 1));
+			BufferedImage b1 = decode(context, createImage(13, 5, b, 0));
+			Assert.assertSame(a1.getColorModel(), a2.getColorModel());
+			Assert.assertNotSame(a1.getColorModel(), b1.getColorModel());
+		}
+		Assert.assertEquals(6, cache.size());
+	}
+
+	@Test
+	public void testBound() throws IOException
+	{
+		PaletteCache cache = new PaletteCache(2);
+		BMPDecoderContext context = new BMPDecoderContext();
+		context.setPaletteCache(cache);
+
+		BufferedImage image1 = createImage(5, 5, createPalette(4, 1), 0);
+		BufferedImage image2 = createImage(5, 5, createPalette(4, 2), 0);
+		BufferedImage image3 = createImage(5, 5, createPalette(4, 3), 0);
+
+		BufferedImage first = decode(context, image1);
+		decode(context, image2);
+		Assert.assertSame(first.getColorModel(),
+				decode(context, image1).getColorModel());
+
+		// the least recently used palette is the second one
+		decode(context, image3);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertSame(first.getColorModel(),
+				decode(context, image1).getColorModel());
+	}
+
+}
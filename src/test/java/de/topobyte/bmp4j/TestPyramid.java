@@ -0,0 +1,130 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPPyramid;
+import de.topobyte.bmp4j.codec.BMPReader;
+import de.topobyte.system.utils.SystemPaths;
+
+public class TestPyramid
+{
+
+	/**
+	 * Straightforward 2x2 box reduction with alpha weighting.
+	 */
+	private static BufferedImage reduce(BufferedImage image)
+	{
+		int width = BMPPyramid.getLevelSize(image.getWidth(), 1);
+		int height = BMPPyramid.getLevelSize(image.getHeight(), 1);
+		BufferedImage reduced = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int count = 0;
+				int[] sums = new int[4];
+				for (int sy = y * 2; sy < Math.min(y * 2 + 2,
+						image.getHeight()); sy++) {
+					for (int sx = x * 2; sx < Math.min(x * 2 + 2,
+							image.getWidth()); sx++) {
+						int argb = image.getRGB(sx, sy);
+						int a = argb >>> 24;
+						sums[0] += a;
+						sums[1] += ((argb >> 16) & 0xFF) * a;
+						sums[2] += ((argb >> 8) & 0xFF) * a;
+						sums[3] += (argb & 0xFF) * a;
+						count++;
+					}
+				}
+				int a = sums[0];
+				int argb = 0;
+				if (a != 0) {
+					argb = ((a + count / 2) / count) << 24
+							| (sums[1] + a / 2) / a << 16
+							| (sums[2] + a / 2) / a << 8
+							| (sums[3] + a / 2) / a;
+				}
+				reduced.setRGB(x, y, argb);
+			}
+		}
+		return reduced;
+	}
+
+	@Test
+	public void testPyramid() throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(37, 23,
+				BufferedImage.TYPE_INT_ARGB, true);
+		Path dirOutput = SystemPaths.CWD.resolve("testdata")
+				.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path source = dirOutput.resolve("pyramid.bmp");
+		BMPEncoder.write(image, source);
+
+		int levels = BMPPyramid.getLevelCount(37, 23);
+		Assert.assertEquals(7, levels);
+
+		final BufferedImage[] images = new BufferedImage[levels];
+		for (int level = 0; level < levels; level++) {
+			images[level] = new BufferedImage(
+					BMPPyramid.getLevelSize(37, level),
+					BMPPyramid.getLevelSize(23, level),
+					BufferedImage.TYPE_INT_ARGB);
+		}
+		try (BMPReader reader = BMPReader.open(source)) {
+			BMPPyramid.build(reader, levels, new BMPPyramid.RowHandler() {
+
+				@Override
+				public void handleRow(int level, int y, int[] argb,
+						int offset)
+				{
+					BufferedImage target = images[level];
+					target.setRGB(0, y, target.getWidth(), 1, argb, offset,
+							target.getWidth());
+				}
+
+			});
+		}
+
+		Assert.assertEquals(1, images[levels - 1].getWidth());
+		Assert.assertEquals(1, images[levels - 1].getHeight());
+		TestUtils.compare(image, images[0]);
+		for (int level = 1; level < levels; level++) {
+			TestUtils.compare(reduce(images[level - 1]), images[level]);
+		}
+
+		Path[] targets = new Path[levels];
+		for (int level = 0; level < levels; level++) {
+			targets[level] = dirOutput.resolve("pyramid-" + level + ".bmp");
+		}
+		BMPPyramid.write(source, targets);
+		for (int level = 0; level < levels; level++) {
+			TestUtils.compare(images[level], BMPDecoder.read(targets[level]));
+		}
+	}
+
+	@Test
+	public void testInvalidLevels() throws IOException
+	{
+		Path dirOutput = SystemPaths.CWD.resolve("testdata")
+				.resolve("bmp-test");
+		Files.createDirectories(dirOutput);
+		Path source = dirOutput.resolve("pyramid-small.bmp");
+		BMPEncoder.write(TestUtils.createGradient(4, 3,
+				BufferedImage.TYPE_INT_ARGB, true), source);
+		try (BMPReader reader = BMPReader.open(source)) {
+			BMPPyramid.build(reader, 4, null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPImage;
+
+public class TestReduceColorDepth
+{
+
+	@Test
+	public void test2Colors() throws IOException
+	{
+		test(createImage(BufferedImage.TYPE_INT_RGB, 2, 0xFF), 1);
+	}
+
+	@Test
+	public void test9Colors() throws IOException
+	{
+		test(createImage(BufferedImage.TYPE_INT_RGB, 9, 0xFF), 4);
+	}
+
+	@Test
+	public void test200Colors() throws IOException
+	{
+		test(createImage(BufferedImage.TYPE_INT_ARGB, 200, 0xFF), 8);
+	}
+
+	@Test
+	public void test300Colors() throws IOException
+	{
+		test(createImage(BufferedImage.TYPE_INT_ARGB, 300, 0xFF), 24);
+	}
+
+	@Test
+	public void testTransparent() throws IOException
+	{
+		test(createImage(BufferedImage.TYPE_INT_ARGB, 9, 0x80), 32);
+	}
+
+	private static BufferedImage createImage(int type, int numColors,
+			int alpha)
+	{
+		int width = 37;
+		int height = 23;
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int c = (x + y * width) % numColors;
+				image.setRGB(x, y, (alpha << 24) | (c * 0x010305));
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Encode with color depth reduction, check the resulting color depth and
+	 * compare the result, read back with our decoder and with ImageIO, to the
+	 * original image.
+	 */
+	private void test(BufferedImage image, int expectedBitCount)
+			throws IOException
+	{
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setReduceColorDepth(true);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BMPEncoder.write(image, baos, options);
+		byte[] bytes = baos.toByteArray();
+
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		Assert.assertEquals(expectedBitCount, bmp.getColorDepth());
+
+		TestUtils.compare(image, bmp.getImage());
+		TestUtils.compare(image, ImageIO.read(new ByteArrayInputStream(bytes)));
+	}
+
+}
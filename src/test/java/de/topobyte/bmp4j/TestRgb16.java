@@ -0,0 +1,100 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPConstants;
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPImage;
+
+public class TestRgb16
+{
+
+	@Test
+	public void test565() throws IOException
+	{
+		test(BufferedImage.TYPE_INT_RGB, BMPEncoderOptions.RGB16_565,
+				BMPConstants.BI_BITFIELDS);
+	}
+
+	@Test
+	public void test555() throws IOException
+	{
+		test(BufferedImage.TYPE_INT_RGB, BMPEncoderOptions.RGB16_555,
+				BMPConstants.BI_RGB);
+	}
+
+	@Test
+	public void test565FromArgb() throws IOException
+	{
+		test(BufferedImage.TYPE_INT_ARGB, BMPEncoderOptions.RGB16_565,
+				BMPConstants.BI_BITFIELDS);
+	}
+
+	@Test
+	public void test555From3ByteBgr() throws IOException
+	{
+		test(BufferedImage.TYPE_3BYTE_BGR, BMPEncoderOptions.RGB16_555,
+				BMPConstants.BI_RGB);
+	}
+
+	/**
+	 * Encode as 16-bit bitmap and compare the result, read back with our
+	 * decoder and with ImageIO, to the original image quantized to the
+	 * respective number of bits per channel.
+	 */
+	private void test(int type, int format, int expectedCompression)
+			throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(37, 23, type, false);
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRgb16Format(format);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BMPEncoder.write(image, baos, options);
+		byte[] bytes = baos.toByteArray();
+
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		Assert.assertEquals(16, bmp.getInfoHeader().getBitCount());
+		Assert.assertEquals(expectedCompression,
+				bmp.getInfoHeader().getCompression());
+		Assert.assertEquals(14 + BMPConstants.HEADER_LENGTH_5
+				+ BMPEncoder.getBytesPerLine16(width) * height, bytes.length);
+
+		BufferedImage ours = bmp.getImage();
+		BufferedImage imageIO = ImageIO.read(new ByteArrayInputStream(bytes));
+
+		int greenBits = format == BMPEncoderOptions.RGB16_565 ? 6 : 5;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int rgb = image.getRGB(x, y);
+				int expected = quantize(rgb >> 16, 5) << 16
+						| quantize(rgb >> 8, greenBits) << 8
+						| quantize(rgb, 5);
+				Assert.assertEquals(expected, ours.getRGB(x, y) & 0xFFFFFF);
+				Assert.assertEquals(expected,
+						imageIO.getRGB(x, y) & 0xFFFFFF);
+			}
+		}
+	}
+
+	private static int quantize(int value, int bits)
+	{
+		int max = (1 << bits) - 1;
+		int v = (value & 0xFF) >> (8 - bits);
+		return (v * 255 + max / 2) / max;
+	}
+
+}
@@ -0,0 +1,158 @@
+package de.topobyte.bmp4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPConstants;
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPImage;
+
+public class TestRunLengthEncoding
+{
+
+	@Test
+	public void testRle8() throws IOException
+	{
+		test(8, 301, 40);
+	}
+
+	@Test
+	public void testRle4() throws IOException
+	{
+		test(4, 301, 40);
+	}
+
+	@Test
+	public void testRle4OddWidth() throws IOException
+	{
+		test(4, 37, 23);
+	}
+
+	@Test
+	public void testReduced() throws IOException
+	{
+		BufferedImage image = new BufferedImage(64, 48,
+				BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, (x / 7 + y / 5) % 9 * 0x1C1C1C);
+			}
+		}
+
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setReduceColorDepth(true);
+		options.setRunLengthEncoding(true);
+		BMPImage bmp = roundtrip(image, options);
+		Assert.assertEquals(4, bmp.getColorDepth());
+		Assert.assertEquals(BMPConstants.BI_RLE4,
+				bmp.getInfoHeader().getCompression());
+	}
+
+	/**
+	 * Create an indexed image with empty rows, long runs and noise, encode it
+	 * with run-length encoding and compare the result, read back with our
+	 * decoder and with ImageIO, to the original image.
+	 */
+	/**
+	 * Runs, deltas and absolute runs that extend beyond the end of a line are
+	 * cut off at the end of the line.
+	 */
+	@Test
+	public void testOverlongRuns() throws IOException
+	{
+		BufferedImage image = new BufferedImage(4, 1,
+				BufferedImage.TYPE_BYTE_INDEXED);
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRunLengthEncoding(true);
+		byte[] encoded = BMPEncoder.encode(image, options);
+
+		int dataOffset = (encoded[10] & 0xFF) | (encoded[11] & 0xFF) << 8;
+		byte[] codes = { 6, 1, 2, 1, 0, 2, 5, 0, 2, 2, 0, 3, 2, 2, 2, 0, 0, 0,
+				0, 1 };
+		byte[] bytes = Arrays.copyOf(encoded, dataOffset + codes.length);
+		System.arraycopy(codes, 0, bytes, dataOffset, codes.length);
+
+		BufferedImage decoded = BMPDecoder
+				.read(new ByteArrayInputStream(bytes));
+		for (int x = 0; x < 4; x++) {
+			Assert.assertEquals(1, decoded.getRaster().getSample(x, 0, 0));
+		}
+	}
+
+	private void test(int bitCount, int width, int height) throws IOException
+	{
+		int numColors = 1 << bitCount;
+		byte[] r = new byte[numColors];
+		byte[] g = new byte[numColors];
+		byte[] b = new byte[numColors];
+		for (int i = 0; i < numColors; i++) {
+			r[i] = (byte) (i * 37);
+			g[i] = (byte) (i * 59);
+			b[i] = (byte) (255 - i);
+		}
+		IndexColorModel icm = new IndexColorModel(bitCount, numColors, r, g,
+				b);
+		BufferedImage image = new BufferedImage(width, height,
+				bitCount == 8 ? BufferedImage.TYPE_BYTE_INDEXED
+						: BufferedImage.TYPE_BYTE_BINARY,
+				icm);
+
+		Random random = new Random(42);
+		WritableRaster raster = image.getRaster();
+		for (int y = 0; y < height; y++) {
+			if (y < 3 || y % 10 == 5 || y >= height - 2) {
+				// empty rows
+				continue;
+			}
+			for (int x = 0; x < width * 3 / 4; x++) {
+				int index;
+				if (y % 3 == 0) {
+					index = random.nextInt(numColors);
+				} else if (y % 3 == 1) {
+					index = (x / 13) % numColors;
+				} else {
+					index = x < width / 2 ? 1 : random.nextInt(3);
+				}
+				raster.setSample(x, y, 0, index);
+			}
+		}
+
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRunLengthEncoding(true);
+		BMPImage bmp = roundtrip(image, options);
+		Assert.assertEquals(bitCount == 8 ? BMPConstants.BI_RLE8
+				: BMPConstants.BI_RLE4, bmp.getInfoHeader().getCompression());
+	}
+
+	private BMPImage roundtrip(BufferedImage image, BMPEncoderOptions options)
+			throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BMPEncoder.write(image, baos, options);
+		byte[] bytes = baos.toByteArray();
+
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+		BMPEncoder.write(image, uncompressed);
+		Assert.assertTrue("compressed file should be smaller",
+				bytes.length < uncompressed.size());
+
+		BMPImage bmp = BMPDecoder.readExt(new ByteArrayInputStream(bytes));
+		TestUtils.compare(image, bmp.getImage());
+		TestUtils.compare(image, ImageIO.read(new ByteArrayInputStream(bytes)));
+		return bmp;
+	}
+
+}
@@ -0,0 +1,189 @@
+package de.topobyte.bmp4j;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.topobyte.bmp4j.codec.BMPDecoder;
+import de.topobyte.bmp4j.codec.BMPDecoderOptions;
+import de.topobyte.bmp4j.codec.BMPEncoder;
+import de.topobyte.bmp4j.codec.BMPEncoderOptions;
+import de.topobyte.bmp4j.codec.BMPNativeImages;
+
+public class TestScaledDecode
+{
+
+	private static BufferedImage decode(byte[] bytes, double scaleFactor)
+			throws IOException
+	{
+		BMPDecoderOptions options = new BMPDecoderOptions();
+		options.setScaleFactor(scaleFactor);
+		return BMPDecoder.read(new ByteArrayInputStream(bytes), options);
+	}
+
+	@Test
+	public void testAreaAveraging() throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(101, 67,
+				BufferedImage.TYPE_INT_RGB, false);
+		byte[] bytes = BMPEncoder.encode(image);
+		for (double factor : new double[] { 0.5, 0.37, 0.25, 0.9, 0.01 }) {
+			BufferedImage scaled = decode(bytes, factor);
+			int width = scaled.getWidth();
+			int height = scaled.getHeight();
+			Assert.assertEquals(Math.max(1, Math.round(101 * factor)), width);
+			Assert.assertEquals(Math.max(1, Math.round(67 * factor)), height);
+			Assert.assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+
+			check(scale(image, width, height), scaled, 1);
+		}
+	}
+
+	private static BufferedImage scale(BufferedImage image, int width,
+			int height)
+	{
+		BufferedImage scaled = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = scaled.createGraphics();
+		g.drawImage(image.getScaledInstance(width, height,
+				Image.SCALE_AREA_AVERAGING), 0, 0, null);
+		g.dispose();
+		return scaled;
+	}
+
+	@Test
+	public void testRgb16() throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(101, 67,
+				BufferedImage.TYPE_INT_RGB, false);
+		for (int format : new int[] { BMPEncoderOptions.RGB16_555,
+				BMPEncoderOptions.RGB16_565 }) {
+			BMPEncoderOptions options = new BMPEncoderOptions();
+			options.setRgb16Format(format);
+			checkRgb16(BMPEncoder.encode(image, options));
+		}
+
+		// other masks, here with red and blue swapped
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRgb16Format(BMPEncoderOptions.RGB16_565);
+		byte[] bytes = BMPEncoder.encode(image, options);
+		byte[] masks = { 0, (byte) 0xF8, 0, 0, (byte) 0xE0, 0x07, 0, 0, 0x1F,
+				0, 0, 0 };
+		int i = indexOf(bytes, masks);
+		Assert.assertTrue(i > 0);
+		bytes[i] = 0x1F;
+		bytes[i + 1] = 0;
+		bytes[i + 8] = 0;
+		bytes[i + 9] = (byte) 0xF8;
+		checkRgb16(bytes);
+	}
+
+	/**
+	 * Compares the scaled decode of a 16-bit bitmap to the full decode, scaled
+	 * afterwards.
+	 */
+	private static void checkRgb16(byte[] bytes) throws IOException
+	{
+		BufferedImage full = BMPDecoder.read(new ByteArrayInputStream(bytes));
+		BufferedImage scaled = decode(bytes, 0.37);
+		check(scale(full, scaled.getWidth(), scaled.getHeight()), scaled, 1);
+	}
+
+	private static int indexOf(byte[] bytes, byte[] sequence)
+	{
+		search: for (int i = 0; i <= bytes.length - sequence.length; i++) {
+			for (int j = 0; j < sequence.length; j++) {
+				if (bytes[i + j] != sequence[j]) {
+					continue search;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	@Test
+	public void testTopDown() throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(101, 67,
+				BufferedImage.TYPE_INT_RGB, false);
+		BufferedImage nativeImage = BMPNativeImages.createImage(101, 67, 24);
+		Graphics2D g = nativeImage.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+
+		BufferedImage bottomUp = decode(BMPEncoder.encode(image), 0.3);
+		BufferedImage topDown = decode(BMPEncoder.encode(nativeImage), 0.3);
+		check(bottomUp, topDown, 0);
+	}
+
+	@Test
+	public void testRunLengthEncoded() throws IOException
+	{
+		BufferedImage image = TestUtils.createGradient(101, 67,
+				BufferedImage.TYPE_BYTE_INDEXED, false);
+		BMPEncoderOptions options = new BMPEncoderOptions();
+		options.setRunLengthEncoding(true);
+		// decoded rows are reduced like the rows of uncompressed bitmaps
+		BufferedImage rle = decode(BMPEncoder.encode(image, options), 0.4);
+		BufferedImage streamed = decode(BMPEncoder.encode(image), 0.4);
+		check(streamed, rle, 0);
+	}
+
+	@Test
+	public void testAlpha() throws IOException
+	{
+		BufferedImage image = new BufferedImage(8, 4,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 8; x++) {
+				image.setRGB(x, y, x % 2 == 0 ? 0xFF3060F0 : 0x00FFFFFF);
+			}
+		}
+		BufferedImage scaled = decode(BMPEncoder.encode(image), 0.5);
+		Assert.assertEquals(BufferedImage.TYPE_INT_ARGB, scaled.getType());
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 4; x++) {
+				// transparent pixels do not contribute their color
+				Assert.assertEquals(0x803060F0, scaled.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidFactor()
+	{
+		for (double factor : new double[] { 0, -1, 1.5, Double.NaN }) {
+			try {
+				new BMPDecoderOptions().setScaleFactor(factor);
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	private static void check(BufferedImage expected, BufferedImage actual,
+			int tolerance)
+	{
+		Assert.assertEquals(expected.getWidth(), actual.getWidth());
+		Assert.assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int e = expected.getRGB(x, y);
+				int v = actual.getRGB(x, y);
+				for (int shift = 0; shift < 32; shift += 8) {
+					int d = ((e >> shift) & 0xFF) - ((v >> shift) & 0xFF);
+					Assert.assertTrue("pixel " + x + "," + y,
+							Math.abs(d) <= tolerance);
+				}
+			}
+		}
+	}
+
+}
@@ -7,6 +7,53 @@ import org.junit.Assert;
 public class TestUtils
 {
 
+	/**
+	 * Creates an opaque image with <tt>numColors</tt> distinct colors, which
+	 * cycle along the rows of the image.
+	 *
+	 * @param blackRows
+	 *            the number of rows at the top that are left black, e.g. to
+	 *            give run-length encoding something to compress
+	 */
+	static BufferedImage createColorCycle(int width, int height,
+			int numColors, int blackRows)
+	{
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int c = y < blackRows ? 0 : (x + y * 3) % numColors;
+				image.setRGB(x, y, c * 0x030507);
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Creates an image of the specified type with gradients of red along the
+	 * rows, green along the columns and a pattern of blue, so neighboring
+	 * pixels differ in all channels.
+	 *
+	 * @param alpha
+	 *            whether to vary alpha as well, including fully transparent
+	 *            pixels, or to create opaque pixels
+	 */
+	static BufferedImage createGradient(int width, int height, int type,
+			boolean alpha)
+	{
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int a = alpha ? (x * 13 + y * 3) & 0xFF : 0xFF;
+				int r = (x * 7) & 0xFF;
+				int g = (y * 11) & 0xFF;
+				int b = (x * y) & 0xFF;
+				image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+			}
+		}
+		return image;
+	}
+
 	static void compare(BufferedImage imageExpect, BufferedImage image)
 	{
 		Assert.assertEquals(imageExpect.getWidth(), image.getWidth());